@@ -0,0 +1,358 @@
+/** Backup Index Class
+* Description: Writes the lines of a backup file, and keeps the byte position of each line in an index file beside it
+  (backup_N.idx); any line can then be read with a single seek, no matter how many lines come before it.
+  The index is rebuilt from the backup file if it is missing, or doesn't match the backup file.
+  Added lines are gathered in memory, and written together by the next commit; the durability decides whether a commit
+  forces its own lines to the disk (SYNC_RECORD), shares one force with every line gathered before it (SYNC_GROUP),
+  or only hands the lines to the operating system (SYNC_ASYNC). Lines that point to data in a blob store are only written
+  once that data is forced, however they're written, so a record is never on the disk before the data it points to
+* constructor(String, Boolean, Int) - Opens the backup file at the given path and its index, with the given durability;
+									   if told to, any existing lines are removed
+* isValid() - Helper method that returns whether the index file matches the backup file
+* rebuild() - Helper method that reads the backup file once, and writes a new index file from the positions of its lines
+* addOffset(Long) - Helper method that stores the position of a new line in memory
+* append(String) - Adds the given line to the end of the backup file, and returns its line number (starting from 1); the line
+				   is written once enough lines are gathered, or by the next commit
+* append(String, BlobStore) - Adds the given line, which points to data in the given blob store; the data is forced before the
+							  line is written. Returns its line number
+* forceData() - Helper method that forces the blob store that gathered lines point to, if its data wasn't forced since
+* writePending() - Helper method that writes every gathered line, and their positions, with one write each; the data they point
+				   to is forced first, unless the durability is SYNC_ASYNC
+* writeUpTo(Int) - Helper method that writes the gathered lines, if the given line is one of them, so it can be read
+* commit(Int) - Returns once the given line is saved as the durability requires
+* count() - Returns the amount of lines in the backup file
+* size() - Returns the size of the backup file, in bytes
+* read(Int) - Returns the line with the given line number, without its line seperator
+* readRange(Int, Int) - Returns every line from the first to the last given line number with a single read, with their line seperators
+* force() - Writes every gathered line, and every line and position that is still held by the operating system, to the disk
+* close() - Closes the backup and index files
+* delete() - Closes and deletes the backup and index files
+**/
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class SaarujanBackupIndex {
+	public final static int SYNC_RECORD = 0, SYNC_GROUP = 1, SYNC_ASYNC = 2; //The durabilities that a backup can be opened with
+	private final static int FLUSH_SIZE = 65536; //The amount of gathered bytes that are written without waiting for a commit
+	private String path, indexPath; //The paths of the backup file, and its index file
+	private FileChannel backup, index; //The channels of the backup file and its index file
+	private long[] offsets; //The position of each line in the backup file
+	private int count; //The amount of lines in the backup file
+	private long end; //The size of the backup file, including the gathered lines
+	private int durability; //Stores when a commit forces lines to the disk
+	private int written, durable; //The amount of lines written to the backup file, and the amount forced to the disk
+	private ByteArrayOutputStream pending; //The lines that were added, but not written yet
+	private SaarujanBlobStore unforced; //The blob store that added lines point to, if its data wasn't forced since; null otherwise
+	private ReentrantLock commitLock; //Only one commit writes at a time; the others wait, then find their line already saved
+
+	public SaarujanBackupIndex(String path, boolean truncate, int durability) throws IOException {
+		this.path = path; //Stores the path of the backup file
+		this.durability = durability; //Stores the durability
+		pending = new ByteArrayOutputStream(); //No lines are gathered yet
+		commitLock = new ReentrantLock(); //Initializes the lock of commits
+		indexPath = path.substring(0, path.lastIndexOf('.')) + ".idx"; //The index file has the same name, with a different extension
+		offsets = new long[16]; //Allocates space for the first positions
+		count = 0; //No lines have been read yet
+		if (truncate) { //If the backup should start empty
+			backup = FileChannel.open(new File(path).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+									  StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			index = FileChannel.open(new File(indexPath).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+									 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			end = 0; //The backup file is empty
+			written = durable = 0; //No lines exist
+			return; //Exits the constructor
+		}
+
+		backup = FileChannel.open(new File(path).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+								  StandardOpenOption.WRITE);
+		index = FileChannel.open(new File(indexPath).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+								 StandardOpenOption.WRITE);
+		end = backup.size(); //Stores the size of the backup file
+		if (!isValid()) //If the index is missing, or a line was written without its position (Ex: the server stopped between them)
+			rebuild(); //The index is rebuilt from the backup file
+		written = durable = count; //Every existing line is already on the disk
+	}
+
+	private boolean isValid() throws IOException {
+		if (index.size() % 8 != 0) //If the index ends part way through a position
+			return false; //The index doesn't match
+
+		ByteBuffer positions = ByteBuffer.allocate((int) index.size()); //Allocates space for every position
+		while (positions.hasRemaining() && index.read(positions, positions.position()) > 0); //Reads the whole index
+		positions.flip(); //Prepares the positions to be read
+		while (positions.hasRemaining()) { //Loops through the positions
+			addOffset(positions.getLong()); //Stores the current position
+		}
+
+		if (count == 0) //If the index is empty
+			return end == 0; //It only matches an empty backup file
+
+		long last = offsets[count - 1]; //Stores the position of the last line
+		if (last >= end) //If the last line starts after the end of the backup file
+			return false; //The index doesn't match
+
+		ByteBuffer line = ByteBuffer.allocate((int) (end - last)); //Allocates space for the last line
+		while (line.hasRemaining() && backup.read(line, last + line.position()) > 0); //Reads the last line
+		for (int i = 0; i < line.position() - 1; ++i) { //Loops through the last line, except for its line seperator
+			if (line.get(i) == '\n') //If another line starts after it, that line is missing from the index
+				return false; //The index doesn't match
+		}
+
+		return line.position() > 0 && line.get(line.position() - 1) == '\n'; //The last line must be complete
+	}
+
+	private void rebuild() throws IOException {
+		count = 0; //Forgets the positions that were read from the old index
+		BufferedInputStream input = new BufferedInputStream(new FileInputStream(path), 65536); //Opens the backup file
+		ByteBuffer positions = ByteBuffer.allocate(8192); //Stores positions until they are written to the index
+		long position = 0; //Stores the position of the current byte
+		boolean lineStart = true; //Stores whether the current byte starts a new line
+		int curr = input.read(); //Reads the first byte
+		index.truncate(0); //Empties the index
+		while (curr != -1) { //Loops until the end of the backup file
+			if (lineStart) { //If a new line starts at this byte
+				addOffset(position); //Stores the position of the line
+				if (!positions.hasRemaining()) { //If the positions fill the buffer
+					positions.flip(); //Prepares the positions to be written
+					while (positions.hasRemaining()) index.write(positions, index.size()); //Writes the positions
+					positions.clear(); //Empties the buffer
+				}
+				positions.putLong(position); //Adds the position to the buffer
+			}
+
+			lineStart = curr == '\n'; //The next byte starts a new line if this one ends a line
+			++position; //Moves onto the next byte
+			curr = input.read(); //Reads the next byte
+		}
+
+		input.close(); //Closes the backup file
+		positions.flip(); //Prepares the remaining positions to be written
+		while (positions.hasRemaining()) index.write(positions, index.size()); //Writes the remaining positions
+		end = position; //Stores the size of the backup file
+	}
+
+	private void addOffset(long offset) {
+		if (count == offsets.length) { //If there is no space left for another position
+			long[] larger = new long[offsets.length * 2]; //Allocates twice as much space
+			System.arraycopy(offsets, 0, larger, 0, count); //Copies the existing positions
+			offsets = larger; //Swaps to the larger array
+		}
+
+		offsets[count++] = offset; //Stores the position
+	}
+
+	public int append(String line) throws IOException {
+		return append(line, null); //Adds the line, which doesn't point to any data
+	}
+
+	public int append(String line, SaarujanBlobStore data) throws IOException {
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8); //Stores the encoded line
+		int number; //Stores the line number
+		boolean full; //Stores whether enough lines are gathered to write them
+		synchronized (this) { //Lines are numbered in the order they're added
+			if (data != null) //If the line points to data, the data is forced before any line from here on is written
+				unforced = data;
+			addOffset(end); //Stores the position of the line in memory
+			end += bytes.length; //Moves the end past the line
+			pending.write(bytes, 0, bytes.length); //Gathers the line
+			number = count; //Stores the line number
+			full = pending.size() >= FLUSH_SIZE; //Checks whether the gathered lines should be written
+		}
+
+		if (full && commitLock.tryLock()) { //If enough lines are gathered, and no commit is writing them already
+			try {
+				writePending(); //Writes the gathered lines, without forcing them to the disk
+			} finally {
+				commitLock.unlock(); //Lets commits write again
+			}
+		}
+
+		return number; //Returns the line number
+	}
+
+	private void forceData() throws IOException {
+		SaarujanBlobStore data; //Stores the blob store to force
+		synchronized (this) { //Takes the blob store; lines that point to it from now on set it again
+			data = unforced;
+			unforced = null;
+		}
+
+		try {
+			if (data != null) //If any line points to data that wasn't forced
+				data.force(); //Forces the data
+		} catch (IOException e) { //If the data couldn't be forced, the next write tries again
+			synchronized (this) {
+				if (unforced == null)
+					unforced = data;
+			}
+			throw e; //The data wasn't forced
+		}
+	}
+
+	private void writePending() throws IOException {
+		byte[] lines; //Stores the gathered lines
+		ByteBuffer positions; //Stores the positions of the gathered lines
+		long position; //Stores the position of the first gathered line
+		int first, last; //Stores the numbers of the first and last gathered lines
+		synchronized (this) { //Takes every gathered line at once; lines added from now on are written by the next call
+			if (written == count) //If every line is already written
+				return; //Exits the method
+
+			first = written; //Stores the first line that isn't written
+			last = count; //Stores the last line that was added
+			position = offsets[first]; //Stores where the lines start
+			lines = pending.toByteArray(); //Takes the gathered lines
+			pending.reset(); //Empties the gathered lines
+			positions = ByteBuffer.allocate((last - first) * 8); //Allocates space for their positions
+			for (int i = first; i < last; ++i) { //Loops through the gathered lines
+				positions.putLong(offsets[i]); //Stores the position of the line
+			}
+			positions.flip(); //Prepares the positions to be written
+		}
+
+		try {
+			//Forces the data that the lines point to, after the lines were taken, so the data of every taken line is forced
+			if (durability != SYNC_ASYNC)
+				forceData();
+			ByteBuffer bytes = ByteBuffer.wrap(lines); //Wraps the lines so they can be written
+			while (bytes.hasRemaining()) { //Loops until every line is written, as a channel can write fewer bytes than requested
+				backup.write(bytes, position + bytes.position()); //Writes the lines with a single write
+			}
+			while (positions.hasRemaining()) { //Writes the positions after the lines, so a crash can be detected
+				index.write(positions, (long) first * 8 + positions.position());
+			}
+		} catch (IOException e) { //If the lines couldn't be written, they're gathered again, so the next commit retries them
+			synchronized (this) {
+				ByteArrayOutputStream restored = new ByteArrayOutputStream(); //Stores the lines in their original order
+				restored.write(lines, 0, lines.length); //Adds the lines that weren't written
+				pending.writeTo(restored); //Adds the lines that were added since
+				pending = restored; //Swaps to the restored lines
+			}
+			throw e; //The lines weren't written
+		}
+
+		synchronized (this) {
+			written = last; //Every line up to the last one is written
+		}
+	}
+
+	private void writeUpTo(int line) throws IOException {
+		synchronized (this) {
+			if (line <= written) //If the line is already written
+				return; //Exits the method
+		}
+
+		commitLock.lock(); //Waits for the commit that is writing now
+		try {
+			writePending(); //Writes the gathered lines
+		} finally {
+			commitLock.unlock(); //Lets the next commit write
+		}
+	}
+
+	public void commit(int line) throws IOException {
+		commitLock.lock(); //Waits for the commit that is writing now; its force may have covered this line already
+		try {
+			synchronized (this) {
+				//With a group durability, a line is saved once any force after it is done; records are always forced by themselves
+				if (durability != SYNC_RECORD && line <= (durability == SYNC_ASYNC ? written : durable))
+					return; //The line is already saved
+			}
+
+			writePending(); //Writes every gathered line, including the ones of other sessions, with one write; their data is forced first
+			if (durability != SYNC_ASYNC) { //If the lines must be on the disk before the commit returns
+				backup.force(false); //Forces the lines to the disk
+				index.force(false); //Forces their positions to the disk
+				synchronized (this) {
+					durable = written; //Every written line is now on the disk
+				}
+			}
+		} finally {
+			commitLock.unlock(); //Lets the next commit write
+		}
+	}
+
+	public synchronized int count() {
+		return count; //Returns the amount of lines
+	}
+
+	public synchronized long size() {
+		return end; //Returns the end of the backup file
+	}
+
+	public String read(int line) throws IOException {
+		long position, length; //Stores the position and length of the line
+		writeUpTo(line); //Writes the line first, if it is still gathered
+		synchronized (this) { //Another session may be adding a line at the same time
+			if (line < 1 || line > count) //If the line doesn't exist
+				return null; //Null is returned
+
+			position = offsets[line - 1]; //Stores the position of the line
+			length = (line < count ? offsets[line] : end) - position; //The line ends where the next line starts
+		}
+
+		ByteBuffer bytes = ByteBuffer.allocate((int) length); //Allocates space for the line
+		while (bytes.hasRemaining() && backup.read(bytes, position + bytes.position()) > 0); //Reads the whole line with a single seek
+		int size = bytes.position(); //Stores the amount of bytes read
+		if (size > 0 && bytes.get(size - 1) == '\n') //If the line ends with a line seperator
+			--size; //The line seperator isn't returned
+		return new String(bytes.array(), 0, size, StandardCharsets.UTF_8); //Returns the decoded line
+	}
+
+	public String readRange(int first, int last) throws IOException {
+		long position, length; //Stores the position and length of the range
+		writeUpTo(last); //Writes the range first, if it is still gathered
+		synchronized (this) { //Another session may be adding a line at the same time
+			if (first < 1 || last > count || first > last) //If the range doesn't exist
+				return ""; //An empty range is returned
+
+			position = offsets[first - 1]; //Stores the position of the first line
+			length = (last < count ? offsets[last] : end) - position; //The range ends where the line after it starts
+		}
+
+		ByteBuffer bytes = ByteBuffer.allocate((int) length); //Allocates space for the range
+		while (bytes.hasRemaining() && backup.read(bytes, position + bytes.position()) > 0); //Reads the whole range with a single seek
+		return new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8); //Returns the decoded range
+	}
+
+	public void force() throws IOException {
+		commitLock.lock(); //Waits for the commit that is writing now
+		try {
+			writePending(); //Writes every gathered line
+			forceData(); //Forces the data they point to, which SYNC_ASYNC writes leave to the operating system
+			backup.force(false); //Writes the lines to the disk
+			index.force(false); //Writes the positions to the disk
+			synchronized (this) {
+				durable = written; //Every written line is now on the disk
+			}
+		} finally {
+			commitLock.unlock(); //Lets the next commit write
+		}
+	}
+
+	public void close() throws IOException {
+		commitLock.lock(); //Waits for the commit that is writing now
+		try {
+			writePending(); //Writes every gathered line before the files are closed
+		} finally {
+			commitLock.unlock(); //Lets the next commit write
+		}
+		backup.close(); //Closes the backup file
+		index.close(); //Closes the index file
+	}
+
+	public void delete() throws IOException {
+		backup.close(); //Closes both files; the gathered lines aren't needed
+		index.close();
+		new File(path).delete(); //Deletes the backup file
+		new File(indexPath).delete(); //Deletes the index file
+	}
+}
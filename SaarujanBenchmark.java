@@ -0,0 +1,717 @@
+/** Benchmark Class
+* Description: A standalone program that measures the performance of the server's building blocks, without starting a server;
+  run it with the name of a benchmark as the argument, or without arguments to run every benchmark
+* time(Runnable, Int) - Helper method that runs the given task the given amount of times, and returns the average time in nanoseconds
+* frame(Int) - Helper method that builds a frame with a message of the given size
+* legacyRecv(InputStream) - The previous recv() implementation, which read one byte at a time and concatenated Strings
+* framing() - Compares the throughput of legacyRecv() with Frame, for 1 KB, 100 KB, and 10 MB messages
+* measure(String, Int, Long, Runnable) - Helper method that runs the given download, and prints its CPU time and allocated bytes per MB
+* downloads() - Compares the CPU time and allocation per downloaded MB of sending a file as a String, in heap chunks, and with
+				transferTo() from the blob store, over a loopback connection
+* commits() - Compares the throughput of 16 clients saving records at once, with each durability of the backup
+* workload() - Helper method that builds a trace of requests: most downloads are of a small set of popular files, and every
+			   few thousand requests a burst of new files is uploaded once and never downloaded
+* readTrace(String) - Helper method that reads a trace that was recorded by a server started with "trace"
+* simulate(LinkedQueue, List) - Helper method that replays the trace through the previous memory queue of 10 paths, and returns
+								 the download hits and the bytes of those hits
+* simulate(Cache, List) - Helper method that replays the trace through the given cache, and returns the download hits and the
+						   bytes of those hits
+* replay(String) - Compares the hit ratio of the previous memory queue, the byte-budgeted LRU cache, and the cache with TinyLFU
+				   admission, over the recorded trace at the given path, or over workload() if no path is given
+* collections() - Helper method that returns the total amount of collections, and the total time in milliseconds that they took
+* offHeap() - Compares the garbage collection time of a busy server while the cache holds 32 MB and 128 MB of file data in heap
+			 buffers, and in direct buffers outside of the heap
+* queues() - Compares the time of the previous linked queue with the ring buffer Queue, for 10, 1,000, and 1,000,000 values, both
+			 keeping the last 20 values as recentLogs() does, and holding every value before dequeuing them all
+* heapUsed() - Helper method that collects the garbage, then returns the bytes used by the heap
+* footprint() - Compares the heap used by 1,000,000 items in 1,000 folders, with their path index, in the previous layout and
+				in the compact layout of Item
+* stamp(String, Runnable) - Helper method that runs the given stamp many times, and prints its time and allocated bytes per stamp
+* dates() - Compares stamping the current date and time, as every log line and upload does, by formatting a new LocalDateTime
+		   each time, with reading the clock of Date
+* crawl(Folder, String, List) - Helper recursive method that adds every item inside the given folder whose name matches the given
+								 pattern to the list, visiting each folder the way a client navigates through them; returns the
+								 amount of folders visited
+* search() - Compares searching 1,000,000 items by walking through every folder with searching the name index, for a prefix and
+			 for a glob, across the whole file system and inside a single folder
+* LegacyItem - The previous layout of Item, which stored the name, path, and uploader as Strings and the upload date as a Date
+* LinkedQueue - The previous Queue, which walked to its last Node on every enqueue(), compared values by reference in remove(), and
+				stored its length and capacity as bytes
+* main(String[]) - Runs the benchmark with the given name, or every benchmark; "replay" can be followed by the path of a trace
+**/
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SaarujanBenchmark {
+	private static volatile Object sink; //Stores the results of each run, so the JIT cannot skip the measured work
+
+	private static long time(Runnable task, int runs) {
+		task.run(); //Warms up the task once, so the JIT compiles it before it is measured
+		long start = System.nanoTime(); //Stores the starting time
+		for (int i = 0; i < runs; ++i) { //Runs the task the given amount of times
+			task.run();
+		}
+
+		return (System.nanoTime() - start) / runs; //Returns the average time of a run
+	}
+
+	private static byte[] frame(int size) {
+		byte[] result = new byte[SaarujanFrame.HEADER_SIZE + size]; //Stores the size, followed by the message
+		SaarujanFrame.encodeHeader(size, result, 0); //Adds the size of the message
+		for (int i = 0; i < size; ++i) { //Fills the message with printable source-code-like characters
+			result[SaarujanFrame.HEADER_SIZE + i] = (byte) ('a' + i % 26);
+		}
+
+		return result; //Returns the frame
+	}
+
+	private static String legacyRecv(InputStream sockIn) throws Exception {
+		String result = "", size = ""; //result - the message; size - the size of the message
+		for (int i = 0; i < 16; ++i) { //Loops 16 times; the size will always be sent as a 16 digit string
+			size += (char) sockIn.read(); //Adds the received character to size
+		}
+
+		for (int i = 0; i < SaarujanItem.strToInt(size); ++i) { //Loops through the message using the received size
+			result += (char) sockIn.read(); //Adds the received character to result
+		}
+
+		return result; //Returns the resulting message
+	}
+
+	private static void framing() {
+		System.out.println("Framing: legacy recv() vs Frame.readText()");
+		int[] sizes = { 1000, 100000, 10000000 }; //1 KB, 100 KB, and 10 MB messages
+		double legacyScale = 0; //Stores the legacy time per byte squared of the largest measured size, to estimate larger sizes
+		for (int size : sizes) { //Loops through the message sizes
+			byte[] data = frame(size); //Stores the frame
+			int runs = size >= 10000000 ? 5 : size >= 100000 ? 50 : 5000; //Larger messages are measured fewer times
+			long framed = time(() -> { //Measures the bulk framing layer
+				try {
+					//Accepts any size, as the messages are larger than the protocol now allows
+					sink = new SaarujanFrame(new ByteArrayInputStream(data), new ByteArrayOutputStream(), Integer.MAX_VALUE).readText();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}, runs);
+
+			String legacy; //Stores the formatted legacy time
+			if (size <= 100000) { //The legacy implementation is quadratic, so only the smaller sizes are measured
+				long nanos = time(() -> {
+					try {
+						sink = legacyRecv(new ByteArrayInputStream(data));
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}, size >= 100000 ? 3 : 500);
+				legacyScale = nanos / ((double) size * size); //Stores the time per byte squared
+				legacy = String.format("%,14d ns", nanos);
+			} else { //The 10 MB time is estimated from the quadratic growth of the 100 KB time
+				legacy = String.format("%,14d ns (estimated)", (long) (legacyScale * size * size));
+			}
+
+			System.out.printf("  %,10d bytes | legacy %s | framed %,12d ns | framed %8.1f MB/s%n", size, legacy, framed,
+							  size / (framed / 1e9) / 1e6);
+		}
+	}
+
+	private static void measure(String name, int runs, long size, Runnable download) {
+		//The extended ThreadMXBean can count the bytes that the current thread allocates
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		download.run(); //Warms up the download once, so the JIT compiles it before it is measured
+		long cpu = threads.getCurrentThreadCpuTime(), allocated = threads.getCurrentThreadAllocatedBytes(); //Stores the starting values
+		long start = System.nanoTime(); //Stores the starting time
+		for (int i = 0; i < runs; ++i) { //Runs the download the given amount of times
+			download.run();
+		}
+
+		double megabytes = size * (double) runs / 1e6; //Stores the total amount of MB sent
+		System.out.printf("  %-11s | %8.3f ms CPU / MB | %12.1f bytes allocated / MB | %8.1f MB/s%n", name,
+						  (threads.getCurrentThreadCpuTime() - cpu) / 1e6 / megabytes,
+						  (threads.getCurrentThreadAllocatedBytes() - allocated) / megabytes,
+						  megabytes / ((System.nanoTime() - start) / 1e9));
+	}
+
+	private static void downloads() {
+		System.out.println("Downloads: String vs heap chunks vs transferTo(), per downloaded MB");
+		File file = null; //Stores the temporary blob file
+		try {
+			file = File.createTempFile("blobs", ".dat"); //Creates the blob file
+			SaarujanBlobStore blobs = new SaarujanBlobStore(file.getPath(), true); //Opens the blob store
+			int size = 32000000; //Sends a 32 MB file
+			long position = blobs.append(frame(size)); //Stores a file full of source-code-like characters
+			ServerSocketChannel listener = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0)); //Opens a loopback port
+			SocketChannel client = SocketChannel.open(listener.getLocalAddress()); //Connects the receiving end
+			SocketChannel server = listener.accept(); //Stores the sending end, as a session would
+			Thread drain = new Thread(() -> { //The receiving end discards everything, so only the sending end is measured
+				ByteBuffer sink = ByteBuffer.allocateDirect(1 << 20);
+				try {
+					while (client.read(sink.clear()) != -1);
+				} catch (Exception e) {}
+			});
+			drain.start(); //Starts receiving
+			SaarujanFrame frames = new SaarujanFrame(InputStream.nullInputStream(), server.socket().getOutputStream()); //Frames the sending end
+
+			measure("String", 5, size, () -> { //Reads the whole file into a String, and sends it as one frame, as before chunking
+				try {
+					ByteBuffer data = ByteBuffer.allocate(size);
+					blobs.read(position, data);
+					frames.write(new String(data.array(), StandardCharsets.UTF_8));
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			measure("heap chunks", 5, size, () -> { //Reads each chunk into a reused heap buffer, and writes it to the socket
+				try {
+					ByteBuffer chunk = ByteBuffer.allocate(SaarujanFrame.CHUNK_SIZE);
+					for (long sent = 0; sent < size; sent += chunk.limit()) {
+						chunk.clear().limit((int) Math.min(chunk.capacity(), size - sent));
+						blobs.read(position + sent, chunk);
+						frames.write(chunk.array(), 0, chunk.limit());
+					}
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			measure("transferTo", 5, size, () -> { //Sends each chunk straight from the file to the socket
+				try {
+					for (long sent = 0; sent < size; sent += SaarujanFrame.CHUNK_SIZE) {
+						long count = Math.min(size - sent, SaarujanFrame.CHUNK_SIZE);
+						frames.writeHeader(count);
+						blobs.transferTo(position + sent, count, server);
+					}
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+
+			server.close(); //Closes the sending end, so the receiving end stops
+			drain.join(); //Waits for the receiving end to stop
+			client.close(); //Closes the receiving end
+			listener.close(); //Closes the loopback port
+			blobs.delete(); //Deletes the blob file
+		} catch (Exception e) { //If the loopback connection or the blob file couldn't be used
+			System.out.println("  Download benchmark failed: " + e);
+			if (file != null) //If the blob file was created
+				file.delete(); //Deletes the blob file
+		}
+	}
+
+	private static void commits() {
+		System.out.println("Commits: 16 clients saving 100-byte records, per durability");
+		String[] names = { "record", "group", "async" }; //The names of the durabilities, in the order of their values
+		int clients = 16, records = 200; //Each client saves 200 records
+		String record = "B|" + "x".repeat(96) + "\n"; //Stores a record that is as long as a typical file's line
+		for (int durability = 0; durability < names.length; ++durability) { //Loops through the durabilities
+			File file = null; //Stores the temporary backup file
+			try {
+				file = File.createTempFile("backup", ".txt"); //Creates the backup file
+				SaarujanBackupIndex backup = new SaarujanBackupIndex(file.getPath(), true, durability); //Opens the backup
+				Thread[] threads = new Thread[clients]; //Stores the clients
+				long start = System.nanoTime(); //Stores the starting time
+				for (int i = 0; i < clients; ++i) { //Starts every client at once
+					threads[i] = Thread.ofPlatform().start(() -> {
+						try {
+							for (int j = 0; j < records; ++j) { //Saves each record, and waits until it is saved, as an upload does
+								backup.commit(backup.append(record));
+							}
+						} catch (Exception e) {
+							throw new RuntimeException(e);
+						}
+					});
+				}
+
+				for (Thread thread : threads) thread.join(); //Waits for every client
+				long nanos = System.nanoTime() - start; //Stores the total time
+				System.out.printf("  %-6s | %,10.0f records/s | %8.3f ms per record%n", names[durability],
+								  clients * records / (nanos / 1e9), nanos / 1e6 / (clients * records) * clients);
+				backup.delete(); //Deletes the backup file
+			} catch (Exception e) { //If the backup file couldn't be used
+				System.out.println("  Commit benchmark failed: " + e);
+				if (file != null) //If the backup file was created
+					file.delete(); //Deletes the backup file
+			}
+		}
+	}
+
+	private static List<String[]> workload() {
+		ArrayList<String[]> trace = new ArrayList<String[]>(); //Stores the requests, each as action, path, and bytes
+		Random random = new Random(2023); //The same trace is built every time
+		int files = 2000, popular = 100; //2000 files were uploaded before the trace; 100 of them are popular
+		long[] sizes = new long[files]; //Stores the size of each file, between 1 KB and 64 KB
+		for (int i = 0; i < files; ++i) {
+			sizes[i] = 1000 + random.nextInt(63000);
+		}
+
+		int uploads = 0; //Stores the amount of new files
+		for (int i = 1; i <= 100000; ++i) { //Builds 100,000 requests
+			if (i % 5000 == 0) { //Every 5000 requests, 300 new files are uploaded and never downloaded
+				for (int j = 0; j < 300; ++j) {
+					trace.add(new String[] { "ULOADFILE", "Storage://new/" + uploads++ + ".txt", 1000 + random.nextInt(63000) + "" });
+				}
+			}
+
+			//Most downloads are of the popular files, which are used more the lower their number; the rest are of any file
+			int file = random.nextInt(10) < 8 ? (int) (popular * Math.pow(random.nextDouble(), 2)) : random.nextInt(files);
+			if (random.nextInt(4) == 0) //Some requests navigate to the folder of the file first
+				trace.add(new String[] { "NAVIGATE", "Storage://files", "-1" });
+			trace.add(new String[] { "DLOADFILE", "Storage://files/" + file + ".txt", sizes[file] + "" });
+		}
+
+		return trace; //Returns the trace
+	}
+
+	private static List<String[]> readTrace(String path) throws Exception {
+		ArrayList<String[]> trace = new ArrayList<String[]>(); //Stores the requests
+		BufferedReader input = new BufferedReader(new FileReader(path, StandardCharsets.UTF_8)); //Opens the trace
+		String line = input.readLine(); //Stores the current line
+		while (line != null) { //While another line exists
+			int first = line.indexOf('|'), last = line.lastIndexOf('|'); //Paths can contain '|', but actions and bytes can't
+			if (first != -1 && last > first) //If the line is valid, it is split into the action, the path, and the bytes
+				trace.add(new String[] { line.substring(0, first), line.substring(first + 1, last), line.substring(last + 1) });
+			line = input.readLine(); //Reads the next line
+		}
+
+		input.close(); //Closes the trace
+		return trace; //Returns the trace
+	}
+
+	private static long[] simulate(LinkedQueue queue, List<String[]> trace) {
+		HashMap<String, Integer> queued = new HashMap<String, Integer>(); //Stores how many times each path is in the queue
+		long[] result = new long[2]; //Stores the hits, and the bytes of the hits
+		for (String[] request : trace) { //Loops through the requests
+			if (request[0].equals("NAVIGATE")) //Navigation doesn't use the memory queue
+				continue;
+
+			String path = new String(request[1]); //Each request brings its own String, as the path was received from a client
+			if (request[0].equals("DLOADFILE")) { //A download hits if the path is in the queue, then removes it, as downloadFile() did
+				if (queued.getOrDefault(path, 0) > 0) {
+					++result[0];
+					result[1] += SaarujanItem.strToLong(request[2]);
+				}
+				if (queue.remove(path)) //The queue compares paths by reference, so this only finds the same String
+					queued.merge(path, -1, Integer::sum);
+			}
+
+			queued.merge(path, 1, Integer::sum); //Both downloads and uploads enqueue the path, as cacheFile() did
+			String dequeued = queue.enqueue(path); //Stores the path that was pushed out of the queue
+			if (dequeued != null)
+				queued.merge(dequeued, -1, Integer::sum);
+		}
+
+		return result; //Returns the hits, and their bytes
+	}
+
+	private static long[] simulate(SaarujanCache cache, List<String[]> trace) {
+		HashMap<String, SaarujanFile> files = new HashMap<String, SaarujanFile>(); //Stores the file of each path
+		long[] result = new long[2]; //Stores the hits, and the bytes of the hits
+		for (String[] request : trace) { //Loops through the requests
+			if (request[0].equals("NAVIGATE")) //Navigation doesn't use the cache
+				continue;
+
+			long bytes = SaarujanItem.strToLong(request[2]); //Stores the size of the file
+			SaarujanFile file = files.get(request[1]); //Stores the file, creating it if it was uploaded before the trace, or uploaded again
+			if (file == null || request[0].equals("ULOADFILE")) {
+				file = new SaarujanFile(request[1]);
+				file.setBlob(new SaarujanBlob(null, 0, bytes));
+				files.put(request[1], file);
+			}
+
+			if (cache.touch(file)) { //If the data is kept, downloads count a hit
+				if (request[0].equals("DLOADFILE")) {
+					++result[0];
+					result[1] += bytes;
+				}
+			} else if (cache.admits(file, bytes)) { //Otherwise, the data is kept if the cache admits it, as cacheFile() does
+				file.setData(ByteBuffer.allocate(0)); //Marks the data as being in memory, without using the memory
+				cache.put(file, bytes);
+			}
+		}
+
+		return result; //Returns the hits, and their bytes
+	}
+
+	private static void replay(String path) {
+		List<String[]> trace; //Stores the requests
+		try {
+			trace = path == null ? workload() : readTrace(path); //Reads the recorded trace, or builds one
+		} catch (Exception e) { //If the trace couldn't be read
+			System.out.println("  Replay failed: " + e);
+			return;
+		}
+
+		long downloads = 0, bytes = 0; //Stores the amount of downloads, and their bytes
+		for (String[] request : trace) {
+			if (request[0].equals("DLOADFILE")) {
+				++downloads;
+				bytes += SaarujanItem.strToLong(request[2]);
+			}
+		}
+
+		long budget = 2 << 20; //Stores the budget of the caches; small enough that the popular files barely fit
+		System.out.printf("Replay: %,d requests, %,d downloads of %,d bytes, with a %,d byte cache (%s)%n", trace.size(), downloads,
+						  bytes, budget, path == null ? "generated" : path);
+		long[][] results = { simulate(new LinkedQueue((byte) 10), trace), simulate(new SaarujanCache(budget, 4000000, false), trace),
+							 simulate(new SaarujanCache(budget, 4000000, true), trace) }; //Replays the trace through each policy
+		String[] names = { "queue of 10 paths", "LRU", "LRU with TinyLFU" }; //Stores the names of the policies
+		for (int i = 0; i < results.length; ++i) { //Prints the hit ratio of each policy
+			System.out.printf("  %-17s | %6.2f%% of downloads hit | %6.2f%% of bytes hit%n", names[i],
+							  100.0 * results[i][0] / Math.max(downloads, 1), 100.0 * results[i][1] / Math.max(bytes, 1));
+		}
+	}
+
+	private static long[] collections() {
+		long[] result = new long[2]; //Stores the amount of collections, and their time
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) { //Loops through every collector
+			result[0] += Math.max(collector.getCollectionCount(), 0); //Adds its collections; -1 means that it isn't known
+			result[1] += Math.max(collector.getCollectionTime(), 0); //Adds its time
+		}
+
+		return result; //Returns the collections, and their time
+	}
+
+	private static void offHeap() {
+		System.out.println("Off-heap: garbage collection while the cache holds file data, heap vs direct buffers");
+		for (int megabytes : new int[] { 32, 128 }) { //Loops through the amounts of cached data
+			for (boolean direct : new boolean[] { false, true }) { //Fills the cache with heap buffers, then with direct buffers
+				ArrayList<ByteBuffer> cached = new ArrayList<ByteBuffer>(); //Stores the cached data, as the cache would
+				for (int i = 0; i < megabytes * 16; ++i) { //Fills the cache with 64 KB files
+					cached.add(direct ? ByteBuffer.allocateDirect(65536) : ByteBuffer.allocate(65536));
+				}
+
+				System.gc(); //Starts from a collected heap, so only the busy server is measured
+				long[] before = collections(); //Stores the collections so far
+				long start = System.nanoTime(); //Stores the starting time
+				Object[] live = new Object[4096]; //Keeps the latest requests alive for a while, as sessions would
+				for (int i = 0; i < 2000000; ++i) { //Allocates 2 GB of short-lived request data, as a busy server would
+					live[i & 4095] = new byte[1024];
+				}
+				long busy = System.nanoTime() - start; //Stores the time of the busy server
+
+				start = System.nanoTime(); //Times a full collection, which has to move or mark every heap buffer
+				System.gc();
+				long full = System.nanoTime() - start; //Stores the time of the full collection
+				long[] after = collections(); //Stores the collections afterwards
+
+				System.out.printf("  %4d MB %-6s | %,6d collections | %,8d ms collecting | %,8.1f ms busy | %,8.1f ms full GC%n",
+								  megabytes, direct ? "direct" : "heap", after[0] - before[0], after[1] - before[1], busy / 1e6,
+								  full / 1e6);
+				if (cached.size() != megabytes * 16 || live.length == 0) //Keeps the cached data alive until it is measured
+					System.out.println("  unreachable");
+			}
+		}
+	}
+
+	private static void queues() {
+		System.out.println("Queues: previous linked queue vs ring buffer Queue");
+		int[] sizes = { 10, 1000, 1000000 }; //The amounts of values that are enqueued
+		for (int size : sizes) { //Loops through the amounts of values
+			String[] values = new String[size]; //Stores the values, so creating them isn't measured
+			for (int i = 0; i < size; ++i) {
+				values[i] = "value " + i;
+			}
+			int runs = size >= 1000000 ? 5 : size >= 1000 ? 500 : 50000; //Larger amounts are measured fewer times
+
+			long linkedTail = time(() -> { //Keeps the last 20 values in the previous queue, then dequeues them
+				LinkedQueue queue = new LinkedQueue((byte) 20);
+				for (String value : values) {
+					queue.enqueue(value);
+				}
+				while (queue.dequeue() != null);
+			}, runs);
+			long ringTail = time(() -> { //Keeps the last 20 values in the ring buffer, then dequeues them
+				SaarujanQueue queue = new SaarujanQueue(20);
+				for (String value : values) {
+					queue.enqueue(value);
+				}
+				while (queue.dequeue() != null);
+			}, runs);
+			System.out.printf("  %,9d values, last 20 | linked %,14d ns | ring %,14d ns%n", size, linkedTail, ringTail);
+
+			String linkedFull; //Stores the formatted time of the previous queue, which cannot hold more than 127 values
+			if (size <= Byte.MAX_VALUE) { //If the previous queue can hold every value, it is measured
+				linkedFull = String.format("%,14d ns", time(() -> {
+					LinkedQueue queue = new LinkedQueue((byte) size);
+					for (String value : values) {
+						queue.enqueue(value);
+					}
+					while (queue.dequeue() != null);
+				}, runs));
+			} else { //Otherwise, its byte capacity overflows
+				linkedFull = String.format("%17s", "overflows");
+			}
+			long ringFull = time(() -> { //Holds every value in the ring buffer, then dequeues them
+				SaarujanQueue queue = new SaarujanQueue(size);
+				for (String value : values) {
+					queue.enqueue(value);
+				}
+				while (queue.dequeue() != null);
+			}, runs);
+			System.out.printf("  %,9d values, all     | linked %s | ring %,14d ns%n", size, linkedFull, ringFull);
+		}
+	}
+
+	private static long heapUsed() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean(); //Stores the bean that reports the heap
+		for (int i = 0; i < 3; ++i) //Collects a few times, so garbage that was only found by the last collection is gone
+			System.gc();
+		return memory.getHeapMemoryUsage().getUsed(); //Returns the used bytes
+	}
+
+	private static void footprint() {
+		System.out.println("Footprint: heap per item for 1,000,000 items in 1,000 folders, previous layout vs compact layout");
+		int folders = 1000, files = 1000, items = folders * (files + 1); //The amount of folders, files in each, and items in all
+		SaarujanDate date = new SaarujanDate("17/10/2026"); //Stores a date; the previous layout read one Date per item
+
+		long before = heapUsed(); //Stores the heap used before the items are created
+		LegacyItem legacyRoot = new LegacyItem("bench://", "bench://", null, null); //Creates the root directory
+		legacyRoot.items = new ArrayList<LegacyItem>(); //Initializes its children
+		ConcurrentHashMap<String, LegacyItem> legacyPaths = new ConcurrentHashMap<String, LegacyItem>(); //The previous path index
+		legacyPaths.put(legacyRoot.path, legacyRoot);
+		for (int f = 0; f < folders; ++f) { //Creates each folder, with Strings read separately for each item, as loading did
+			String folderPath = "bench://folder" + f; //Stores the path of the folder
+			LegacyItem folder = new LegacyItem("folder" + f, folderPath, "user" + f % 50, new SaarujanDate(date.toString()));
+			folder.items = new ArrayList<LegacyItem>(files); //Initializes the children
+			legacyRoot.items.add(folder);
+			legacyPaths.put(folderPath, folder);
+			for (int i = 0; i < files; ++i) { //Creates each file
+				LegacyItem file = new LegacyItem("file" + i, folderPath + "/file" + i, "user" + i % 50, new SaarujanDate(date.toString()));
+				folder.items.add(file);
+				legacyPaths.put(file.path, file);
+			}
+		}
+		long legacy = heapUsed() - before; //Stores the heap used by the previous layout
+		System.out.printf("  previous | %,12d bytes | %,6.1f bytes per item%n", legacy, legacy / (double) items);
+		if (legacyPaths.get("bench://folder7/file7") == null) //Keeps the items alive until they are measured
+			System.out.println("  missing");
+		legacyRoot = null; //Lets the previous items be collected
+		legacyPaths = null;
+
+		before = heapUsed(); //Stores the heap used before the items are created
+		SaarujanFolder root = new SaarujanFolder("bench://", null, null); //Creates the root directory
+		SaarujanPathIndex paths = new SaarujanPathIndex(); //The path index
+		paths.put(root);
+		for (int f = 0; f < folders; ++f) { //Creates each folder, with Strings read separately for each item, as loading does
+			String folderPath = "bench://folder" + f; //Stores the path of the folder
+			SaarujanFolder folder = new SaarujanFolder(folderPath, "user" + f % 50, new SaarujanDate(date.toString()));
+			root.add(folder);
+			paths.put(folder);
+			ArrayList<SaarujanFile> children = new ArrayList<SaarujanFile>(files); //Stores the files, as loading groups them
+			for (int i = 0; i < files; ++i) { //Creates each file
+				SaarujanFile file = new SaarujanFile(folderPath + "/file" + i, "user" + i % 50, new SaarujanDate(date.toString()), "");
+				file.setData(null); //The data is read when it is downloaded
+				children.add(file);
+			}
+			SaarujanFolder.sort(children); //Adds the files at once, as loading does
+			folder.addSorted(children);
+			for (SaarujanFile file : children) {
+				paths.put(file);
+			}
+		}
+		long compact = heapUsed() - before; //Stores the heap used by the compact layout
+		System.out.printf("  compact  | %,12d bytes | %,6.1f bytes per item%n", compact, compact / (double) items);
+		SaarujanItem found = paths.get("bench://folder7/file7"); //Finds an item, which also keeps the items alive until they are measured
+		System.out.println("  lookup " + (found != null && found.getPath().equals("bench://folder7/file7") ? "ok" : "missing"));
+	}
+
+	private static void stamp(String name, Runnable stamp) {
+		//The extended ThreadMXBean can count the bytes that the current thread allocates
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		int runs = 1000000; //Stores the amount of stamps
+		for (int i = 0; i < runs; ++i) //Warms up the stamp, so the JIT compiles it before it is measured
+			stamp.run();
+
+		long allocated = threads.getCurrentThreadAllocatedBytes(), start = System.nanoTime(); //Stores the starting values
+		for (int i = 0; i < runs; ++i) { //Stamps the given amount of times
+			stamp.run();
+		}
+		System.out.printf("  %-8s | %,8.1f ns / stamp | %,8.1f bytes allocated / stamp%n", name,
+						  (System.nanoTime() - start) / (double) runs,
+						  (threads.getCurrentThreadAllocatedBytes() - allocated) / (double) runs);
+	}
+
+	private static void dates() {
+		System.out.println("Dates: stamping the current date and time, formatting each time vs the clock of Date");
+		stamp("format", () -> { //Reads and formats the date and time each time, as currentDate() and currentTime() did
+			LocalDateTime now = LocalDateTime.now();
+			String date = String.format("%02d/%02d/%04d", now.getMonthValue(), now.getDayOfMonth(), now.getYear());
+			sink = String.format("%02d:%02d", now.getHour(), now.getMinute()) == date ? null : date;
+		});
+		stamp("clock", () -> { //Reads the date and time from the clock, which is only refreshed once a second
+			String date = SaarujanDate.currentDate().toString();
+			sink = SaarujanDate.currentTime() == date ? null : date;
+		});
+	}
+
+	private static int crawl(SaarujanFolder folder, String pattern, List<SaarujanItem> found) {
+		int visited = 1; //Counts the folder, which a client navigates to with one request
+		for (SaarujanItem item : folder) { //Loops through the children, as a client would read them
+			if (SaarujanNameIndex.matches(item.getName(), pattern)) //If the name matches, the item is found
+				found.add(item);
+			if (item instanceof SaarujanFolder) //If the child is a folder, it is visited as well
+				visited += crawl((SaarujanFolder) item, pattern, found);
+		}
+
+		return visited; //Returns the amount of folders visited
+	}
+
+	private static void search() {
+		System.out.println("Search: 1,000,000 items in 1,000 folders, walking every folder vs the name index");
+		SaarujanFolder root = new SaarujanFolder("bench://", null, null); //Creates the root directory
+		SaarujanNameIndex names = new SaarujanNameIndex(); //The name index
+		SaarujanDate date = SaarujanDate.currentDate(); //Stores the upload date of every item
+		for (int f = 0; f < 1000; ++f) { //Creates each folder, each with the same 1,000 file names
+			SaarujanFolder folder = new SaarujanFolder("bench://folder" + f, "user", date);
+			root.add(folder);
+			names.add(folder);
+			for (int i = 0; i < 1000; ++i) { //Creates each file
+				SaarujanFile file = new SaarujanFile("bench://folder" + f + "/file" + i + ".txt", "user", date, "");
+				folder.add(file);
+				names.add(file);
+			}
+		}
+
+		SaarujanFolder single = (SaarujanFolder) root.get(root.indexOf("folder7")); //Stores a single folder to search inside
+		String[][] searches = { { "prefix", "file12" }, { "glob", "file*7.txt" } }; //The prefix, and the glob, that are searched for
+		for (String[] search : searches) { //Loops through the searches
+			for (SaarujanFolder folder : new SaarujanFolder[] { root, single }) { //Searches the whole file system, then a single folder
+				String pattern = search[0].equals("prefix") ? search[1] + "*" : search[1]; //Stores the pattern that the walk matches
+				ArrayList<SaarujanItem> walked = new ArrayList<SaarujanItem>(); //Stores the items that the walk finds
+				int[] visited = new int[1]; //Stores the amount of folders, and so requests, that the walk visits
+				long crawlTime = time(() -> { //Walks through every folder
+					walked.clear();
+					visited[0] = crawl(folder, pattern, walked);
+				}, 5);
+				ArrayList<ArrayList<SaarujanItem>> indexed = new ArrayList<ArrayList<SaarujanItem>>(); //Stores the items that the index finds
+				long indexTime = time(() -> { //Searches the name index
+					indexed.clear();
+					indexed.add(names.search(folder, search[1]));
+				}, 20);
+
+				System.out.printf("  %-6s %-11s %-7s | walk %,6d requests %,10.3f ms | index %,10.3f ms | %,6d found%s%n", search[0],
+								  search[1], folder == root ? "all" : "folder7", visited[0], crawlTime / 1e6, indexTime / 1e6,
+								  indexed.get(0).size(), walked.size() == indexed.get(0).size() ? "" : " (walk found " + walked.size() + ")");
+			}
+		}
+
+		long removeTime = time(() -> { //Removes, then adds back, every file of a folder; each shares its name with 999 others
+			for (SaarujanItem file : single)
+				names.remove(file);
+			for (SaarujanItem file : single)
+				names.add(file);
+		}, 20);
+		System.out.printf("  remove and add 1,000 files, 1,000 items per name | %,10.3f ms | %,d items%n", removeTime / 1e6, names.size());
+	}
+
+	private static class LegacyItem {
+		private String name, path, uploader; //The name, the full path, and the uploader of the item
+		private SaarujanDate uploadDate; //The upload date of the item
+		private int backupLine; //The line of the item in the backup
+		private long generation; //The generation of the last change inside the item
+		private ArrayList<LegacyItem> items; //The children, if the item is a folder; null if it is a file
+
+		private LegacyItem(String name, String path, String uploader, SaarujanDate uploadDate) {
+			this.name = name; //Stores the values
+			this.path = path;
+			this.uploader = uploader;
+			this.uploadDate = uploadDate;
+			backupLine = -1; //The item isn't in the backup yet
+			generation = 0;
+			items = null; //Folders initialize their children
+		}
+	}
+
+	private static class LinkedQueue {
+		private SaarujanNode head; //Stores the head Node of the queue
+		private byte length, capacity; //Stores the current length of the queue, and the maximum capacity the queue can store
+
+		public LinkedQueue(byte capacity) {
+			head = null; //Sets the head to null
+			length = 0; //Sets the length to 0, as the queue is empty
+			this.capacity = capacity; //Sets the capacity to the given capacity
+		}
+
+		public String enqueue(String value) {
+			if (head == null) { //If the queue is empty
+				head = new SaarujanNode(value); //The head is assigned a new Node, with the given value
+			} else {
+				SaarujanNode n = head; //Walks to the last Node, on every call
+				while (n.next != null) {
+					n = n.next;
+				}
+				n.next = new SaarujanNode(value); //Pointing the last Node to a new Node, with the given value
+			}
+
+			++length; //Incrementing the length by 1
+			return length > capacity ? dequeue() : null; //If the queue exceeds its capacity, the first value is dequeued and returned
+		}
+
+		public String dequeue() {
+			if (head == null) //If the queue is empty
+				return null; //Null is returned, as there is no value to dequeue
+
+			String result = head.value; //Storing the value of the first Node
+			head = head.next; //Shifting the queue to the next Node, in order to remove the first Node
+			--length; //Decrementing the length
+			return result; //Returning the saved result
+		}
+
+		public boolean remove(String value) {
+			if (head == null) { //If the queue is empty
+				return false; //Returning false, as the queue doesn't contain any values
+			} else if (head.value == value) { //If the first Node is the same String
+				head = head.next;
+				--length;
+				return true;
+			}
+
+			for (SaarujanNode n = head; n.next != null; n = n.next) { //Iterating through the queue
+				if (n.next.value == value) { //If the next Node is the same String
+					n.next = n.next.next;
+					--length;
+					return true;
+				}
+			}
+			return false; //Returning false, as the given String wasn't found in the queue
+		}
+	}
+
+	public static void main(String[] args) {
+		String name = args.length > 0 ? args[0] : "all"; //Stores the benchmark to run
+		if (name.equals("all") || name.equals("framing")) //If the framing benchmark should run
+			framing();
+		if (name.equals("all") || name.equals("downloads")) //If the download benchmark should run
+			downloads();
+		if (name.equals("all") || name.equals("commits")) //If the commit benchmark should run
+			commits();
+		if (name.equals("all") || name.equals("replay")) //If the replay benchmark should run, over the given trace if there is one
+			replay(args.length > 1 ? args[1] : null);
+		if (name.equals("all") || name.equals("offheap")) //If the off-heap benchmark should run
+			offHeap();
+		if (name.equals("all") || name.equals("queues")) //If the queue benchmark should run
+			queues();
+		if (name.equals("all") || name.equals("footprint")) //If the footprint benchmark should run
+			footprint();
+		if (name.equals("all") || name.equals("dates")) //If the date benchmark should run
+			dates();
+		if (name.equals("all") || name.equals("search")) //If the search benchmark should run
+			search();
+	}
+}
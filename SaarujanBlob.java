@@ -0,0 +1,100 @@
+/** Blob Class
+* Description: One file body in the server's blob store, shared by every file with the same content. Bodies are found by the
+  SHA-256 hash of their bytes, and each blob counts the files that point to it, so its bytes only become garbage once the
+  last of them is deleted. A backup copies each blob into the next blob store once, no matter how many files point to it,
+  and the blob moves to that copy once the backup is used. Small bodies are kept in memory once for all of their files
+* constructor(String, Long, Long) - Stores the given hash (null if it isn't known), and the position and length of the body
+* digest() - Returns a new SHA-256 digest, so a body can be hashed one chunk at a time; null if it isn't supported
+* hash(Byte[]) - Returns the SHA-256 hash of the given bytes, as a hexadecimal String
+* getHash() - Returns the hash of the body, or null if it isn't known
+* getOffset() - Returns the position of the body in the blob store
+* getLength() - Returns the length of the body, in bytes
+* getData() - Returns the UTF-8 body, if it is kept in memory
+* setData(ByteBuffer) - Keeps the given UTF-8 body in memory, or clears it if the given body is null
+* retain() - Counts another file that points to the blob; returns the new count
+* release() - Stops counting a file that pointed to the blob; returns the new count
+* copy(Server) - Copies the body into the server's next blob store, unless it was already copied; returns its position there
+* commit() - Moves the blob to its copy, once the backup that copied it is used
+* abandon() - Forgets the copy, as the backup that made it failed
+**/
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public class SaarujanBlob {
+	private String hash; //The SHA-256 hash of the body; null for bodies saved before hashes were kept
+	private volatile long offset; //The position of the body in the blob store; only moved while no file is being read
+	private long length; //The length of the body
+	private long next; //The position of the body in the next blob store, once a backup copies it; -1 if it wasn't copied
+	private int references; //The amount of files that point to the blob
+	private volatile ByteBuffer data; //The UTF-8 body, if it is cached; may be outside of the heap, and is shared between sessions
+
+	public SaarujanBlob(String hash, long offset, long length) {
+		this.hash = hash; //Stores the hash
+		this.offset = offset; //Stores the position
+		this.length = length; //Stores the length
+		next = -1; //The body wasn't copied by a backup
+		references = 0; //No file points to the blob yet
+	}
+
+	public static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256"); //Returns a new digest
+		} catch (NoSuchAlgorithmException e) { //Every Java platform supports SHA-256
+			return null; //The body is saved without a hash, so it is never shared
+		}
+	}
+
+	public static String hash(byte[] bytes) {
+		MessageDigest digest = digest(); //Stores a new digest
+		return digest == null ? null : HexFormat.of().formatHex(digest.digest(bytes)); //Returns the hash, or null if it isn't supported
+	}
+
+	public String getHash() {
+		return hash; //Returns the hash
+	}
+
+	public long getOffset() {
+		return offset; //Returns the position
+	}
+
+	public long getLength() {
+		return length; //Returns the length
+	}
+
+	public ByteBuffer getData() {
+		return data; //Returns the body, or null if it isn't in memory
+	}
+
+	public void setData(ByteBuffer data) {
+		this.data = data; //Sets the body
+	}
+
+	public synchronized int retain() {
+		return ++references; //Counts the file, and returns the new count
+	}
+
+	public synchronized int release() {
+		return --references; //Stops counting the file, and returns the new count
+	}
+
+	public synchronized long copy(SaarujanServer server) throws IOException {
+		if (next == -1) //If the body wasn't copied yet, it is copied without passing through memory
+			next = server.getNextBlobs().copy(server.getBlobs(), offset, length);
+		return next; //Returns the position of the copy
+	}
+
+	public synchronized void commit() {
+		if (next == -1) //If the blob was already moved, or wasn't copied
+			return; //Exits the method
+
+		offset = next; //Moves to the copy
+		next = -1; //The next backup copies the blob again
+	}
+
+	public synchronized void abandon() {
+		next = -1; //Forgets the copy
+	}
+}
@@ -0,0 +1,130 @@
+/** Blob Store Class
+* Description: Stores the data of files as raw bytes, one after another, in a single file that pairs with the server's backup;
+  the backup only keeps the position and length of each file's data, so data can be streamed in and out in chunks
+  without ever holding a whole file in memory
+* constructor(String, Boolean) - Opens the blob file at the given path; if told to, any existing data is removed
+* reserve(Long) - Reserves space for the given amount of bytes at the end of the store, and returns its position
+* write(Long, ByteBuffer) - Writes the given bytes at the given position
+* read(Long, ByteBuffer) - Reads bytes from the given position into the given buffer, and returns the amount read
+* append(Byte[]) - Adds the given bytes to the end of the store, and returns their position
+* copy(BlobStore, Long, Long) - Copies the given range of another store onto the end of this store, and returns its new position
+* transferTo(Long, Long, WritableByteChannel) - Sends the given range straight from the file to the given channel, without
+												 copying it into the heap
+* map(Long, Long) - Maps the given range into memory outside of the heap, so it can be written to a channel without copying it
+* slices(Long, Long) - Maps the given range in pieces that each fit in a buffer; every piece but the last holds whole chunks, so
+					   the pieces are sent as the same frames as the whole range. They stay valid after the store is deleted
+* size() - Returns the size of the store, including reserved space
+* force() - Writes all data that is still held by the operating system to the disk
+* close() - Closes the blob file
+* delete() - Closes and deletes the blob file
+**/
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.nio.file.StandardOpenOption;
+
+public class SaarujanBlobStore {
+	private final static long SLICE_SIZE = (long) SaarujanFrame.CHUNK_SIZE << 14; //The largest piece that slices() maps; 1 GB of whole chunks
+	private String path; //The path of the blob file
+	private FileChannel channel; //The channel of the blob file; positional reads and writes can be done by many sessions at once
+	private long end; //The position where the next reserved space starts
+
+	public SaarujanBlobStore(String path, boolean truncate) throws IOException {
+		this.path = path; //Stores the path
+		if (truncate) //If the store should start empty
+			channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+									   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		else //If the existing data should be kept
+			channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+									   StandardOpenOption.WRITE);
+		end = channel.size(); //New data is stored after the existing data
+	}
+
+	public synchronized long reserve(long length) {
+		long position = end; //Stores the start of the reserved space
+		end += length; //Moves the end past the reserved space
+		return position; //Returns the start of the reserved space
+	}
+
+	public void write(long position, ByteBuffer data) throws IOException {
+		while (data.hasRemaining()) { //Loops until every byte is written, as a channel can write fewer bytes than requested
+			position += channel.write(data, position); //Writes the bytes, and moves past them
+		}
+	}
+
+	public int read(long position, ByteBuffer dest) throws IOException {
+		int total = 0; //Stores the amount of bytes read
+		while (dest.hasRemaining()) { //Loops until the buffer is full
+			int count = channel.read(dest, position + total); //Reads as many bytes as possible
+			if (count == -1) //If the end of the store was reached
+				break; //Exits the loop
+
+			total += count; //Adds the read bytes to the total
+		}
+
+		return total; //Returns the amount of bytes read
+	}
+
+	public long append(byte[] data) throws IOException {
+		long position = reserve(data.length); //Reserves space for the data
+		write(position, ByteBuffer.wrap(data)); //Writes the data into the reserved space
+		return position; //Returns the position of the data
+	}
+
+	public long copy(SaarujanBlobStore source, long position, long length) throws IOException {
+		long destination = reserve(length); //Reserves space for the data
+		long copied = 0; //Stores the amount of bytes copied
+		while (copied < length) { //Loops until every byte is copied; the bytes move between the files without entering the heap
+			long count = source.channel.transferTo(position + copied, length - copied, channel.position(destination + copied));
+			if (count <= 0) //If the source store ended early
+				throw new IOException("Blob store " + source.path + " is missing data!");
+
+			copied += count; //Adds the copied bytes to the total
+		}
+
+		return destination; //Returns the new position of the data
+	}
+
+	public void transferTo(long position, long length, WritableByteChannel target) throws IOException {
+		long sent = 0; //Stores the amount of bytes sent
+		while (sent < length) { //Loops until every byte is sent; the operating system may send fewer bytes than requested
+			long count = channel.transferTo(position + sent, length - sent, target); //Sends the bytes from the file to the channel
+			if (count <= 0 && position + sent >= channel.size()) //If the store ended early
+				throw new IOException("Blob store " + path + " is missing data!");
+
+			sent += count; //Adds the sent bytes to the total
+		}
+	}
+
+	public MappedByteBuffer map(long position, long length) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, length); //Maps the range; it stays valid after the store is closed
+	}
+
+	public ArrayList<ByteBuffer> slices(long position, long length) throws IOException {
+		ArrayList<ByteBuffer> result = new ArrayList<ByteBuffer>(); //Stores the mapped pieces
+		for (long mapped = 0; mapped < length; mapped += SLICE_SIZE) //Maps each piece, until the whole range is mapped
+			result.add(map(position + mapped, Math.min(length - mapped, SLICE_SIZE)));
+		return result; //Returns the pieces
+	}
+
+	public synchronized long size() {
+		return end; //Returns the end of the store
+	}
+
+	public void force() throws IOException {
+		channel.force(false); //Writes the data to the disk
+	}
+
+	public void close() throws IOException {
+		channel.close(); //Closes the channel
+	}
+
+	public void delete() throws IOException {
+		channel.close(); //Closes the channel
+		new File(path).delete(); //Deletes the blob file
+	}
+}
@@ -0,0 +1,137 @@
+/** Cache Class
+* Description: Keeps the data of recently used files in memory, bounded by the total bytes of the data rather than the amount
+  of files. Data is kept once for every file that shares the same blob. Entries are held in order of their last use, so
+  finding, adding, and clearing the least recently used entry are all O(1); once the budget is exceeded, the least recently
+  used data is cleared from its file. Data larger than the admission limit is never kept, so one large file cannot clear the
+  rest of the cache. If told to, the cache counts every use in a Sketch, and new data is only kept if it was used more
+  often than each entry it would clear (TinyLFU), so a burst of files that are used once cannot clear the popular ones
+* constructor(Long, Long, Boolean) - Sets the budget, the largest amount of bytes that a single entry can use, and whether new
+									 data has to be used more often than the data it replaces
+* key(File) - Helper method that returns what the data of the given file is kept under; its blob, or the file if it has none
+* admits(File, Long) - Returns whether the data of the given file, of the given amount of bytes, should be kept; with a Sketch,
+					   it has to be used more often than every least recently used entry that would be cleared to make room
+* touch(File) - Counts a use of the given file's data, and marks it as the most recently used; returns false if it isn't kept,
+				counting a miss
+* put(File, Long) - Keeps the data of the given file, using the given amount of bytes, then clears the least recently used data
+					until the cache is within its budget
+* remove(File) - Stops keeping the data of the given file, and clears it
+* setBlob(File, Blob) - Points the given file, whose data was on its line in an older backup, to the given blob; data that was
+						kept under the file is forgotten first, as it would no longer be found, or cleared, through the file
+* clear(Object) - Helper method that clears the data that is kept under the given key
+* used() - Returns the amount of bytes used by the kept data
+* count() - Returns the amount of entries
+* hits() - Returns the amount of times that data was found in the cache
+* misses() - Returns the amount of times that data wasn't found in the cache
+**/
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class SaarujanCache {
+	private LinkedHashMap<Object, Long> entries; //The bytes used by each entry, from the least to the most recently used
+	private long budget, limit; //The most bytes that can be kept, and the most bytes that a single entry can use
+	private long used; //The amount of bytes used by every entry
+	private long hits, misses; //The amount of times that data was, and wasn't, found in the cache
+	private SaarujanSketch sketch; //Counts how often each entry was used recently; null if every entry is admitted
+
+	public SaarujanCache(long budget, long limit, boolean frequency) {
+		entries = new LinkedHashMap<Object, Long>(16, 0.75f, true); //Orders the entries by their last use, rather than when they were added
+		this.budget = budget; //Sets the budget
+		this.limit = Math.min(limit, budget); //Sets the limit; no entry can use more than the whole budget
+		used = hits = misses = 0; //The cache starts empty
+		//Sizes the sketch for as many entries as the budget holds, if every entry were 4 KB
+		sketch = frequency ? new SaarujanSketch((int) Math.min(budget / 4096, Integer.MAX_VALUE)) : null;
+	}
+
+	private static Object key(SaarujanFile file) {
+		SaarujanBlob blob = file.getBlob(); //Stores the blob once, as a backup may point the file to another blob
+		return blob != null ? blob : file; //Files that share a blob share the same entry
+	}
+
+	public synchronized boolean admits(SaarujanFile file, long bytes) {
+		if (bytes < 0 || bytes > limit) //If the data is too large to keep
+			return false; //Returns false
+		if (sketch == null || used + bytes <= budget) //If every entry is admitted, or there is room without clearing any entry
+			return true; //Returns true
+
+		int frequency = sketch.frequency(key(file)); //Stores how often the new data was used recently
+		long needed = used + bytes - budget; //Stores the amount of bytes that have to be cleared
+		for (Map.Entry<Object, Long> eldest : entries.entrySet()) { //Loops through the entries that would be cleared, least recently used first
+			if (needed <= 0) //If enough bytes would be cleared
+				break; //Exits the loop
+			if (sketch.frequency(eldest.getKey()) >= frequency) //If the entry is used at least as often, it is kept instead
+				return false; //Returns false
+
+			needed -= eldest.getValue(); //Counts the bytes of the entry
+		}
+
+		return true; //The new data is used more often than every entry it would clear
+	}
+
+	public synchronized boolean touch(SaarujanFile file) {
+		Object key = key(file); //Stores the key of the file's data
+		if (sketch != null) //Counts the use, whether or not the data is kept
+			sketch.increment(key);
+		if (entries.get(key) != null && file.getCachedData() != null) { //If the data is kept; getting it makes it the most recently used
+			++hits; //Counts a hit
+			return true; //Returns true
+		}
+
+		Long bytes = entries.remove(key); //Forgets the entry, in case its data was cleared from outside of the cache
+		if (bytes != null)
+			used -= bytes;
+		++misses; //Counts a miss
+		return false; //Returns false, so the data is read again
+	}
+
+	public synchronized void put(SaarujanFile file, long bytes) {
+		Long previous = entries.put(key(file), bytes); //Adds the entry as the most recently used
+		used += bytes - (previous == null ? 0 : previous); //Adds its bytes, replacing the previous bytes of the same entry
+
+		Iterator<Map.Entry<Object, Long>> iterator = entries.entrySet().iterator(); //Starts at the least recently used entry
+		while (used > budget && iterator.hasNext()) { //Loops until the cache is within its budget
+			Map.Entry<Object, Long> eldest = iterator.next(); //Stores the least recently used entry
+			used -= eldest.getValue(); //Removes its bytes
+			clear(eldest.getKey()); //Clears its data, so it can be collected
+			iterator.remove(); //Removes the entry
+		}
+	}
+
+	public synchronized void remove(SaarujanFile file) {
+		Object key = key(file); //Stores the key of the file's data
+		Long bytes = entries.remove(key); //Removes the entry
+		if (bytes != null) //If the entry existed, its bytes are removed
+			used -= bytes;
+		clear(key); //Clears the data
+	}
+
+	public synchronized void setBlob(SaarujanFile file, SaarujanBlob blob) {
+		Long bytes = entries.remove(file); //Removes the entry that was kept under the file, if there is one
+		if (bytes != null) //If the entry existed, its bytes are removed
+			used -= bytes;
+		file.setBlob(blob); //Points the file to the blob, which also clears the data that was on the file
+	}
+
+	private static void clear(Object key) {
+		if (key instanceof SaarujanBlob) //If the data is shared through a blob, it is cleared for every file that shares it
+			((SaarujanBlob) key).setData(null);
+		else //If the data is on the file itself
+			((SaarujanFile) key).setData(null);
+	}
+
+	public synchronized long used() {
+		return used; //Returns the used bytes
+	}
+
+	public synchronized int count() {
+		return entries.size(); //Returns the amount of entries
+	}
+
+	public synchronized long hits() {
+		return hits; //Returns the amount of hits
+	}
+
+	public synchronized long misses() {
+		return misses; //Returns the amount of misses
+	}
+}
@@ -0,0 +1,327 @@
+/** Channel Session Class
+* Description: Subclass of Session, which handles a client that is connected through a non-blocking SocketChannel;
+  the Selector thread reads frames into this session, and the actions of the client run on the Selector's worker pool,
+  so idle clients don't hold onto a thread. While a file is being transferred, reading pauses once QUEUE_LIMIT bytes are
+  waiting for the worker, and the worker pauses once QUEUE_LIMIT bytes are waiting for the channel; a client that stops
+  reading for RECV_TIMEOUT seconds is closed, so it cannot hold a worker
+* constructor(Server, Selector, SocketChannel) - Stores the server, the Selector that owns the channel, and the channel
+* register(Selector) - Registers the channel for reading with the given selector
+* queue(ByteBuffer) - Helper method that queues the remaining bytes of the given buffer as a frame, and returns its size
+* send(String) - Queues a message to the client; the Selector thread writes it once the channel is writable
+* sendChunk(ByteBuffer) - Queues a chunk to the client, waiting while too much output is already queued
+* sendBuffer(ByteBuffer) - Queues the remaining bytes of the given buffer as chunks, without copying them, so the Selector thread
+						   writes them to the channel; cached data is never changed, so it can be written after it is cleared.
+						   Throws an IOException if the client left, or stopped reading, before every chunk was queued
+* waitForOutput() - Helper method that waits while too much output is already queued; if none of it is written for RECV_TIMEOUT
+					seconds, the session is aborted
+* take() - Helper method that returns the next frame from the client, waiting until the Selector thread has read it
+* recv() - Returns the next message from the client, waiting until the Selector thread has read it
+* recvChunk() - Returns the next frame from the client without decoding it, waiting until the Selector thread has read it
+* read(ByteBuffer) - Reads from the channel into the given buffer, and parses every complete frame
+* abort() - Closes the channel at once, after the Selector thread failed while handling it or the client stopped reading, and
+			lets the worker know that the session should end
+* disconnect() - Stops reading from a client that has left, and lets the worker know that the session should end
+* fill(ByteBuffer, ByteBuffer) - Helper method that copies as many bytes as possible from one buffer into another
+* deliver(Byte[]) - Hands a complete frame to the worker that is handling this client, or starts a new worker task
+* process(Byte[]) - Handles the given message, and every message that arrives while it is being handled
+* flush() - Writes as much queued output as the channel accepts without blocking
+* interest() - Helper method that returns what the Selector should wait for on this session's channel
+* updateInterest() - Lets the Selector know whether this session has output waiting to be written, or can read again
+* close() - Closes the connection, once the queued output has been written
+* closeNow() - Closes the channel immediately
+**/
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SaarujanChannelSession extends SaarujanSession {
+	private final static int RECV_TIMEOUT = 60; //The amount of seconds a worker waits for the rest of an action, before giving up
+	private final static int QUEUE_LIMIT = 1 << 20; //The amount of bytes that can wait in either direction, before that direction pauses
+	private SaarujanSelector selector; //The Selector that reads from and writes to this session's channel
+	private SocketChannel channel; //The non-blocking channel to the client
+	private SelectionKey key; //The key of the channel in the Selector
+	private ByteBuffer header, payload; //header - the 16 digit size of the current frame; payload - the message of the current frame
+	private BlockingQueue<byte[]> inbound; //The frames that were read, but haven't been handled yet
+	private Queue<ByteBuffer> outbound; //The frames that were sent, but haven't been written to the channel yet
+	private AtomicLong inboundBytes, outboundBytes; //The amount of bytes waiting in each queue
+	private boolean busy; //Whether a worker is currently handling this client
+	private volatile boolean closing, disconnected; //closing - the session should close once its output is written; disconnected - the client left
+
+	public SaarujanChannelSession(SaarujanServer server, SaarujanSelector selector, SocketChannel channel) {
+		super(server); //Calling the parent constructor, without any streams
+		this.selector = selector; //Stores the Selector
+		this.channel = channel; //Stores the channel
+		header = ByteBuffer.allocate(SaarujanFrame.HEADER_SIZE); //The size of a frame is always sent as 16 digits
+		payload = null; //No frame is being read yet
+		inbound = new LinkedBlockingQueue<byte[]>(); //Initializes the queue of received frames
+		outbound = new ConcurrentLinkedQueue<ByteBuffer>(); //Initializes the queue of frames to write
+		inboundBytes = new AtomicLong(); //No bytes are waiting to be handled
+		outboundBytes = new AtomicLong(); //No bytes are waiting to be written
+		busy = false; //No worker is handling this client yet
+		closing = false; //The session is open
+		disconnected = false; //The client is connected
+	}
+
+	public void register(Selector events) throws IOException {
+		channel.configureBlocking(false); //The Selector thread must never wait on this channel
+		key = channel.register(events, SelectionKey.OP_READ, this); //Registers the channel, with this session attached
+	}
+
+	private int queue(ByteBuffer message) {
+		int size = message.remaining(); //Stores the size of the message
+		byte[] frame = new byte[SaarujanFrame.HEADER_SIZE + size]; //Stores the size, followed by the message
+		SaarujanFrame.encodeHeader(size, frame, 0); //Adds the size of the message as 16 characters
+		message.get(frame, SaarujanFrame.HEADER_SIZE, size); //Adds the bytes of the message
+		outboundBytes.addAndGet(frame.length); //Counts the frame as waiting
+		outbound.add(ByteBuffer.wrap(frame)); //Queues the frame
+		selector.requestWrite(this); //Lets the Selector thread know that there is output to write
+		return frame.length; //Returns the size of the frame
+	}
+
+	protected void send(String s) {
+		queue(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8))); //Queues the encoded message
+	}
+
+	protected void sendChunk(ByteBuffer chunk) {
+		queue(chunk.duplicate()); //Queues a copy of the chunk, so the caller can reuse its buffer
+		waitForOutput(); //Waits until the client has caught up
+	}
+
+	protected void sendBuffer(ByteBuffer data) throws IOException {
+		while (data.hasRemaining()) { //Loops until every chunk is queued
+			if (disconnected) //If the client left, or stopped reading, the rest of the data is never written
+				throw new IOException("Client stopped receiving data!");
+
+			int count = Math.min(data.remaining(), SaarujanFrame.CHUNK_SIZE); //Stores the size of the chunk
+			ByteBuffer header = ByteBuffer.allocate(SaarujanFrame.HEADER_SIZE); //Stores the size of the chunk
+			SaarujanFrame.encodeHeader(count, header.array(), 0); //Adds the size of the chunk as 16 characters
+			outboundBytes.addAndGet(SaarujanFrame.HEADER_SIZE + count); //Counts the frame as waiting
+			outbound.add(header); //Queues the size; the size and the chunk are added by the same worker, so they stay together
+			outbound.add(data.slice(data.position(), count)); //Queues the chunk, which still points into the given buffer
+			selector.requestWrite(this); //Lets the Selector thread know that there is output to write
+			data.position(data.position() + count); //Moves past the queued chunk
+			waitForOutput(); //Waits until the client has caught up
+		}
+	}
+
+	private void waitForOutput() {
+		long deadline = System.currentTimeMillis() + RECV_TIMEOUT * 1000L; //Stores when the client is given up on, if it reads nothing
+		long waiting = outboundBytes.get(); //Stores the amount of bytes waiting, to tell whether the client read any
+		try {
+			synchronized (outbound) { //The Selector thread notifies this lock once output has been written
+				//Waits while the client is reading slower than the file is being sent, so the whole file isn't queued in memory
+				while (outboundBytes.get() > QUEUE_LIMIT && key.isValid() && !disconnected) {
+					long left = deadline - System.currentTimeMillis(); //Stores how long the client has left to read
+					if (left <= 0) { //If the client read nothing in time, it cannot hold this worker any longer
+						server.log("Timed out while sending data to client!", true); //Logs a warning message
+						abort(); //Closes the connection, and ends the session
+						return; //Exits the method
+					}
+
+					outbound.wait(Math.min(left, 1000)); //Checks again at least once a second, in case the client left
+					if (outboundBytes.get() < waiting) { //If the client read some of the output, it is given more time
+						waiting = outboundBytes.get();
+						deadline = System.currentTimeMillis() + RECV_TIMEOUT * 1000L;
+					}
+				}
+			}
+		} catch (InterruptedException e) {} //If the server is stopping, the rest of the file is queued without waiting
+	}
+
+	private byte[] take() {
+		try {
+			if (disconnected && inbound.isEmpty()) //If the client left, and every frame has been handled
+				return null; //Null is returned, so the session ends
+
+			byte[] message = inbound.poll(RECV_TIMEOUT, TimeUnit.SECONDS); //Waits for the Selector thread to read the next frame
+			if (message == null) { //If the client didn't send anything in time
+				server.log("Timed out while receiving data from client!", true); //Logs a warning message
+				return null; //Returns null
+			}
+
+			long waiting = inboundBytes.addAndGet(-message.length); //Stores the amount of bytes still waiting to be handled
+			if (waiting <= QUEUE_LIMIT && waiting + message.length > QUEUE_LIMIT) //If reading was paused by this frame
+				selector.requestWrite(this); //The Selector thread starts reading again
+			return message; //Returns the received frame
+		} catch (InterruptedException e) { //If the worker was interrupted, as the server is stopping
+			return null; //Returns null
+		}
+	}
+
+	protected String recv() {
+		byte[] message = take(); //Waits for the next frame
+		return message == null ? "" : new String(message, StandardCharsets.UTF_8); //Returns the decoded frame, or an empty string
+	}
+
+	protected ByteBuffer recvChunk() {
+		byte[] message = take(); //Waits for the next frame
+		if (message == null || (message.length == 0 && disconnected)) //If the client left, or didn't send anything in time
+			return null; //Returns null
+		return ByteBuffer.wrap(message); //Returns the frame
+	}
+
+	public void read(ByteBuffer buffer) {
+		try {
+			buffer.clear(); //Empties the shared buffer
+			if (channel.read(buffer) == -1) { //If the client closed the connection
+				disconnect(); //Stops reading from the channel
+				return; //Exits the method
+			}
+
+			buffer.flip(); //Prepares the read bytes to be parsed
+			while (buffer.hasRemaining()) { //Loops until every read byte has been parsed
+				if (payload == null) { //If the size of the frame is still being read
+					fill(buffer, header); //Adds as much of the size as possible
+					if (header.hasRemaining()) //If the size isn't complete yet
+						break; //Waits for the next read
+
+					long size = SaarujanFrame.parseHeader(header.array(), 0); //Parses the size; an invalid size ends the session
+					SaarujanFrame.checkSize(size, SaarujanFrame.MAX_SIZE); //If the frame is larger than the protocol allows, the session ends
+					header.clear(); //Prepares the header for the next frame
+					payload = ByteBuffer.allocate((int) size); //Prepares a buffer for the message
+				}
+
+				fill(buffer, payload); //Adds as much of the message as possible
+				if (!payload.hasRemaining()) { //If the whole message was read
+					deliver(payload.array()); //Hands the message to a worker; it is only decoded if it is text
+					payload = null; //Prepares for the next frame
+				}
+			}
+		} catch (IOException e) { //If the connection was reset
+			disconnect(); //Stops reading from the channel
+		}
+	}
+
+	public void abort() {
+		disconnected = true; //The client is treated as if it left
+		payload = null; //Forgets the frame that was being read
+		closeNow(); //Closes the channel, and removes it from the Selector
+		deliver(new byte[0]); //An empty message lets the worker know that the session should end
+	}
+
+	private void disconnect() {
+		disconnected = true; //The client has left
+		if (key.isValid()) //If the channel is still registered
+			key.interestOps(0); //Stops reading from the channel
+		deliver(new byte[0]); //An empty message lets the worker know that the session should end
+	}
+
+	private static void fill(ByteBuffer source, ByteBuffer destination) {
+		int count = Math.min(source.remaining(), destination.remaining()); //Stores the amount of bytes that can be copied
+		destination.put(source.slice(source.position(), count)); //Copies the bytes
+		source.position(source.position() + count); //Moves past the copied bytes
+	}
+
+	private void deliver(byte[] message) {
+		synchronized (this) { //The busy flag is shared between the Selector thread and the worker
+			if (busy) { //If a worker is already handling this client
+				inbound.add(message); //The message is queued; it is either part of the current action, or the next action
+				if (inboundBytes.addAndGet(message.length) > QUEUE_LIMIT && key.isValid()) //If the worker is falling behind
+					key.interestOps(interest()); //Stops reading until the worker catches up
+				return; //Exits the method
+			}
+
+			busy = true; //A worker will now handle this client
+		}
+
+		selector.execute(() -> process(message)); //Handles the message on the worker pool
+	}
+
+	private void process(byte[] message) {
+		while (true) { //Loops until there are no messages waiting to be handled
+			boolean open; //Stores whether the connection should stay open
+			try {
+				open = handleMessage(new String(message, StandardCharsets.UTF_8)); //Handles the decoded message
+			} catch (Exception e) { //If the action fails, only this client is affected
+				server.log("Session ended unexpectedly!", true); //An error message is logged
+				open = false; //The connection should be closed
+			}
+
+			if (!open) { //If the client logged out, or the connection should be closed
+				close(); //Closes the connection; the session stays busy, so no more messages are handled
+				return; //Exits the method
+			}
+
+			synchronized (this) { //The busy flag is shared between the Selector thread and the worker
+				message = inbound.poll(); //Takes the next action, if it arrived while this one was being handled
+				if (message == null) { //If the client is idle
+					busy = false; //The worker is released
+					return; //Exits the method
+				}
+			}
+			long waiting = inboundBytes.addAndGet(-message.length); //Stores the amount of bytes still waiting to be handled
+			if (waiting <= QUEUE_LIMIT && waiting + message.length > QUEUE_LIMIT) //If reading was paused by this frame
+				selector.requestWrite(this); //The Selector thread starts reading again
+		}
+	}
+
+	public void flush() {
+		try {
+			while (!outbound.isEmpty()) { //Loops until every queued frame is written
+				ByteBuffer frame = outbound.peek(); //Stores the first queued frame
+				channel.write(frame); //Writes as much of the frame as the channel accepts
+				if (frame.hasRemaining()) //If the client is slow, the rest is written once the channel is writable again
+					return; //Exits the method
+
+				outbound.poll(); //Removes the written frame
+				if (outboundBytes.addAndGet(-frame.capacity()) <= QUEUE_LIMIT) { //If a worker may be waiting to queue more output
+					synchronized (outbound) {
+						outbound.notifyAll(); //Lets the worker continue
+					}
+				}
+			}
+
+			key.interestOps(interest()); //Stops waiting for the channel to be writable
+			if (closing) //If the session should be closed
+				closeNow(); //Closes the channel, now that every frame was written
+		} catch (IOException e) { //If the connection was reset
+			closeNow(); //Closes the channel
+		}
+	}
+
+	private int interest() {
+		int ops = 0; //Stores what the Selector should wait for
+		if (!disconnected && inboundBytes.get() <= QUEUE_LIMIT) //If the client is connected, and the worker is keeping up
+			ops |= SelectionKey.OP_READ; //Waits for the client to send data
+		if (!outbound.isEmpty()) //If there is output waiting to be written
+			ops |= SelectionKey.OP_WRITE; //Waits for the channel to be writable
+		return ops; //Returns the interest set
+	}
+
+	public void updateInterest() {
+		if (!key.isValid()) //If the channel was already closed
+			return; //Exits the method
+
+		if (outbound.isEmpty() && closing) //If there is no output, and the session should be closed
+			closeNow(); //Closes the channel
+		else
+			key.interestOps(interest()); //Waits for the channel to be writable, or readable again
+	}
+
+	public void close() {
+		closing = true; //The session is closed once its output is written
+		selector.requestWrite(this); //Lets the Selector thread close the channel
+	}
+
+	public void closeNow() {
+		try {
+			key.cancel(); //Removes the channel from the Selector
+			channel.close(); //Closes the channel
+		} catch (IOException e) { //If any exception occurs
+			server.log("Error while closing connection!", true); //An error message is logged
+		}
+		synchronized (outbound) {
+			outbound.notifyAll(); //Lets a waiting worker know that the output will never be written
+		}
+		server.endSession(this); //Lets the server know that this session has ended
+	}
+}
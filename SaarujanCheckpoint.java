@@ -0,0 +1,166 @@
+/** Checkpoint Class
+* Description: A versioned binary image of the file system (checkpoint.bin), which a restart reads instead of decrypting and
+  parsing every line of the backup that it covers. Names are length-prefixed UTF-8, uploaders are ids into a string table,
+  dates are packed into an int, and files keep their size, and the hash and position of their data in the blob store. Numbers are
+  written with as few bytes as they need, so small values such as lengths and ids take a single byte. Each folder is
+  followed by the amount of its children, then its children, so no path is saved. The whole image is read through a single
+  mapped ByteBuffer, and is checked against the CRC-32 that ends it; the text backup can still be loaded without an image
+* constructor(String) - Stores the path of the image file
+* writeNumber(DataOutputStream, Long) - Writes the given number in 7-bit groups, with -1 and other small negatives kept short
+* readNumber(ByteBuffer) - Reads a number that was written by writeNumber()
+* collect(Folder, Map) - Helper recursive method that adds the uploader of every item in the given folder to the string table
+* writeFolder(DataOutputStream, Folder, Map) - Helper recursive method that writes the children of the given folder
+* save(Folder, Boolean, Int) - Saves the children of the given root directory as the image of the given backup number, covering its
+							   lines up to the given line; the file is forced to the disk, then replaces the image at once
+* readFolder(ByteBuffer, String, String[], List, List) - Helper recursive method that reads the children of the folder at the given
+														  path, adding the folders and files to the given lists in order
+* load(Boolean, Int, String, List, List) - Reads the image into the given lists, if it belongs to the given backup number and
+										   covers no more than the given amount of lines; returns the line it covers, or -1
+**/
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+public class SaarujanCheckpoint {
+	private final static int MAGIC = 0x53414152; //Marks the start of an image ("SAAR")
+	private final static short VERSION = 2; //The version of the format; images of other versions are ignored
+	private final static byte FILE = 0, FOLDER = 1; //Marks whether each item is a file or a folder
+	private String path; //The path of the image file
+
+	public SaarujanCheckpoint(String path) {
+		this.path = path; //Stores the path
+	}
+
+	public static void writeNumber(DataOutputStream out, long value) throws IOException {
+		long bits = value << 1 ^ value >> 63; //Moves the sign to the lowest bit, so small negative numbers have few bits
+		while ((bits & ~0x7FL) != 0) { //While more than 7 bits are left
+			out.writeByte((int) (bits & 0x7F | 0x80)); //Writes the lowest 7 bits, marking that more bytes follow
+			bits >>>= 7; //Moves onto the next 7 bits
+		}
+		out.writeByte((int) bits); //Writes the last 7 bits
+	}
+
+	public static long readNumber(ByteBuffer in) {
+		long bits = 0; //Stores the bits that were read
+		for (int shift = 0; ; shift += 7) { //Loops through the bytes, 7 bits at a time
+			byte current = in.get(); //Reads the next byte
+			bits |= (long) (current & 0x7F) << shift; //Adds its 7 bits
+			if (current >= 0) //If no more bytes follow
+				return bits >>> 1 ^ -(bits & 1); //Returns the number, with its sign moved back
+		}
+	}
+
+	private static void collect(SaarujanFolder folder, Map<String, Integer> uploaders) {
+		for (SaarujanItem item : folder) { //Loops through the children of the folder
+			if (item.getUploader() != null) //If the child has an uploader, it is given the next id
+				uploaders.putIfAbsent(item.getUploader(), uploaders.size());
+			if (item instanceof SaarujanFolder) //If the child is a folder, its children are added as well
+				collect((SaarujanFolder) item, uploaders);
+		}
+	}
+
+	private static void writeFolder(DataOutputStream out, SaarujanFolder folder, Map<String, Integer> uploaders) throws IOException {
+		writeNumber(out, folder.itemCount()); //Writes the amount of children
+		for (SaarujanItem item : folder) { //Loops through the children, which are already sorted
+			out.writeByte(item instanceof SaarujanFolder ? FOLDER : FILE); //Writes whether it is a folder or a file
+			item.image(out, uploaders); //Writes the child
+			if (item instanceof SaarujanFolder) //If the child is a folder, its children are written after it
+				writeFolder(out, (SaarujanFolder) item, uploaders);
+		}
+	}
+
+	public void save(SaarujanFolder root, boolean number, int line) throws IOException {
+		LinkedHashMap<String, Integer> uploaders = new LinkedHashMap<String, Integer>(); //Stores the string table, in the order of the ids
+		collect(root, uploaders); //Fills the string table
+
+		File temp = new File(path + ".tmp"); //The image is saved beside the image file, then replaces it at once
+		FileOutputStream file = new FileOutputStream(temp); //Opens the new image file
+		CRC32 crc = new CRC32(); //Stores the checksum of everything before it
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 65536));
+		try {
+			out.writeInt(MAGIC); //Writes the header: the mark, the version, the backup number, and the covered line
+			out.writeShort(VERSION);
+			out.writeByte(number ? 1 : 0);
+			out.writeInt(line);
+			writeNumber(out, uploaders.size()); //Writes the string table
+			for (String uploader : uploaders.keySet()) {
+				byte[] bytes = uploader.getBytes(StandardCharsets.UTF_8); //Encodes the uploader
+				writeNumber(out, bytes.length); //Writes the length of the uploader, followed by the uploader
+				out.write(bytes);
+			}
+			writeFolder(out, root, uploaders); //Writes the file system
+			out.flush(); //Writes every buffered byte, so the checksum covers them
+			new DataOutputStream(file).writeInt((int) crc.getValue()); //Writes the checksum, outside of the checksum itself
+			file.getFD().sync(); //Forces the image to the disk, before it replaces the previous image
+		} finally {
+			out.close(); //Closes the new image file
+		}
+
+		Files.move(temp.toPath(), new File(path).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void readFolder(ByteBuffer in, String path, String[] uploaders, List<SaarujanFolder> folders,
+								   List<SaarujanFile> files) {
+		int count = (int) readNumber(in); //Reads the amount of children
+		for (int i = 0; i < count; ++i) { //Loops through the children
+			if (in.get() == FOLDER) { //If the child is a folder, its children are read after it
+				SaarujanFolder folder = new SaarujanFolder(); //Creates a new folder; the image will be loaded onto this
+				folder.load(in, path, uploaders);
+				if (folder.getDate() != null) //Folders that were only created along the path of another item are created again
+					folders.add(folder);
+				readFolder(in, folder.getPath(), uploaders, folders, files);
+			} else { //If the child is a file
+				SaarujanFile file = new SaarujanFile(); //Creates a new file; the image will be loaded onto this
+				file.load(in, path, uploaders);
+				files.add(file);
+			}
+		}
+	}
+
+	public int load(boolean number, int lines, String root, List<SaarujanFolder> folders, List<SaarujanFile> files) {
+		File image = new File(path); //Creates an instance of File
+		if (!image.exists()) //If no image was saved, such as on older servers
+			return -1; //The backup is read instead
+
+		try (FileChannel channel = FileChannel.open(image.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); //Maps the whole image at once
+			CRC32 crc = new CRC32(); //Checks the image against its checksum
+			crc.update(in.duplicate().limit(in.limit() - 4));
+			//If the image is damaged, of another version, or belongs to another backup
+			if (in.getInt(in.limit() - 4) != (int) crc.getValue() || in.getInt() != MAGIC || in.getShort() != VERSION ||
+				in.get() != (number ? 1 : 0))
+				return -1; //The backup is read instead
+
+			int line = in.getInt(); //Reads the covered line
+			if (line > lines) //If the image covers lines that were never saved
+				return -1; //The backup is read instead
+
+			String[] uploaders = new String[(int) readNumber(in)]; //Reads the string table
+			for (int i = 0; i < uploaders.length; ++i) {
+				byte[] bytes = new byte[(int) readNumber(in)]; //Allocates space for the uploader
+				in.get(bytes);
+				uploaders[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			readFolder(in, root, uploaders, folders, files); //Reads the file system
+			return line; //Returns the covered line
+		} catch (Exception e) { //If the image couldn't be read, or ends too early
+			folders.clear(); //Forgets the items that were read
+			files.clear();
+			return -1; //The backup is read instead
+		}
+	}
+}
@@ -1,17 +1,18 @@
 import java.net.Socket;
 import java.net.SocketException;
-import java.io.OutputStream;
-import java.io.InputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.HexFormat;
 import java.util.Scanner;
 import java.util.ArrayList;
 
 public class SaarujanClient {
-    private OutputStream sockOut; //The output stream to the server
-    private InputStream sockIn; //The input stream from the server
+    private SaarujanFrame frames; //Reads frames from, and writes frames to, the server's streams
     private Scanner input; //The scanner for user input
     private boolean isOwner; //A boolean stating whether the current user is the server owner or not
 	//Stores the client's username, the server name, the current path for navigation, and the download path where files should be saved
@@ -50,9 +51,7 @@ public class SaarujanClient {
 	
     private void send(String s) {
         try {
-            sockOut.write(String.format("%016d", s.getBytes().length).getBytes()); //Sends the size of the message as 16 digits
-            sockOut.write(s.getBytes()); //Writes the bytes of the message
-            sockOut.flush(); //Flushes the output stream
+            frames.write(s); //Sends the size of the message as 16 digits, followed by the message
         } catch (SocketException e) { //If a socket exception occurs, that means that the server stopped
             clearConsole(); //The console is cleared
             printColour("Server has been shut down!\n", 4); //Outputs a message to let the client know that the server stopped
@@ -63,20 +62,37 @@ public class SaarujanClient {
         }
     }
 	
+    private void sendChunk(byte[] data, int count) {
+        try {
+            frames.write(data, 0, count); //Sends the size of the chunk as 16 digits, followed by the chunk
+        } catch (SocketException e) { //If a socket exception occurs, that means that the server stopped
+            clearConsole(); //The console is cleared
+            printColour("Server has been shut down!\n", 4); //Outputs a message to let the client know that the server stopped
+            System.exit(0); //Exits the program
+        } catch (Exception e) { //If any other normal exceptions happen
+            clearConsole(); //The console is cleared
+            printColour("Error while sending data to server!\n", 1); //Error message is outputted
+        }
+    }
+	
+	private int recvChunk() {
+		try {
+            return frames.read(); //Reads the whole chunk into the frame's buffer, and returns its size
+        } catch (SocketException | EOFException e) { //If the connection was reset or closed, then the server has stopped running
+            clearConsole(); //Clears the console
+            printColour("Server has been shut down!\n", 4); //Outputs a message to let the client know that the server stopped
+            System.exit(0); //Exits the program
+        } catch (Exception e) { //If any other normal exception occurs
+            clearConsole(); //Clears the console
+        	printColour("Error while receiving data from server!\n", 1); //Outputs error message
+        }
+        return -1;
+    }
+	
 	private String recv() {
-    	String result = "", size = ""; //result - the message from the server; size - the size of the message
 		try {
-            for (int i = 0; i < 16; ++i) { //Loops 16 times; the size will always be sent as a 16 digit string
-                size += (char) sockIn.read(); //Adds the received character to size
-            }
-
-            for (int i = 0; i < SaarujanItem.strToInt(size); ++i) { //Loops through the message using the received size
-                result += (char) sockIn.read(); //Adds the received character to result
-            }
-
-
-            return result; //Returns the resulting message
-        } catch (SocketException e) { //If a socket exception occurs, then the server has stopped running
+            return frames.readText(); //Reads the whole message at once, and returns it
+        } catch (SocketException | EOFException e) { //If the connection was reset or closed, then the server has stopped running
             clearConsole(); //Clears the console
             printColour("Server has been shut down!\n", 4); //Outputs a message to let the client know that the server stopped
             System.exit(0); //Exits the program
@@ -244,34 +260,57 @@ public class SaarujanClient {
         }
 	}
 	
-    private String readFile(String path) {
+    private FileChannel openFile(String path) {
         try {
             File test = new File(path); //Opens a File instance using the given path
             if (!test.isFile()) { //If the file doesn't exist
 				clearConsole(); //Clears the console
 				printColour("File doesn't exist!\n", 1); //Outputs error message
-				return "EXCEPTION"; //Returns an exception message
-			} else if (test.length() > 100000000) { //If the file is over 100 MB (not targeted file size)
-				clearConsole(); //Clears the console
-                printColour("File is too big!\n", 1); //Outputs error message
-                return "EXCEPTION"; //Returns an exception message
-            }
-
-            FileReader a = new FileReader(path); //Opens the given file
-            String data = ""; //String to store the file's data
-            int curr = a.read(); //Reads the first character of the file
-            while (curr != -1) { //While the end of the file hasn't been reached
-                data += (char) curr; //Adds the read character to data
-                curr = a.read(); //Reads the next character
-            }
+				return null; //Returns null, as the file cannot be read
+			}
 
-            a.close(); //Closes the file stream
-            return data; //Returns the resulting data
+            return FileChannel.open(test.toPath()); //Opens the file; it is read in chunks, so it is never fully held in memory
         } catch (Exception e) { //If an IOException occurs (FileNotFound has been taken care of)
             clearConsole(); //Console is cleared
             printColour("Error while reading file: " + path + "\n", 1); //Outputs error message
         }
-        return "EXCEPTION";
+        return null;
+    }
+
+    private String hashFile(FileChannel input) throws IOException {
+        MessageDigest digest = SaarujanBlob.digest(); //Hashes the file the same way the server does
+        if (digest == null) //If SHA-256 isn't supported, the data is always sent
+            return null; //Returns null
+
+        ByteBuffer chunk = ByteBuffer.allocate(SaarujanFrame.CHUNK_SIZE); //Allocates one chunk, which is reused for the whole file
+        while (input.read(chunk) != -1) { //Loops until the whole file is read
+            chunk.flip(); //Prepares the read bytes to be hashed
+            digest.update(chunk); //Adds the read bytes to the hash
+            chunk.clear(); //Empties the chunk
+        }
+        input.position(0); //Moves back to the start, so the data can be sent
+        return HexFormat.of().formatHex(digest.digest()); //Returns the hash
+    }
+
+    private void sendFile(FileChannel input) throws IOException {
+        send(input.size() + ""); //Sends the size, so the server knows how many bytes to expect
+        sendChunks(input); //Sends the data in chunks
+    }
+
+    private void sendChunks(FileChannel input) throws IOException {
+        long size = input.size(); //Stores the size of the file, in bytes
+        ByteBuffer chunk = ByteBuffer.allocate(SaarujanFrame.CHUNK_SIZE); //Allocates one chunk, which is reused for the whole file
+        long sent = 0; //Stores the amount of bytes sent
+        while (sent < size) { //Loops until the whole file is sent
+            chunk.clear(); //Empties the chunk
+            if (chunk.remaining() > size - sent) //If the rest of the file is smaller than a chunk
+                chunk.limit((int) (size - sent)); //Only the rest of the file is read
+            if (input.read(chunk) == -1) //If the file became shorter while it was being sent
+                throw new IOException("File changed while uploading!");
+
+            sendChunk(chunk.array(), chunk.position()); //Sends the read bytes
+            sent += chunk.position(); //Adds the sent bytes to the total
+        }
     }
 
     private void uploadFile() {
@@ -290,15 +329,23 @@ public class SaarujanClient {
             case "txt": break; //If the extension passed the filter, then the method continues
             default: clearConsole(); printColour("File Extension not Supported!\n", 1); return; //Outputs error message and exits
         }
-        String data = readFile(path); //The data is read from the file
-        if (!data.equals("EXCEPTION")) { //If an exception didn't occur during the reading of the file
+        FileChannel input = openFile(path); //The file is opened
+        if (input != null) { //If an exception didn't occur during the opening of the file
             if (isItem(path.substring(path.lastIndexOf("/") + 1))) { //If another file with the same name and extension exists
 				clearConsole(); //Clears the console
                 printColour("Item under this name already exists!\n", 1); //Outputs error message
+                try {
+                    input.close(); //Closes the file
+                } catch (IOException e) {} //The file was only read, so nothing is lost
                 return; //Exits the method
             }
 
-            send("ULOADFILE"); //Sends the ULOADFILE keyword to the server
+            String hash = null; //Stores the hash of the file, so the data isn't sent if the server already stores it
+            try {
+                hash = hashFile(input); //Reads the whole file once to hash it
+            } catch (IOException e) {} //The data is sent without a hash instead
+
+            send(hash == null ? "ULOADFILE" : "ULOADHASH"); //Sends the ULOADHASH keyword to the server, or ULOADFILE without a hash
             if (path.indexOf("/") == -1) { //If the path is a relative path
                 path = "/" + path; //Adds a '/'
             }
@@ -307,8 +354,25 @@ public class SaarujanClient {
             else 
                 send(currentPath + path.substring(path.lastIndexOf("/"))); //Sends the path with an extra '/'
 
-            send(data); //Sends the data from the file
-            recv(); //Waits until the server finishes uploading the data
+            String reply = "SENDDATA"; //Stores the reply to the hash; without a hash, the data is always sent
+            try {
+                if (hash == null) { //If there is no hash
+                    sendFile(input); //Sends the size of the file, followed by its data in chunks
+                } else {
+                    send(input.size() + ""); //Sends the size, followed by the hash
+                    send(hash);
+                    reply = recv(); //Waits until the server checks whether it stores the same content
+                    if (reply.equals("SENDDATA")) //If it doesn't, the data is sent in chunks
+                        sendChunks(input);
+                }
+                input.close(); //Closes the file
+            } catch (IOException e) { //If the file couldn't be read; the server cannot continue the upload, so the client leaves
+                clearConsole(); //Clears the console
+                printColour("Error while reading file: " + path + "\n", 1); //Outputs error message
+                System.exit(0); //Exits the program
+            }
+            if (reply.equals("SENDDATA")) //If the server stored the same content, it already replied
+                recv(); //Waits until the server finishes uploading the data
             clearConsole(); //Clears the console
             printColour("File successfully uploaded!\n", 4); //Outputs success message
             navigate(currentPath); //Navigates again to the directory, to include the sorted directory, including the uploaded file
@@ -368,14 +432,30 @@ public class SaarujanClient {
         else 
             send(currentPath + "/" + file); //Sends the path with an extra '/'
 
-        String data = recv(); //Receives the file data
+        long size = Long.parseLong(recv()); //Receives the size of the file, in bytes
+        FileOutputStream output = null; //Stores the stream of the downloaded file; null if it couldn't be opened
+        try {
+            output = new FileOutputStream(downloadPath + file); //Creates and opens the file
+        } catch (Exception e) {} //The chunks are still received below, so the connection stays in sync
+
+        long received = 0; //Stores the amount of bytes received
+        while (received < size) { //Loops until the whole file is received
+            int count = recvChunk(); //Receives the next chunk
+            if (count == -1) //If the chunk couldn't be received
+                break; //Exits the loop
+
+            try {
+                if (output != null) //If the file could be opened
+                    output.write(frames.bytes(), 0, count); //Saves the chunk; the data is written exactly as it was uploaded
+            } catch (IOException e) { //If the chunk couldn't be saved
+                output = null; //The rest of the chunks are received, but not saved
+            }
+            received += count; //Adds the received bytes to the total
+        }
+
         clearConsole(); //Clears the console
         try {
-            File open = new File(downloadPath + file); //Opens a File instance with the given path
-            open.createNewFile(); //Creates a new file
-            FileWriter a = new FileWriter(downloadPath + file); //Opens the created file
-            a.write(data.replaceAll("/newline", System.getProperty("line.separator"))); //Saves the data
-            a.close(); //Closes the file stream
+            output.close(); //Closes the file stream
             printColour("File successfully saved as: " + downloadPath + file + "\n", 4); //Outputs success message
         } catch (Exception e) { //If any exception occurs
             printColour("Error occured while saving file!\n", 1); //Error message is outputted
@@ -458,6 +538,27 @@ public class SaarujanClient {
         System.out.println(); //Outputs new line 
     }
 
+    private void search() {
+        //Asks the user for the name to search for
+        printColour("Enter the start of a name to search for; * matches any characters, and ? matches one character: ", 4);
+        String pattern = getInput(); //Stores the pattern
+        send("SEARCH"); //Sends the SEARCH keyword to the server
+        send(currentPath); //Sends the current path, as the folder to search through
+        send(pattern); //Sends the pattern
+        String count = recv(); //Receives the count of matching items
+        clearConsole(); //Clears the console
+        if (count.equals("NOTAFOLDER")) { //If the current directory no longer exists
+            printColour(currentPath + " is not a folder!\n", 1); //Outputs an error message
+            return; //Exits the method
+        }
+
+        printColour(count + " items match " + pattern + ":\n", 4); //Outputs the count of matching items
+        for (int i = strToInt(count); i > 0; --i) { //Loops through the matching items, using the received count
+            printColour("   |  " + recv() + "\n", 3); //Outputs the path of the current item
+        }
+        System.out.println(); //Outputs new line
+    }
+
     private boolean connect() {
 		//Asks user whether they want to login or create an account
         printColour("Enter 'create' to create a new account, or anything else to login to an existing account: ", 4);
@@ -479,7 +580,7 @@ public class SaarujanClient {
 			displayFolder(); //Displays the current folder
         	choice = getChoice("Enter the number beside the following actions: \n1 - Navigate\n2 - Create Folder\n" + 
                                 "3 - Upload File\n4 - Download File\n5 - Delete Item\n6 - Modify Permissions\n" + 
-								"7 - View Recent Logs\n8 - Logout", (byte) 8); //Asks owner for a choice
+								"7 - View Recent Logs\n8 - Search\n9 - Logout", (byte) 9); //Asks owner for a choice
 			
 			switch (choice) {
 				case 1: navigate(); break; //Navigates to a folder
@@ -489,9 +590,10 @@ public class SaarujanClient {
 				case 5: deleteItem(); break; //Deletes an item
 				case 6: permitAccount(); break; //Modifies permissions
 				case 7: viewLogs(); break; //Views recent logs
+				case 8: search(); break; //Searches for items by name
 				default: break; //Default value exits the switch statement
 			}
-		} while (choice != 8);
+		} while (choice != 9);
     }
 
     private void handleConnection() {
@@ -505,7 +607,7 @@ public class SaarujanClient {
             do {
                 displayFolder(); //Displays the current folder, and asks the user to make a choice from the menu
                 choice = getChoice("Enter the number beside the following actions: \n1 - Navigate\n2 - Create Folder\n" + 
-                                   "3 - Upload File\n4 - Download File\n5 - Delete Item\n6 - Logout", (byte) 6);
+                                   "3 - Upload File\n4 - Download File\n5 - Delete Item\n6 - Search\n7 - Logout", (byte) 7);
                 
                 switch (choice) {
                     case 1: navigate(); break; //Navigates to a folder
@@ -513,17 +615,17 @@ public class SaarujanClient {
                     case 3: uploadFile(); break; //Uploads a file
                     case 4: downloadFile(); break; //Downloads a file
                     case 5: deleteItem(); break; //Deletes an item
-                    case 6: return; //Logs out of the server, and exits the loop
+                    case 6: search(); break; //Searches for items by name
+                    case 7: return; //Logs out of the server, and exits the loop
                 }
-            } while (choice != 6); //While the user doesn't want to log out
+            } while (choice != 7); //While the user doesn't want to log out
         }
     }
 
     public void start(String serverAddress, short serverPort) {
         try {
             Socket main = new Socket(serverAddress, serverPort); //Connects to the server socket
-            sockOut = main.getOutputStream(); //Stores the output stream to the server
-            sockIn = main.getInputStream(); //Stores the input stream from the server
+            frames = new SaarujanFrame(main.getInputStream(), main.getOutputStream()); //Frames the streams of the server
 
             if (connect()) { //If the user is autheniicated by the server
                 serverName = recv(); //Stores the server name
@@ -1,46 +1,77 @@
 /** Date Class
-* Description: A class that stores the day, month, and year of a date; this can also be used to find the current date
+* Description: A class that stores the day, month, and year of a date; this can also be used to find the current date.
+  Dates can't be changed once created, and are stored as a single packed int along with their formatted String, so printing
+  one never formats it again. Dates from 2000 to 2099 are shared, so finding one by its values reuses the same Date. The
+  current date and time are read from a clock that is refreshed at most once a second, so stamping a log line or an upload
+  creates nothing new
 *
 * constructor() - Initializes the Date with 01/01/2023
 * constructor(Byte, Byte, Short) - Initializes the Date with the given day, month, and year
 * constructor(String) - Initializes the Date with the given format String: mm/dd/yyyy
+* constructor(Int) - Helper constructor that initializes the Date with the given packed date
 * strToInt(String, Byte, Byte) - Helper method that parses a given portion of a format String, into an integer value
+* format(Int) - Helper method that returns the given packed date in the format mm/dd/yyyy
+* digits(Char[], Int, Int, Int) - Helper method that writes the given value into the given characters, padded with zeros to the
+								  given amount of digits
+* valueOf(Byte, Byte, Short) - Returns the Date with the given day, month, and year, reusing the shared Date if there is one
 * getDay() - Returns the day
 * getMonth() - Returns the month
 * getYear() - Returns the year
+* pack() - Returns the date packed into an int, with the year above the month and the day
+* unpack(Int) - Returns the date that was packed into the given int, reusing the shared Date if there is one
+* tick() - Helper method that returns the clock, refreshing it first if the second has changed since it was last read
 * currentDate() - Returns the current date
 * currentTime() - Returns the current time, as a String in the format hh:mm
 * toString() - Returns the date in the format mm/dd/yyyy
+* Clock - The current date and time, as of the second it was read
 **/
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class SaarujanDate {
-	private byte day, month; //Storing the day and month of the Date, as a byte; the maximum for these is only 31 and 12
- 	private short year; //Storing the year of the Date, as a short
+	private static final int FIRST_YEAR = 2000, YEARS = 100; //The range of years whose Dates are shared
+	private static final AtomicReferenceArray<SaarujanDate> shared = new AtomicReferenceArray<SaarujanDate>(YEARS * 12 * 31);
+	private static volatile Clock clock; //The current date and time; null until it is first read
+	private final int packed; //Storing the day, month, and year of the Date, packed as pack() returns them
+	private final String text; //Storing the Date in the format mm/dd/yyyy
+
+	private static class Clock {
+		private final long second; //The second that the clock was read at, since the epoch
+		private final SaarujanDate date; //The date at that second
+		private final String time; //The time at that second, in the format hh:mm
+
+		private Clock(long second, SaarujanDate date, String time) {
+			this.second = second; //Stores the values
+			this.date = date;
+			this.time = time;
+		}
+	}
 
 	public SaarujanDate() {
-		day = 1; //Setting the default day to 1
-		month = 1; //Setting the default month to January
-		year = 2023; //Setting the default month to 2023
+		this((byte) 1, (byte) 1, (short) 2023); //Setting the default date to 01/01/2023
 	}
 
 	public SaarujanDate(byte day, byte month, short year) {
-		this.day = day; //Setting the day to the given day 
-		this.month = month; //Setting the month to the given month
-		this.year = year; //Setting the year to the given year
+		this(year << 9 | month << 5 | day); //Packing the given day, month, and year
 	}
 
 	public SaarujanDate(String format) {
 		if (format.length() != 10) { //If the format string isn't the right length, the Date will be initialized with default values
-			day = 1;
-			month = 1;
-			year = 2023;
+			packed = 2023 << 9 | 1 << 5 | 1;
+			text = format(packed);
 			return; //Exiting the method
 		}
-		
-		month = (byte) strToInt(format, (byte) 0, (byte) 2); //Taking the mm portion of mm/dd/yyyy
-		day = (byte) strToInt(format, (byte) 3, (byte) 5); //Taking the dd portion of mm/dd/yyyy
-		year = (short) strToInt(format, (byte) 6, (byte) 10); //Taking the yyyy portion of mm/dd/yyyy
+
+		int month = strToInt(format, (byte) 0, (byte) 2); //Taking the mm portion of mm/dd/yyyy
+		int day = strToInt(format, (byte) 3, (byte) 5); //Taking the dd portion of mm/dd/yyyy
+		int year = strToInt(format, (byte) 6, (byte) 10); //Taking the yyyy portion of mm/dd/yyyy
+		packed = (short) year << 9 | ((byte) month & 15) << 5 | (byte) day & 31; //Packing the parsed values
+		text = format(packed); //Formatting the date once
+	}
+
+	private SaarujanDate(int packed) {
+		this.packed = packed; //Setting the packed date
+		text = format(packed); //Formatting the date once
 	}
 
 	private static int strToInt(String value, byte start, byte end) {
@@ -48,7 +79,7 @@ public class SaarujanDate {
 		for (byte i = (byte) (end - 1); i >= start; --i) { //Looping from the given end, till the given starting point
 			if (value.charAt(i) < '0' && value.charAt(i) > '9') //If the value is not a number, -1 is returned
 				return -1;
-			
+
 			result += (value.charAt(i) - '0') * multiplier; //Adding the digit at a specific position using the multipllier
 			multiplier *= 10; //Moving to the next place in the number (Ex: tens to hundreds)
 		}
@@ -56,34 +87,85 @@ public class SaarujanDate {
 		return result; //Returning the result
 	}
 
+	private static String format(int packed) {
+		int year = packed >> 9; //Storing the year
+		if (year < 0 || year > 9999) //If the year doesn't fit in 4 digits, it is formatted as it was before
+			return String.format("%02d/%02d/%04d", packed >> 5 & 15, packed & 31, year);
+
+		char[] result = { '0', '0', '/', '0', '0', '/', '0', '0', '0', '0' }; //Storing the characters of mm/dd/yyyy
+		digits(result, 0, 2, packed >> 5 & 15); //Writing the month
+		digits(result, 3, 2, packed & 31); //Writing the day
+		digits(result, 6, 4, year); //Writing the year
+		return new String(result); //Returning the formatted date
+	}
+
+	private static void digits(char[] result, int start, int length, int value) {
+		for (int i = start + length - 1; i >= start; --i) { //Writing the digits from the last, dividing the value each time
+			result[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	public static SaarujanDate valueOf(byte day, byte month, short year) {
+		if (year < FIRST_YEAR || year >= FIRST_YEAR + YEARS || month < 1 || month > 12 || day < 1 || day > 31)
+			return new SaarujanDate(day, month, year); //If the date isn't shared, a new Date is returned
+
+		int slot = ((year - FIRST_YEAR) * 12 + month - 1) * 31 + day - 1; //Storing the position of the shared Date
+		SaarujanDate result = shared.get(slot); //Storing the shared Date, if it was created
+		if (result == null) { //If it wasn't, it is created; if two threads create it at once, the first one is kept
+			shared.compareAndSet(slot, null, new SaarujanDate(day, month, year));
+			result = shared.get(slot);
+		}
+
+		return result; //Returning the shared Date
+	}
+
 	public byte getDay() {
-		return day; //Returning the day
+		return (byte) (packed & 31); //Returning the day
 	}
 
 	public byte getMonth() {
-		return month; //Returning the month
+		return (byte) (packed >> 5 & 15); //Returning the month
 	}
 
 	public short getYear() {
-		return year; //Returning the year
+		return (short) (packed >> 9); //Returning the year
+	}
+
+	public int pack() {
+		return packed; //Returning the date; the day takes 5 bits, and the month takes 4
+	}
+
+	public static SaarujanDate unpack(int packed) {
+		return valueOf((byte) (packed & 31), (byte) (packed >> 5 & 15), (short) (packed >> 9)); //Returning the unpacked date
 	}
-	
+
+	private static Clock tick() {
+		long second = System.currentTimeMillis() / 1000; //Storing the current second; reading it creates nothing
+		Clock result = clock; //Storing the clock once, as another thread may refresh it
+		if (result == null || result.second != second) { //If the clock wasn't read this second, it is refreshed
+			LocalDateTime curr = LocalDateTime.now(); //Getting the current time
+			char[] time = { '0', '0', ':', '0', '0' }; //Storing the characters of hh:mm
+			digits(time, 0, 2, curr.getHour());
+			digits(time, 3, 2, curr.getMinute());
+			result = new Clock(second, valueOf((byte) curr.getDayOfMonth(), (byte) curr.getMonthValue(), (short) curr.getYear()),
+							   new String(time));
+			clock = result; //Every thread reads the refreshed clock for the rest of the second
+		}
+
+		return result; //Returning the clock
+	}
+
 	public static SaarujanDate currentDate() {
-		SaarujanDate now = new SaarujanDate(); //Initializing a new Date
-		LocalDateTime curr = LocalDateTime.now(); //Getting the current time
-		now.day = (byte) curr.getDayOfMonth(); //Storing the current day in day
-		now.month = (byte) curr.getMonthValue(); //Storing the current month in month
-		now.year = (short) curr.getYear(); //Storing the current year in year 
-		return now; //Returning the current date
+		return tick().date; //Returning the current date
 	}
 
 	public static String currentTime() {
-		LocalDateTime curr = LocalDateTime.now(); //Storing the current date
-		return String.format("%02d:%02d", curr.getHour(), curr.getMinute()); //Returning the time in the format hh:mm
+		return tick().time; //Returning the time in the format hh:mm
 	}
 
 	public String toString() {
-		return String.format("%02d/%02d/%04d", month, day, year); //Returning the date in the format mm/dd/yyyy
+		return text; //Returning the date in the format mm/dd/yyyy
 	}
-	
-}
\ No newline at end of file
+
+}
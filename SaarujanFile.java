@@ -1,156 +1,247 @@
 /** File Class
 * Description: Subclass of Item, which represents a file in the file system;
   files can be uploaded or deleted from the server, but cannot be edited.
-* constructor() - Sets default initial values, and backupLine to -1 (inexistant)
+  The data of a file is stored in the server's blob store, as a blob that is shared by every file with the same content;
+  older backups that kept the data on the file's line can still be loaded
+* constructor() - Sets default initial values
 * constructor(String) - Sets name to given name, and sets the other values to default values
 * constructor(String, String, Date, String) - Sets the values of the path, name, uploader, upload date, data, and the size
-* getData(Server) - Returns the data of the file, even if it only exists in the backup file
-* setData(String) - Sets the data and size to the given data, only if the file doesn't contain data already
-* backup(Server) - Saves the file to the server's backup
-* load(Server) - Loads data from the current file in the server's backup
+* getData(Server) - Returns the data of the file, even if it only exists in the blob store or the backup file
+* getCachedData() - Returns the UTF-8 data of the file only if it is stored in memory, as a buffer of its own
+* setData(ByteBuffer) - Sets the UTF-8 data to the given buffer; the data of a blob is shared
+* readData(Server) - Reads the UTF-8 data of the file into a buffer from the server, which may be outside of the heap; the caller
+					 holds the server's storage lock
+* hasBlob() - Returns whether the data of the file is stored in the blob store
+* getBlob() - Returns the blob that holds the file's data, or null if the data is on the file's line
+* getBlobOffset() - Returns the position of the file's data in the blob store
+* getBlobLength() - Returns the length of the file's data, in bytes
+* setBlob(Blob) - Points the file to the given blob, and calculates the size
+* format(Server, Long) - Helper method that returns the file's line, with its data at the given position in a blob store
+* record(Server) - Returns the line that represents the file in the server's backup
+* backup(Server) - Saves the file's blob to the next blob store, once for every file that shares it, and the file to the server's backup
+* snapshot() - Returns a copy of the file that shares its blob, which a backup can save without changing the file
+* load(Server, String) - Loads the file from the given line of the server's backup; older lines keep their data in the backup,
+						 or have no hash
+* image(DataOutputStream, Map) - Writes the file to a binary checkpoint, followed by its size, and the hash, position, and length of its data
+* load(ByteBuffer, String, String[]) - Reads the file from a binary checkpoint, inside the given parent path
 * sendFormat() - Returns a String to send to the client, when they navigate the file system
 * size() - Returns the size of the file, in kilobytes (KB)
-* resetLine() - Resets the current line to 1, the start of the file
 * toString() - Returns the name of the file, with formatting
 **/
-import java.io.FileReader;
-import java.io.BufferedReader;
-import java.io.FileWriter;
-import java.io.FileNotFoundException;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Map;
 
 public class SaarujanFile extends SaarujanItem {
-	private int backupLine, size; //backupLine stores the line number where the file is, in the backup; size stores the size in KB
-	private static int currentLine = 1; //
-	private String data; //Stores the data, if it is small enough, and if it was recently accessed
+	private int size; //Stores the size of the file, in KB
+	private SaarujanBlob blob; //Stores the data's blob in the blob store, which files with the same content share; null if it isn't stored there
+	private volatile ByteBuffer data; //Stores the UTF-8 data of files without a blob, if it is in memory; shared between sessions
 
 	public SaarujanFile() {
 		super(); //Calls the parent constructor
 		size = 0; //Sets the size to 0
-		backupLine = -1; //Sets the backup line to -1
+		blob = null; //The data isn't in the blob store
 		data = null; //Sets the data to null
 	}
 
 	public SaarujanFile(String name) {
 		super(name); //Calls the parent constructor with the given name
 		size = 0; //Sets the size to 0
-		backupLine = -1; //Sets the backup line to -1
+		blob = null; //The data isn't in the blob store
 		data = null; //Sets the data to null
 	}
 
 	public SaarujanFile(String path, String uploader, SaarujanDate uploadDate, String data) {
 		super(path, uploader, uploadDate); //Calls the parent constructor with the given vallues
-		this.data = data; //Sets the data to the given data
-		size = data.getBytes().length / 1000; //Calculates the size of the file
+		byte[] bytes = data.getBytes(StandardCharsets.UTF_8); //Stores the encoded data
+		this.data = ByteBuffer.wrap(bytes); //Sets the data to the given data
+		blob = null; //The data isn't in the blob store yet
+		size = bytes.length / 1000; //Calculates the size of the file
 	}
 	
 	public String getData(SaarujanServer server) {
-		if (data != null) { //If the data is already stored in memory
-			return data; //The data is returned
-		} else if (backupLine != -1) { //If there is a backup line (meaning the file is stored in the backup file)
+		ByteBuffer cached = getCachedData(); //Stores the data once, as another session may clear it from memory
+		if (cached != null) { //If the data is already stored in memory
+			return StandardCharsets.UTF_8.decode(cached).toString(); //The decoded data is returned
+		} else if (blob != null) { //If the data is stored in the blob store
 			try {
-				BufferedReader input = new BufferedReader(new FileReader(server.getBackupPath())); //Opening the backup file
-				for (int i = 1; i < backupLine; ++i) { //Looping until the line before the backup line
-					input.readLine(); //Reading unneccessary lines
-				}
-
-				for (byte i = 0; i < 4; ++i) { //Looping 4 times to read the unneccessary path, uploader, upload date, and size
-					if (readToken(input, server) == null) { //If an error occured while reading the information
-						input.close(); //The input is closed
-						return null; //Null is returned
-					}
-				}
-				
-				return server.decrypt(input.readLine()); //Returns the decrypted version of the found data
-			} catch (FileNotFoundException e) { //If the backup file doesn't exist
-				server.log(server.getBackupPath() + " cannot be found!", true);
-			} catch (IOException e) { //If an error occurs while writing to the backup file
-				server.log("Error while writing to file backup!", true);
+				ByteBuffer result = ByteBuffer.allocate((int) blob.getLength()); //Allocates space for the whole data
+				server.getBlobs().read(blob.getOffset(), result); //Reads the data from the blob store
+				return new String(result.array(), 0, result.position(), StandardCharsets.UTF_8); //Returns the decoded data
+			} catch (IOException e) { //If an error occurs while reading the blob store
+				server.log("Error while reading from blob store!", true);
+				return null; //Returns null, as the data couldn't be read
+			}
+		} else if (getBackupLine() != -1) { //If there is a backup line (meaning the file is stored in the backup file)
+			try {
+				//Seeks straight to the file's line using the backup's index, and splits it into size, path, uploader, date, and data
+				String[] tokens = splitRecord(server.getIndex().read(getBackupLine()), 5);
+				if (tokens == null) //If the line doesn't exist, or an error occured while reading the information
+					return null; //Null is returned
+
+				//Returns the decrypted data; older backups replaced line seperators with '/newline', as each file was 1 line
+				return server.decrypt(tokens[4]).replace("/newline", "\n");
+			} catch (IOException e) { //If an error occurs while reading the backup file
+				server.log("Error while reading from file backup!", true);
 			}
 		}
 		return null; //Returns null if an error occured, or if no data exists in the first place
 	}
 
-	public void setData(String data) { 
-		this.data = data; //The data is set to the given data
-		if (data != null) { //If the data isn't cleared from memory
-			size = data.getBytes().length / 1000; //The size is calculated
+	public ByteBuffer getCachedData() {
+		SaarujanBlob current = blob; //Stores the blob once, as a backup may point the file to another blob
+		ByteBuffer cached = current != null ? current.getData() : data; //Stores the data, or null if it isn't stored in memory
+		return cached == null ? null : cached.duplicate(); //Returns a buffer of its own, so sessions can read the data at once
+	}
+
+	public void setData(ByteBuffer data) { 
+		if (blob != null) { //If the data is in the blob store, it is kept in memory once for every file that shares it
+			blob.setData(data);
+		} else { //The size is kept, as the folders above the file have already counted it
+			this.data = data; //The data is set to the given data
+		}
+	}
+
+	public ByteBuffer readData(SaarujanServer server) {
+		if (blob == null) { //If the data is on the file's line in an older backup, it is read through the backup's index
+			String body = getData(server); //Stores the data
+			if (body == null) //If the data couldn't be read
+				return null; //Null is returned
+
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8); //Stores the encoded data
+			return server.allocate(bytes.length).put(bytes).flip(); //Returns the data in a buffer of the server
+		}
+
+		try {
+			ByteBuffer result = server.allocate((int) blob.getLength()); //Allocates space for the whole data
+			if (server.getBlobs().read(blob.getOffset(), result) < blob.getLength()) //If the blob store ended early
+				return null; //Null is returned
+			return result.flip(); //Returns the data, ready to be read
+		} catch (IOException e) { //If an error occurs while reading the blob store
+			server.log("Error while reading from blob store!", true);
+			return null; //Returns null, as the data couldn't be read
 		}
 	}
 
+	public boolean hasBlob() {
+		return blob != null; //Returns whether the data is stored in the blob store
+	}
+
+	public SaarujanBlob getBlob() {
+		return blob; //Returns the blob
+	}
+
+	public long getBlobOffset() {
+		return blob == null ? -1 : blob.getOffset(); //Returns the position of the data
+	}
+
+	public long getBlobLength() {
+		return blob == null ? -1 : blob.getLength(); //Returns the length of the data
+	}
+
+	public void setBlob(SaarujanBlob blob) {
+		this.blob = blob; //Points the file to the blob
+		data = null; //The blob keeps the data in memory instead
+		size = (int) (blob.getLength() / 1000); //Calculates the size of the file, in KB
+	}
+
+	private String format(SaarujanServer server, long offset) {
+		String hash = blob.getHash(); //Stores the hash, which is left empty if it isn't known
+		//Returns the line in the format B|size|path|uploader|date|offset|length|hash; the 'B' marks that the data is in the blob store
+		return String.format("B|%s|%s|%s|%s|%s|%s|%s\n", server.encrypt(size + ""), server.encrypt(getPath()), 
+							 server.encrypt(getUploader()), getDate().toString(), server.encrypt(offset + ""),
+							 server.encrypt(blob.getLength() + ""), hash == null ? "" : server.encrypt(hash));
+	}
+
+	public String record(SaarujanServer server) {
+		return format(server, blob.getOffset()); //Returns the line, with the data at its position in the current blob store
+	}
+
 	public boolean backup(SaarujanServer server) {
-		if (backupLine == -1 && data == null) //If no data is stored in this file
+		if (getBackupLine() == -1 && blob == null && data == null) //If no data is stored in this file
 			return false; //False is returned
 		
 		try {
-			FileWriter output = new FileWriter(server.getNextBackupPath(), true); //Opening the new backup path and saving the file
-			output.write(String.format("%s|%s|%s|%s|%s\n", server.encrypt(size + ""), server.encrypt(getPath()),
-									   server.encrypt(getUploader()), getDate().toString(), server.encrypt(getData(server))));
-			backupLine = currentLine++; //Saving the backup line number
-			output.close(); //Closing the output stream
+			long offset; //Stores the position of the data in the next blob store
+			if (blob != null) { //If the data is in the current blob store, it is copied once for every file that shares it
+				offset = blob.copy(server);
+			} else { //If the data is only on the file's line in an older backup, or in memory
+				String body = getData(server); //Stores the data of the file
+				if (body == null) //If the data couldn't be read
+					return false; //False is returned
+
+				byte[] bytes = body.getBytes(StandardCharsets.UTF_8); //Stores the encoded data
+				offset = server.getNextBlobs().append(bytes); //Moves the data into the next blob store
+				setBlob(new SaarujanBlob(SaarujanBlob.hash(bytes), offset, bytes.length)); //The data is hashed, so it can be shared
+			}
+
+			setBackupLine(server.getNextIndex().append(format(server, offset))); //Writes the file's line, and saves its line number
 			return true;
-		} catch (FileNotFoundException e) { //If the file wasn't found
-			server.log(server.getNextBackupPath() + " cannot be found!", true);
-			return false; //False is returned
 		} catch (IOException e) { //If an error occured while writing to the file
 			server.log(server.getNextBackupPath() + " cannot be found!", true); 
 			return false; //False is returned
 		}
 	}
 
-	public boolean load(SaarujanServer server) {
-		try {
-			BufferedReader input = new BufferedReader(new FileReader(server.getBackupPath()));
-			if (backupLine == -1) //If there is no backup line
-                backupLine = currentLine++; //The backup line is set to the current line, and the current line number is incremented
-            
-            for (int i = 1; i < backupLine; ++i) { //Looping to the line before the backup line
-                input.readLine(); //Reading unneccessary lines
-            } 
-            
-            String temp = readToken(input, server); //Storing the read token in temp
-            if (temp == null || temp.equals("")) { //If temp is null (error has occured) or if temp is empty
-                input.close(); //Closing the input
-                return false; //Returning false
-            } else { 
-                size = strToInt(temp); //Converting and storing the token as size
-            } 
-
-            temp = readToken(input, server);
-            if (temp == null || temp.equals("")) { //If temp is null (error has occured) or if temp is empty
-                input.close(); //Closing the input
-                return false; //Returning false
-            } else { 
-                if (setPath(temp)) //Storing the path
-					setName(temp.substring(temp.lastIndexOf("/") + 1)); //Storing the name, only if the path is valid
-            } 
-
-			temp = readToken(input, server);
-            if (temp == null || temp.equals("")) { //If temp is null (error has occured) or if temp is empty
-                input.close(); //Closing the input
-                return false; //Returning false
-            } else { 
-                setUploader(temp); //Storing the uploader
-            } 
-
-			temp = readToken(input, server);
-            if (temp == null || temp.equals("")) { //If temp is null (error has occured) or if temp is empty
-                input.close(); //Closing the input
-                return false; //Returning false
-            } else { 
-                setDate(new SaarujanDate(server.encrypt(temp))); //Storing the upload date
-            } 
-
-			data = server.decrypt(input.readLine()); //Stores the remaining data
-			input.close(); //Closing the input
-			return true; //Returning true, as the operation succeeded
-		} catch (FileNotFoundException e) { //If the backup file wasn't found
-			server.log(server.getBackupPath() + " not found!", true);
-		} catch (IOException e) { //If an error occured while reading from the backup file
-			server.log("Error while reading to backup file!", true);
+	public SaarujanFile snapshot() {
+		SaarujanFile copy = new SaarujanFile(getPath(), getUploader(), getDate(), ""); //Creates a file with the same path, uploader, and date
+		copy.size = size; //Copies the size
+		copy.setBackupLine(getBackupLine()); //Copies where the file is in the current backup
+		copy.blob = blob; //Shares the blob, which a backup copies once for every file that shares it
+		copy.data = data; //Copies the data, if it is in memory
+		return copy; //Returns the copy
+	}
+
+	public boolean load(SaarujanServer server, String line) {
+		boolean inBlob = line != null && line.startsWith("B|"); //Lines that start with 'B|' keep their data in the blob store
+		String[] tokens = splitRecord(inBlob ? line.substring(2) : line, inBlob ? 7 : 5); //Splits the line into its tokens
+		if (tokens == null && inBlob) //Lines that were saved before hashes were kept have no hash
+			tokens = splitRecord(line.substring(2), 6);
+		if (tokens == null || tokens[0].equals("") || tokens[1].equals("") || tokens[2].equals("") || tokens[3].equals(""))
+			return false; //Returning false if the line is invalid
+
+		size = strToInt(server.decrypt(tokens[0])); //Storing the size
+		String temp = server.decrypt(tokens[1]); //Storing the path
+		if (setPath(temp)) //Storing the path
+			setName(temp.substring(temp.lastIndexOf("/") + 1)); //Storing the name, only if the path is valid
+
+		setUploader(server.decrypt(tokens[2])); //Storing the uploader
+		setDate(new SaarujanDate(tokens[3])); //Storing the upload date; dates are saved without encryption
+		if (inBlob) { //If the data is in the blob store
+			String offset = server.decrypt(tokens[4]), length = server.decrypt(tokens[5]); //Storing the position and length
+			if (offset.equals("") || length.equals("")) //If either value is missing
+				return false; //Returning false
+
+			String hash = tokens.length == 7 && !tokens[6].equals("") ? server.decrypt(tokens[6]) : null; //Storing the hash, if it is known
+			setBlob(new SaarujanBlob(hash, strToLong(offset), strToLong(length))); //Stores the position and length of the data
 		}
-		
-		return false; //Returning false if the operation failed
+
+		data = null; //The data stays on disk until it is downloaded; older lines are read again through the backup's index
+		return true; //Returning true, as the operation succeeded
+	}
+
+	public void image(DataOutputStream out, Map<String, Integer> uploaders) throws IOException {
+		super.image(out, uploaders); //Writes the name, uploader, date, and line
+		SaarujanCheckpoint.writeNumber(out, size); //Writes the size
+		String hash = blob == null ? null : blob.getHash(); //Stores the hash of the data, if it is known
+		byte[] bytes = hash == null ? new byte[0] : HexFormat.of().parseHex(hash); //Stores the hash as raw bytes, half as long
+		SaarujanCheckpoint.writeNumber(out, bytes.length); //Writes the length of the hash, followed by the hash
+		out.write(bytes);
+		SaarujanCheckpoint.writeNumber(out, getBlobOffset()); //Writes the position and length of the data; -1 if the data is on the file's line
+		SaarujanCheckpoint.writeNumber(out, getBlobLength());
+	}
+
+	public void load(ByteBuffer in, String parent, String[] uploaders) {
+		super.load(in, parent, uploaders); //Reads the name, uploader, date, and line
+		size = (int) SaarujanCheckpoint.readNumber(in); //Reads the size
+		byte[] bytes = new byte[(int) SaarujanCheckpoint.readNumber(in)]; //Reads the hash
+		in.get(bytes);
+		long offset = SaarujanCheckpoint.readNumber(in), length = SaarujanCheckpoint.readNumber(in); //Reads the position and length of the data
+		blob = length == -1 ? null : new SaarujanBlob(bytes.length == 0 ? null : HexFormat.of().formatHex(bytes), offset, length);
+		data = null; //The data stays on disk until it is downloaded
 	}
 	
 	public String sendFormat() { 
@@ -158,13 +249,9 @@ public class SaarujanFile extends SaarujanItem {
 		return getName() + "|" + getUploader() + "|" + getDate() + "|" + size;
 	}
 	
-	public int size() {
+	public long size() {
 		return size; //Returns the file size
 	}
-
-	public static void resetLine() {
-		currentLine = 1; //Resets the current line to the starting line position
-	}
 	
 	public String toString() {
 		return getName() + "\n"; //Returns the name, and a newline character
@@ -1,101 +1,136 @@
 /** Folder Class 
 * Description: Subclass of SaarujanItem, which represents a folder in the file system; 
-  folders can only be created or deleted from the server; they cannot be downloaded or uploaded
+  folders can only be created or deleted from the server; they cannot be downloaded or uploaded. The children are kept sorted
+  by name in a Treap, so adding, removing, and finding a child is O(log n) even in folders with tens of thousands of children.
+  Each folder stores its recursive size and the counts of its files and folders; they're updated as children are added and
+  removed, and the server updates the size of every folder above a change, so a listing never walks the subtrees
 * constructor() - Sets default initial values, and initializes items
 * constructor(String) - Sets default values and name to the given name, and initializes items
 * constructor(String, String, Date) - Sets the given path, uploader, upload date, and initializes items
-* compare(String, String) - Helper method that compares two Strings alphabetically (including symbols)
-* add(Item) - Adds the given item before the Item that has the next alphabetical precedence
-* remove(Int) - Removes the item at the given index
+* compare(String, String) - Helper method that compares two Strings alphabetically (including symbols), in the same order as the Treap
+* add(Item) - Adds the given item before the Item that has the next alphabetical precedence; its path is then built from the folder's
+* sort(List) - Sorts the given items alphabetically; items with equal names keep their order
+* addSorted(List) - Merges the given alphabetically sorted items into the folder at once; equal names are placed after existing items
+* count(Item, Int) - Helper method that adds the given child to the stored size and counts, or takes it away if the sign is -1
+* remove(Int) - Removes the item at the given index, which stores its path again
 * get(Int) - Returns the item at the given index
-* search(String, Int, Int) - Helper recursive method for a binary search through the Folder, given a name, a min, and a max
-* indexOf(String) - Accessible method that uses search() to search for the given name, in the Folder
+* indexOf(String) - Returns the index of the first child with the given name, or -1 if there is none
+* iterator() - Returns an iterator through the children in alphabetical order
 * itemCount() - Calculates and returns the count of children in the Folder
-* fileCount() - Calculates and returns the count of files in the folder
-* folderCount() - Calculates and returns the count of folders in the folder
-* backup(Server) - Saves the folder to the server's backup
-* load(Server) - Loads the next folder from the server's backup
+* fileCount() - Returns the count of files in the folder
+* folderCount() - Returns the count of folders in the folder
+* resize(Long) - Adds the given amount of KB to the recursive size, after a change further down the subtree
+* check() - Recalculates the size and counts of the folder and every folder inside it, and returns the first folder whose stored
+			values don't match; null if every folder is consistent
+* record(Server) - Returns the line that represents the folder in the server's backup, without its 'F|' mark
+* backup(Server) - Saves the folder, then its children, to the server's next backup, so the lines of its children are in one range
+* snapshot(List, List) - Returns a copy of the folder and its children; every copied item is added to the second list, beside
+						  the item it was copied from in the first, so the items can point to the new backup once it is used
+* ranges(Long) - Returns the ranges of lines that hold the folder's children, and their children, in the current backup; the
+				 ranges are kept until a child changes, so unchanged folders aren't revisited. Returns null if a child has no line
+* addRange(List, Int, Int) - Helper method that adds the given range of lines to the list, joining it to the last range if they meet
+* getRanges() - Returns the kept ranges of lines, or null if they need to be found again
+* setRanges(List, Long) - Keeps the given ranges of lines, as of the given generation
+* load(Server, String) - Loads the folder from the given line of the server's folder backup, or from a folder record of the
+						 server's backup, which starts with 'F|'
 * sendFormat() - Returns a String containing important metadata of the folder
-* size() - Returns the recursive size of all children in the folder
-* resetLine() - Resets the current line position to 1, the start of the file
-* buildString(Folder, String) - Builds the directory as a String
+* size() - Returns the stored recursive size of all children in the folder, in KB
+* buildString(Folder, String, StringBuilder) - Adds the directory to the given StringBuilder
 * toString() - Returns a directory-styled String containing all child items
 **/
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
-public class SaarujanFolder extends SaarujanItem {
-	private static short currentLine = 0; //Static variable that holds the current line that has been read
-    private ArrayList<SaarujanItem> items; //ArrayList of children of the Folder
+public class SaarujanFolder extends SaarujanItem implements Iterable<SaarujanItem> {
+    private SaarujanTreap items; //The children of the Folder, sorted by name
+    private ArrayList<int[]> ranges; //The ranges of lines (first and last) that hold the children in the current backup
+    private long rangesGeneration; //The generation that the ranges were found at; later changes mean they're found again
+    private long size; //The recursive size of all children, in KB
+    private int files, folders; //The counts of files and folders that are direct children
     
     public SaarujanFolder() { 
         super(); //Calling the default parent constructor
-        items = new ArrayList<SaarujanItem>(); //Initializing the items ArrayList
+        items = new SaarujanTreap(); //Initializing the children
     }
 
     public SaarujanFolder(String name) {
         super(name); //Calling the parent constructor with the given name
-        items = new ArrayList<SaarujanItem>(); //Initializing the items ArrayList
+        items = new SaarujanTreap(); //Initializing the children
     }
 
     public SaarujanFolder(String path, String uploadedBy, SaarujanDate dateUploaded) {
         super(path, uploadedBy, dateUploaded); //Calling the parent constructor with the given name
-        items = new ArrayList<SaarujanItem>(); //Initializing the items ArrayList
+        items = new SaarujanTreap(); //Initializing the children
     }
 
     private static boolean compare(String a, String b) {
-        byte smallest = (byte) (a.length() > b.length() ? b.length() : a.length()); //Storing the smallest length between a and b
-        for (byte i = 0; i < smallest; ++i) { //Looping from 0 to the smallest String length
-            if (a.charAt(i) < b.charAt(i))  //If a preceeds b alphabetically
-                return true; //True is returned
-            else if (a.charAt(i) > b.charAt(i)) //If b preceeds a alphabetically
-                return false; //False is returned
-        }
-
-        if (a.length() < b.length())  //If both strings are equal upto the given length, and a is shorter than b
-            return true; //True is returned
-        else 
-            return false; //Otherwise, false is returned
+        //Returns whether a preceeds b, comparing each character, then the length if one String starts with the other
+        return a.compareTo(b) < 0;
     }
 
     public void add(SaarujanItem toAdd) {
-        for (byte i = 0; i < items.size(); ++i) { //Looping through all children of the Folder
-            if (compare(toAdd.getName(), items.get(i).getName())) { //If the value to add preceeds the current value alphabetically
-                items.add(i, toAdd); //Adding the given value at the i'th index; shifts values to the right if needed
-                return; //Exiting the method
+        items.add(toAdd); //Adding the given value before the first value that it preceeds, and after any equal names
+        toAdd.setParent(this); //The path of the given value is now built from the Folder's path
+        count(toAdd, 1); //Counting the given value
+    }
+
+    private void count(SaarujanItem item, int sign) {
+        if (item instanceof SaarujanFolder) //If the item is a Folder
+            folders += sign; //Counting the folder
+        else //If the item is a File
+            files += sign; //Counting the file
+        size += sign * item.size(); //Adding, or taking away, the size of the item and everything inside it
+    }
+
+    public static void sort(List<? extends SaarujanItem> list) {
+        //Sorting with compare(); the sort is stable, so equal names stay in the order they were given
+        list.sort((a, b) -> compare(a.getName(), b.getName()) ? -1 : compare(b.getName(), a.getName()) ? 1 : 0);
+    }
+
+    public void addSorted(List<? extends SaarujanItem> sorted) {
+        ArrayList<SaarujanItem> merged = new ArrayList<SaarujanItem>(items.size() + sorted.size()); //Stores the merged children
+        Iterator<SaarujanItem> existing = items.iterator(); //Walks through the existing items in order
+        SaarujanItem current = existing.hasNext() ? existing.next() : null; //Stores the next existing item
+        int j = 0; //The index in the given items
+        while (current != null && j < sorted.size()) { //Loops until either list runs out
+            if (compare(sorted.get(j).getName(), current.getName())) { //If the given item preceeds the existing item alphabetically
+                merged.add(sorted.get(j++)); //The given item is added first
+            } else { //If the existing item preceeds, or is equal to, the given item; this matches the order that add() produces
+                merged.add(current); //The existing item is added first
+                current = existing.hasNext() ? existing.next() : null;
             }
         }
 
-        items.add(toAdd); //If the value to add doesn't preceed any of the items, the given value is appended to the end
+        while (current != null) { //Adds the remaining existing items
+            merged.add(current);
+            current = existing.hasNext() ? existing.next() : null;
+        }
+        while (j < sorted.size()) merged.add(sorted.get(j++)); //Adds the remaining given items
+        items.build(merged); //Swaps to the merged children, building the tree at once
+        for (SaarujanItem item : sorted) { //Counting the given items, whose paths are now built from the Folder's path
+            item.setParent(this);
+            count(item, 1);
+        }
     }
 
     public void remove(int index) {
-        items.remove(index); //Removing the item at the given index
+        SaarujanItem removed = items.remove(index); //Removing the item at the given index
+        removed.setParent(null); //The removed item stores its path again, as it has no Folder to build it from
+        count(removed, -1); //Taking it away from the counts
     }
 
     public SaarujanItem get(int index) {
         return items.get(index); //Returning the item at the given index
     }
 
-    private int search(String name, int min, int max) { //Helper method for binary sort
-        if (min > max) //If the minimum is over the maximum, the name wasn't found in items
-            return -1; //Returning -1
-
-        int half = (min + max) / 2; //Calculating and storing the midpoint of items
-        if (items.get(half).getName().equals(name)) { //If the given value is equal to the current value
-            return half; //The index is returned
-        } else if (compare(name, items.get(half).getName())) { //If the given value preceeds the current value
-            return search(name, min, half - 1); //Recursively searching the bottom half of the sub-array of items
-        } else { //If the current value preceeds the given value
-            return search(name, half + 1, max); //Recursively searching the top half of the sub-array of items
-        }
+    public int indexOf(String name) {
+        return items.indexOf(name); //Returning the index where the name was found; if the name wasn't found, -1 is returned
     }
 
-    public int indexOf(String name) {
-		//Returning the index where the name was found; if the name wasn't found, or items is empty, -1 is returned
-        return items.size() == 0 ? -1 : search(name, 0, items.size() - 1); 
+    public Iterator<SaarujanItem> iterator() {
+        return items.iterator(); //Returning the children in order, without looking each one up by its index
     }
 
     public int itemCount() {
@@ -103,114 +138,162 @@ public class SaarujanFolder extends SaarujanItem {
     }
 
     public int folderCount() {
-        short total = 0; //Storing the total count in total
-        for (int i = 0; i < items.size(); ++i) { //Looping through all items
-            if (items.get(i) instanceof SaarujanFolder) //If the current value is a Folder
-                ++total; //Incrementing the total
-        }
-        
-        return total; //Returning the calculated total
+        return folders; //Returning the stored count
     }
 
     public int fileCount() {
-        short total = 0; //Storing the total count in total
-        for (int i = 0; i < items.size(); ++i) { //Looping through all items
-            if (items.get(i) instanceof SaarujanFile) //If the current value is a File
-                ++total; //Incrementing the total
-        }
+        return files; //Returning the stored count
+    }
 
-        return total; //Returning the calculated total
+    public void resize(long change) {
+        size += change; //Adding the change to the stored size
     }
 
-    public boolean backup(SaarujanServer server) {
-        for (int i = 0; i < items.size(); ++i) { //Looping through all children of the Folder
-            items.get(i).backup(server); //Saving the children in the server's backup
+    public SaarujanFolder check() {
+        long total = 0; //Storing the recalculated size
+        int fileTotal = 0, folderTotal = 0; //Storing the recalculated counts
+        for (SaarujanItem item : items) { //Looping through all children of the Folder
+            if (item instanceof SaarujanFolder) { //If the current child is a Folder, it is checked first
+                SaarujanFolder wrong = ((SaarujanFolder) item).check();
+                if (wrong != null) //If a folder inside it is inconsistent, it is returned
+                    return wrong;
+                ++folderTotal; //Counting the folder
+            } else { //If the current child is a File
+                ++fileTotal; //Counting the file
+            }
+            total += item.size(); //Adding the stored size of the child, which was just checked
         }
 
+        //Returns this folder if its stored values don't match its children, or null if they do
+        return total != size || fileTotal != files || folderTotal != folders ? this : null;
+    }
+
+    public String record(SaarujanServer server) {
+        //Returns the line in the format path|uploader|date; the backup marks it with 'F|' when the folder is created
+        return String.format("%s|%s|%s\n", server.encrypt(getPath()), server.encrypt(getUploader()), getDate().toString());
+    }
+
+    public boolean backup(SaarujanServer server) {
         try {
-            FileWriter output = new FileWriter(server.getFoldersPath(), true); //Opening the folder backup file
-            output.write(String.format("%s|%s|%s\n", server.encrypt(getPath()), server.encrypt(getUploader()), 
-									   getDate().toString())); //Writing encrypted data to the backup file
-            output.close(); //Closing the file
-            return true; //Returning true, as the operation succeeded
-        } catch (Exception e) { //If any exception occurs
-            server.log("Cannot write to backup file!", true); 
+            if (getDate() != null) //Folders that were only created along the path of another item have no record; they're created again
+                setBackupLine(server.getNextIndex().append("F|" + record(server))); //Writing the folder's line, and saving its line number
+        } catch (IOException e) { //If an error occured while writing to the file
+            server.log(server.getNextBackupPath() + " cannot be found!", true); 
             return false; //Returning false, as the operation failed
         }
+
+        int first = server.getNextIndex().count() + 1; //Storing the line of the first child
+        for (SaarujanItem item : items) { //Looping through all children of the Folder
+            if (!item.backup(server)) //Saving the children in the server's backup
+                return false; //Returning false, as the backup is incomplete
+        }
+
+        ranges = new ArrayList<int[]>(); //Every child was saved in a single range, right after the folder
+        if (server.getNextIndex().count() >= first) //If the folder has any children
+            ranges.add(new int[] { first, server.getNextIndex().count() });
+        return true; //Returning true, as the operation succeeded
     }
 
-    public boolean load(SaarujanServer server) {
-        try {
-            BufferedReader input = new BufferedReader(new FileReader(server.getFoldersPath())); //Opening the folder backup file
-            for (int i = 1; i < currentLine; ++i) { //Looping to the line before the current line
-                input.readLine(); //Reading the lines that already have been read
-            }
+    public SaarujanFolder snapshot(List<SaarujanItem> originals, List<SaarujanItem> copies) {
+        SaarujanFolder copy = new SaarujanFolder(getPath(), getUploader(), getDate()); //Creates a folder with the same values
+        ArrayList<SaarujanItem> children = new ArrayList<SaarujanItem>(items.size()); //Stores the copied children, in order
+        for (SaarujanItem item : items) { //Looping through all children of the Folder
+            SaarujanItem copied; //Stores the copy of the current child
+            if (item instanceof SaarujanFolder) //If the current child is a Folder, its children are copied as well
+                copied = ((SaarujanFolder) item).snapshot(originals, copies);
+            else //If the current child is a File
+                copied = ((SaarujanFile) item).snapshot();
 
-			++currentLine; //Incrementing the current line
-            String temp = readToken(input, server); //Reading a token and saving it in temp
-            if (temp == null || temp.equals("")) { //If temp is invalid
-                input.close(); //Closing the file
-                server.log("Backup has no more files!", false); //Logging error message
-                return false; //Returning false
-            } else {
-                if (setPath(temp)) //Setting the path
-					setName(temp.substring(temp.lastIndexOf("/") + 1)); //Setting the name, only if the path is valid
-			}
-
-            temp = readToken(input, server); //Reading the next token
-            if (temp != null) //If the token was read
-                setUploader(temp); //Setting the uploader
-            else { //If an error occured
-                input.close(); //Closing the file
-                return false; //Returning false
-            }
+            originals.add(item); //Stores the child, so it can point to the new backup once it is used
+            copies.add(copied); //Stores its copy, which the backup saves
+            children.add(copied); //The children are sorted, so they stay in order
+            copied.setParent(copy); //The path of the copy is built from the copied folder's path
+            copy.count(copied, 1); //Counts the copy, which has the same size as the child
+        }
+
+        copy.items.build(children); //Builds the copied children at once
+        return copy; //Returns the copied folder
+    }
 
-            temp = readToken(input, server); //Reading the next token
-            if (temp != null) //If the token was read 
-                setDate(new SaarujanDate(server.encrypt(temp))); //Setting the upload date to the read token
-            else {
-                input.close(); //Closing the file
-                return false; //Returning false
+    public ArrayList<int[]> ranges(long generation) {
+        if (ranges != null && getGeneration() <= rangesGeneration) //If nothing inside the folder changed since the ranges were found
+            return ranges; //The kept ranges are returned
+
+        ArrayList<int[]> result = new ArrayList<int[]>(); //Stores the ranges; neighbouring lines are joined into one range
+        for (SaarujanItem item : items) { //Looping through all children of the Folder
+            if (item.getBackupLine() != -1) //If the child has a line, it is added as a range of its own
+                addRange(result, item.getBackupLine(), item.getBackupLine());
+            else if (item instanceof SaarujanFile || item.getDate() != null) //If the child must be saved, but has no line to point to
+                return null; //Returning null, as the ranges are incomplete
+
+            if (item instanceof SaarujanFolder) { //If the child is a Folder, its children are added as well
+                ArrayList<int[]> inside = ((SaarujanFolder) item).ranges(generation); //Storing the ranges of its children
+                if (inside == null) //If they are incomplete
+                    return null; //Returning null, as the ranges are incomplete
+                for (int j = 0; j < inside.size(); ++j) { //Looping through its ranges
+                    addRange(result, inside.get(j)[0], inside.get(j)[1]);
+                }
             }
+        }
 
-            input.close(); //Closing the file
-            return true; //Returning true, as the operation was successful
-        } catch (Exception e) { //Catching any errors
-            server.log("Cannot read backup file!", true); //Outputting error
+        setRanges(result, generation); //Keeping the ranges until something inside the folder changes
+        return result; //Returning the ranges
+    }
+
+    private static void addRange(ArrayList<int[]> list, int first, int last) {
+        int[] end = list.isEmpty() ? null : list.get(list.size() - 1); //Storing the last range
+        if (end != null && end[1] + 1 == first) //If the range continues the last range, it is joined to it
+            end[1] = last;
+        else //Otherwise, a copy is added, so the ranges of the children aren't modified when a range is joined
+            list.add(new int[] { first, last });
+    }
+
+    public ArrayList<int[]> getRanges() {
+        return ranges; //Returning the kept ranges
+    }
+
+    public void setRanges(ArrayList<int[]> ranges, long generation) {
+        this.ranges = ranges; //Setting the ranges
+        rangesGeneration = generation; //Setting the generation they were found at
+    }
+
+    public boolean load(SaarujanServer server, String line) {
+        if (line != null && line.startsWith("F|")) //If the line was added to the server's backup when the folder was created
+            line = line.substring(2); //The mark is removed, as the rest of the line matches the folder backup
+
+        String[] tokens = splitRecord(line, 3); //Splits the line into the path, uploader, and upload date
+        if (tokens == null || tokens[0].equals("")) //If the line is invalid
             return false; //Returning false
-        }
+
+        String temp = server.decrypt(tokens[0]); //Decrypting the path
+        if (setPath(temp)) //Setting the path
+            setName(temp.substring(temp.lastIndexOf("/") + 1)); //Setting the name, only if the path is valid
+
+        setUploader(server.decrypt(tokens[1])); //Setting the uploader
+        setDate(new SaarujanDate(tokens[2])); //Setting the upload date; dates are saved without encryption
+        return true; //Returning true, as the operation was successful
     }
 
-    public int size() {
-        int total = 0; //Saving the total size
-        for (int i = 0; i < items.size(); ++i) { //Looping through all children of the Folder
-            total += items.get(i).size(); //Adding the size of the child to the total
-        }
-        
-        return total; //Returning the calculated total
+    public long size() {
+        return size; //Returning the stored size, which is kept up to date as children are added and removed
     }
 
     public String sendFormat() { //Overriding the abstract sendFormat() method; returns important metadata about the folder
         return String.format("%s|%s|%s|%d|%s|%s", getName(), getUploader(), getDate().toString(), size(), fileCount(), folderCount());
     }
 	
-    private static String buildString(SaarujanFolder main, String indent) {
-        String res = ""; //Storing the resulting string
-        for (byte i = 0; i < main.itemCount(); ++i) { //Looping through all children of the Folder
-            res += indent + "| " + main.get(i).getName() + "\n"; //Adding the formatted name of the file
-            if (main.get(i) instanceof SaarujanFolder) { //If the current item is a Folder
-                res += buildString((SaarujanFolder) main.get(i), indent + "   "); //The buildString() of the sub-folder is added
+    private static void buildString(SaarujanFolder main, String indent, StringBuilder res) {
+        for (SaarujanItem item : main) { //Looping through all children of the Folder, in order
+            res.append(indent).append("| ").append(item.getName()).append("\n"); //Adding the formatted name of the file
+            if (item instanceof SaarujanFolder) { //If the current item is a Folder
+                buildString((SaarujanFolder) item, indent + "   ", res); //The buildString() of the sub-folder is added
             }
         }
-
-        return res; //The result is returned
     }
 
-	public static void resetLine() {
-		currentLine = 1; //Resets the line number back to the starting position
-	}
-	
     public String toString() { //Returns a directory-styled String containing the files and folders within the Folder
-        return getName() + "\n" + buildString(this, "   ");
+        StringBuilder res = new StringBuilder().append(getName()).append("\n"); //Storing the resulting string
+        buildString(this, "   ", res);
+        return res.toString(); //The result is returned
     }
 }
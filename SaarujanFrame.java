@@ -0,0 +1,131 @@
+/** Frame Class
+* Description: Reads and writes the length-prefixed frames that the server and client send to each other;
+  every frame is a 16 digit size, followed by that many bytes of UTF-8. Frames are read with bulk reads into a buffer
+  that is reused for the whole connection, and are only decoded into a String when the text is needed.
+  Files are sent as a frame with their size, followed by frames of at most CHUNK_SIZE bytes, so no frame larger than MAX_SIZE
+  is accepted; the buffer only keeps the size of a chunk, and drops back to its starting size after any larger frame
+* constructor(InputStream, OutputStream) - Stores the streams of a connection, and allocates the reusable buffer
+* constructor(InputStream, OutputStream, Long) - Stores the streams of a connection, and accepts frames up to the given size
+* encodeHeader(Long, Byte[], Int) - Writes the given size as 16 ASCII digits into the given array, at the given offset
+* parseHeader(Byte[], Int) - Parses 16 ASCII digits from the given array, at the given offset, into a size
+* checkSize(Long, Long) - Throws an IOException if the given frame size is larger than the given limit, before it is allocated
+* read() - Reads the next frame into the buffer, and returns its size
+* bytes() - Returns the buffer that holds the last frame that was read
+* length() - Returns the size of the last frame that was read
+* text() - Decodes the last frame that was read as UTF-8
+* readText() - Reads the next frame, and returns it decoded as UTF-8
+* writeHeader(Long) - Writes only the size of a frame, so its message can be written straight to the connection's channel
+* write(Byte[], Int, Int) - Writes the given bytes as a single frame
+* write(String) - Writes the given String as a single UTF-8 frame
+**/
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class SaarujanFrame {
+	public final static int HEADER_SIZE = 16; //The size of a frame is always sent as 16 digits
+	public final static int CHUNK_SIZE = 65536; //The largest amount of file data that is sent in a single frame
+	public final static int MAX_SIZE = CHUNK_SIZE + 4096; //The largest frame that is accepted; every other message is smaller than a chunk
+	private final static int INITIAL_SIZE = 8192; //The starting size of the reusable buffer
+	private InputStream input; //The input stream of the connection
+	private OutputStream output; //The buffered output stream of the connection
+	private byte[] header, outHeader, buffer; //header, outHeader - the sizes of the read and written frames; buffer - holds the message
+	private int length; //The size of the last frame that was read
+	private long limit; //The largest frame that is accepted
+
+	public SaarujanFrame(InputStream input, OutputStream output) {
+		this(input, output, MAX_SIZE); //Accepts the frames that the protocol sends
+	}
+
+	public SaarujanFrame(InputStream input, OutputStream output, long limit) {
+		this.input = input; //Stores the input stream
+		this.output = new BufferedOutputStream(output, INITIAL_SIZE); //The size and message are sent together, instead of separately
+		header = new byte[HEADER_SIZE]; //Allocates the size of a read frame once
+		outHeader = new byte[HEADER_SIZE]; //Allocates the size of a written frame once
+		buffer = new byte[INITIAL_SIZE]; //Allocates the reusable buffer; it grows when a larger frame arrives
+		length = 0; //No frame has been read yet
+		this.limit = Math.min(limit, Integer.MAX_VALUE - 8); //Stores the limit; no frame can be larger than an array
+	}
+
+	public static void encodeHeader(long size, byte[] dest, int offset) {
+		for (int i = offset + HEADER_SIZE - 1; i >= offset; --i) { //Loops from the lowest placed digit (ones) to the highest
+			dest[i] = (byte) ('0' + size % 10); //Stores the digit at the current position
+			size /= 10; //Moves to the next position (Ex: ones to tens)
+		}
+	}
+
+	public static long parseHeader(byte[] src, int offset) throws IOException {
+		long result = 0; //Stores the parsed size
+		for (int i = offset; i < offset + HEADER_SIZE; ++i) { //Loops from the highest placed digit to the lowest
+			if (src[i] < '0' || src[i] > '9') //If the size contains anything other than a digit, the frame is invalid
+				throw new IOException("Invalid frame size!");
+
+			result = result * 10 + (src[i] - '0'); //Adds the digit at the current position
+		}
+
+		return result; //Returns the parsed size
+	}
+
+	public static void checkSize(long size, long limit) throws IOException {
+		if (size > limit) //If the frame is larger than the limit, the connection ends before anything is allocated for it
+			throw new IOException("Frame is too large!");
+	}
+
+	public int read() throws IOException {
+		if (input.readNBytes(header, 0, HEADER_SIZE) != HEADER_SIZE) //Reads the whole size at once
+			throw new EOFException("Connection was closed!"); //If the stream ended, the connection was closed
+
+		if (buffer.length > CHUNK_SIZE) //If the last frame was larger than a chunk, its memory isn't kept for the rest of the connection
+			buffer = new byte[INITIAL_SIZE];
+
+		long size = parseHeader(header, 0); //Stores the size of the message
+		checkSize(size, limit); //Rejects the frame if it is too large
+
+		if (size > buffer.length) //If the message doesn't fit into the current buffer
+			buffer = new byte[(int) Math.max(size, Math.min((long) buffer.length * 2, limit))]; //Grows the buffer
+
+		length = (int) size; //Stores the size of the message
+		if (input.readNBytes(buffer, 0, length) != length) //Reads the whole message at once
+			throw new EOFException("Connection was closed!"); //If the stream ended, the connection was closed
+
+		return length; //Returns the size of the message
+	}
+
+	public byte[] bytes() {
+		return buffer; //Returns the buffer; only the first length() bytes belong to the last frame
+	}
+
+	public int length() {
+		return length; //Returns the size of the last frame
+	}
+
+	public String text() {
+		return new String(buffer, 0, length, StandardCharsets.UTF_8); //Decodes the last frame
+	}
+
+	public String readText() throws IOException {
+		read(); //Reads the next frame
+		return text(); //Returns the decoded frame
+	}
+
+	public void writeHeader(long size) throws IOException {
+		encodeHeader(size, outHeader, 0); //Stores the size of the message as 16 digits
+		output.write(outHeader, 0, HEADER_SIZE); //Writes the size
+		output.flush(); //Sends the size, before the message is written around this stream
+	}
+
+	public void write(byte[] data, int offset, int count) throws IOException {
+		encodeHeader(count, outHeader, 0); //Stores the size of the message as 16 digits
+		output.write(outHeader, 0, HEADER_SIZE); //Writes the size
+		output.write(data, offset, count); //Writes the message
+		output.flush(); //Sends the whole frame
+	}
+
+	public void write(String s) throws IOException {
+		byte[] data = s.getBytes(StandardCharsets.UTF_8); //Encodes the message as UTF-8
+		write(data, 0, data.length); //Writes the message as a single frame
+	}
+}
@@ -1,10 +1,24 @@
 /** Item Class
-* Description: An abstract class that holds general values and methods that both the Folder and File class use
+* Description: An abstract class that holds general values and methods that both the Folder and File class use.
+  Items are kept compact, as a server holds every one of them in memory: once an Item is added to a folder, it points to the
+  folder instead of keeping its path, so each name is stored once and paths are built on demand. Uploaders are stored as ids
+  into a table that every Item shares, and the upload date is packed into an int. Each Item is given an id when it is created,
+  so Items with the same name can still be told apart in a sorted index
 * constructor() - Sets values to empty and null values; sets upload date to the current date
 * constructor(String) - Sets the name to the given name, and every other variable is set to default values
 * constructor(String, String, Date) - Sets the given values; takes the end of the given path, and assigns it to the name
+* intern(String) - Helper method that returns the id of the given uploader in the shared table, adding it if it is new; -1 for null
 * getName() - Returns the name
-* getPath() - Returns the path
+* getId() - Returns the id that the Item was given when it was created
+* getPath() - Returns the path; built from the parent folder's path if the Item is in a folder
+* appendPath(StringBuilder) - Helper recursive method that adds the path of the Item to the given StringBuilder
+* endsWithSeparator() - Helper method that returns whether the stored path ends with a seperator, which only the root directory's does
+* pathHash() - Returns the hash of the path, equal to the hash of the String that getPath() returns, without building it
+* matches(String) - Returns whether the given path is the path of the Item, without building the Item's path
+* matches(String, Int) - Helper recursive method that returns whether the given path, up to the given end, is the Item's path
+* getParent() - Returns the folder that holds the Item, or null if it isn't in a folder
+* setParent(Folder) - Sets the folder that holds the Item; its path is then built from the folder's path, rather than stored.
+					  Items without a valid name keep their stored path
 * getUploader() - Returns the uploader
 * getDate() - Returns the upload date
 * setName(String) - Sets the name to the given value if it only contains valid characters
@@ -12,44 +26,104 @@
 * setUploader(String) - Sets the uploader to the given value
 * getDate() - Returns the upload date
 * setDate(Date) - Sets the upload date
-* readToken(BufferedReader, Server) - Helper method that reads a token from a backup file
+* getBackupLine() - Returns the line number of the Item's record in the current backup
+* setBackupLine(Int) - Sets the line number of the Item's record in the current backup
+* getGeneration() - Returns the generation of the last change to the Item, or to any Item inside it
+* setGeneration(Long) - Sets the generation of the last change to the Item
+* image(DataOutputStream, Map) - Writes the Item's name, uploader id from the given string table, packed date, and line to a binary
+								  checkpoint
+* load(ByteBuffer, String, String[]) - Reads the Item from a binary checkpoint, inside the given parent path, with the given string
+									   table
+* strToInt(String) - Helper method that converts a string to an integer
+* strToLong(String) - Helper method that converts a string to a long, for positions and lengths that can exceed an integer
+* splitRecord(String, Int) - Helper method that splits a line of a backup file into the given amount of tokens; 
+							 the last token keeps the rest of the line. Returns null if the line has fewer tokens
 * abstract backup(Server) - Abstract method that saves the Item to the Server's backup
-* abstract load(Server) - Abstract method that loads the next Item from the Server's backup
+* abstract load(Server, String) - Abstract method that loads the Item from the given line of the Server's backup
 * abstract sendFormat() - Abstract method that returns a String containing the metadata of the Item
 * abstract size() - Abstract method that returns the size of the Item
 **/
-import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class SaarujanItem {
-	private String name, path, uploader; //Stores the name, the path, and the uploader (username) of the Item
-	private SaarujanDate uploadDate; //Stores the upload date of the Item
+	private static final ConcurrentHashMap<String, Integer> uploaderIds = new ConcurrentHashMap<String, Integer>(); //The id of each uploader
+	private static volatile String[] uploaders = new String[16]; //The uploader of each id; only grows, so ids never change
+	private static int uploaderCount = 0; //The amount of ids given out; only changed while the class is locked
+	private static final AtomicInteger nextId = new AtomicInteger(); //The id of the next Item; ids repeat only after 2^32 Items
+	private final int id; //Stores the id of the Item, which tells it apart from Items with the same name
+	private String name, path; //Stores the name, and the path while the Item isn't in a folder; null once it is
+	//Stores the folder that holds the Item; null if it isn't in a folder. It is set after the path, so a client that finds the
+	//Item without locking the file system reads a path that is either stored or can be built
+	private volatile SaarujanFolder parent;
+	private int uploader; //Stores the id of the uploader (username) of the Item; -1 if there is none
+	private int uploadDate; //Stores the upload date of the Item, packed into an int; 0 if there is none
+	private int backupLine; //Stores the line number of the Item's record in the current backup; -1 if it has none
+	private long generation; //Stores the generation of the last change to the Item; a backup only revisits newer Items
 
 	public SaarujanItem() {
+		id = nextId.getAndIncrement(); //Gives the Item the next id
 		name = null; //Sets name to null
 		path = null; //Sets path to null
-		uploader = null; //Sets uploader to null
-		uploadDate = SaarujanDate.currentDate(); //Sets the upload date to the current date
+		uploader = -1; //Sets uploader to null
+		uploadDate = SaarujanDate.currentDate().pack(); //Sets the upload date to the current date
+		backupLine = -1; //The Item isn't in the backup yet
 	}
 
 	public SaarujanItem(String name) {
+		id = nextId.getAndIncrement(); //Gives the Item the next id
 		setName(name); //Calls the setter of name to set the given name, as it must be verified
 		path = null; //Sets the path to null
-		uploader = null; //Sets uploader to null
-		uploadDate = SaarujanDate.currentDate(); //Sets the upload date to the current date
+		uploader = -1; //Sets uploader to null
+		uploadDate = SaarujanDate.currentDate().pack(); //Sets the upload date to the current date
+		backupLine = -1; //The Item isn't in the backup yet
 	}
 
 	public SaarujanItem(String path, String uploader, SaarujanDate uploadDate) {
+		id = nextId.getAndIncrement(); //Gives the Item the next id
 		if (setPath(path)) //Calls the setter of path to validate the path
 			setName(path.substring(path.lastIndexOf("/") + 1)); //Calls the setter of name to validate the name, if the path is valid
 		
-		this.uploader = uploader; //Sets uploader to the given username
-		this.uploadDate = uploadDate; //Sets the upload date to the given Date
+		setUploader(uploader); //Sets uploader to the given username
+		setDate(uploadDate); //Sets the upload date to the given Date
+		backupLine = -1; //The Item isn't in the backup yet
+	}
+
+	private static int intern(String user) {
+		if (user == null) //If there is no uploader
+			return -1; //Returns -1
+
+		Integer id = uploaderIds.get(user); //Stores the id of the uploader, if it was already given one
+		if (id != null) //If it was, the id is returned
+			return id;
+
+		synchronized (SaarujanItem.class) { //Only one id is given out at a time
+			id = uploaderIds.get(user); //Checks again, in case another thread gave it an id first
+			if (id != null)
+				return id;
+
+			if (uploaderCount == uploaders.length) //If the table is full, it is copied into a larger table
+				uploaders = Arrays.copyOf(uploaders, uploaderCount * 2);
+			uploaders[uploaderCount] = user; //Stores the uploader, before its id can be read
+			uploaderIds.put(user, uploaderCount); //Gives the uploader the next id
+			return uploaderCount++; //Returns the id
+		}
 	}
 
 	public String getName() {
 		return name; //Returning the name
 	}
 
+	public int getId() {
+		return id; //Returning the id
+	}
+
 	public boolean setName(String n) {
 		if (n.length() > 20) //If the name is over 20 characters long, the method exits
 			return false;
@@ -74,7 +148,75 @@ public abstract class SaarujanItem {
 	}
 
 	public String getPath() {
-		return path; //Returns the path
+		SaarujanFolder folder = parent; //Stores the folder first, so the path that is read next belongs with it
+		String stored = path; //Stores the stored path
+		if (stored != null || folder == null) //If the path is stored, as the Item isn't in a folder, it is returned
+			return stored; //Returns the path
+
+		StringBuilder result = new StringBuilder(64); //Stores the path as it is built
+		appendPath(result); //Builds the path from the root directory down
+		return result.toString(); //Returns the path
+	}
+
+	private void appendPath(StringBuilder result) {
+		if (path != null || parent == null) { //If the path is stored, such as the root directory's, it is added
+			result.append(path);
+			return; //Exits the method
+		}
+
+		SaarujanItem folder = parent; //Stores the folder as an Item, so its helper methods can be called
+		folder.appendPath(result); //Adds the path of the folder first
+		if (!folder.endsWithSeparator()) //Only the root's path ends with a seperator, so one is added after any other folder
+			result.append('/');
+		result.append(name); //Adds the name
+	}
+
+	private boolean endsWithSeparator() {
+		return path != null && path.endsWith("/"); //Returns whether the stored path ends with a seperator
+	}
+
+	public int pathHash() {
+		if (path != null || parent == null) //If the path is stored, its own hash is returned
+			return path == null ? 0 : path.hashCode();
+
+		SaarujanItem folder = parent; //Stores the folder as an Item, so its helper methods can be called
+		int hash = folder.pathHash(); //Starts from the hash of the folder's path; String hashes can be continued one character at a time
+		if (!folder.endsWithSeparator()) //Adds the seperator, if getPath() adds one
+			hash = 31 * hash + '/';
+		for (int i = 0; i < name.length(); ++i) { //Adds each character of the name
+			hash = 31 * hash + name.charAt(i);
+		}
+
+		return hash; //Returns the hash
+	}
+
+	public boolean matches(String p) {
+		return matches(p, p.length()); //Compares the whole given path
+	}
+
+	private boolean matches(String p, int end) {
+		if (path != null || parent == null) //If the path is stored, it is compared with the rest of the given path
+			return path != null && end == path.length() && p.startsWith(path);
+
+		SaarujanItem folder = parent; //Stores the folder as an Item, so its helper methods can be called
+		int start = end - name.length(); //Stores where the name would start in the given path
+		if (start <= 0 || !p.regionMatches(start, name, 0, name.length())) //If the given path doesn't end with the name
+			return false; //Returns false
+		if (folder.endsWithSeparator()) //If the folder's path ends with a seperator, it ends right before the name
+			return folder.matches(p, start);
+
+		return p.charAt(start - 1) == '/' && folder.matches(p, start - 1); //Otherwise, a seperator comes between them
+	}
+
+	public SaarujanFolder getParent() {
+		return parent; //Returns the folder
+	}
+
+	public void setParent(SaarujanFolder folder) {
+		path = getPath(); //Stores the path the Item had, in case it leaves its folder
+		parent = folder; //Sets the folder
+		if (folder != null && name != null) //If the Item is now in a folder, its path is built from the folder's path instead
+			path = null;
 	}
 
 	public boolean setPath(String p) {
@@ -86,19 +228,56 @@ public abstract class SaarujanItem {
 	}
 
 	public String getUploader() {
-		return uploader; //Returns the uploader of the Item
+		return uploader == -1 ? null : uploaders[uploader]; //Returns the uploader of the Item, from the shared table
 	}
 
 	public void setUploader(String user) {
-		uploader = user; //Sets the uploader to the given username; no verification is needed, as the client must have an account
+		uploader = intern(user); //Sets the uploader to the given username; no verification is needed, as the client must have an account
 	}
 
 	public SaarujanDate getDate() {
-		return uploadDate; //Returns the upload date
+		return uploadDate == 0 ? null : SaarujanDate.unpack(uploadDate); //Returns the upload date
 	}
 
 	public void setDate(SaarujanDate d) {
-		uploadDate = d; //Sets the upload date; no verification is needed
+		uploadDate = d == null ? 0 : d.pack(); //Sets the upload date; no verification is needed
+	}
+
+	public int getBackupLine() {
+		return backupLine; //Returns the line number
+	}
+
+	public void setBackupLine(int line) {
+		backupLine = line; //Sets the line number
+	}
+
+	public long getGeneration() {
+		return generation; //Returns the generation
+	}
+
+	public void setGeneration(long generation) {
+		this.generation = generation; //Sets the generation
+	}
+
+	public void image(DataOutputStream out, Map<String, Integer> uploaders) throws IOException {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8); //Encodes the name; the path is found from the parent when it is read
+		SaarujanCheckpoint.writeNumber(out, bytes.length); //Writes the length of the name, followed by the name
+		out.write(bytes);
+		//Writes the uploader's id in the image's own table; -1 if none
+		SaarujanCheckpoint.writeNumber(out, uploader == -1 ? -1 : uploaders.get(getUploader()));
+		SaarujanCheckpoint.writeNumber(out, uploadDate); //Writes the packed date; 0 if there is none
+		SaarujanCheckpoint.writeNumber(out, backupLine); //Writes the line of the Item's record, which the checkpoint covers
+	}
+
+	public void load(ByteBuffer in, String parent, String[] uploaders) {
+		byte[] bytes = new byte[(int) SaarujanCheckpoint.readNumber(in)]; //Allocates space for the name
+		in.get(bytes); //Reads the name
+		name = new String(bytes, StandardCharsets.UTF_8);
+		path = parent.endsWith("/") ? parent + name : parent + "/" + name; //Only the root's path ends with a seperator
+		int id = (int) SaarujanCheckpoint.readNumber(in), date = (int) SaarujanCheckpoint.readNumber(in); //Reads the uploader's id and the date
+		setUploader(id == -1 ? null : uploaders[id]); //Sets the uploader from the string table
+		uploadDate = date; //Sets the upload date, which is packed the same way
+		backupLine = (int) SaarujanCheckpoint.readNumber(in); //Sets the line of the Item's record
 	}
 
 	protected static int strToInt(String s) {
@@ -111,24 +290,37 @@ public abstract class SaarujanItem {
 		return result;
 	}
 	
-	protected static String readToken(BufferedReader input, SaarujanServer server) {
-		try {
-			String result = ""; //Initializing a String to store the token
-			int curr = input.read(); //Storing the read value in curr
-			while (curr != -1 && (char) curr != '|') { //Loops until the end of the stream, or the delimeter '|' is reached
-				result += (char) curr; //Adding the char value of the read value to the result
-				curr = input.read(); //Reading another value from the stream
-			}
+	protected static long strToLong(String s) {
+		long result = 0, multiplier = 1; //Storing the result in result, and using multiplier to place digits in the right position
+		for (int i = s.length() - 1; i >= 0; --i) { //Looping from the first position (ones) to the last position
+			result += (s.charAt(i) - '0') * multiplier; //Adding the current digit to the result
+			multiplier *= 10; //Moving to the next position
+		}
 
-			return server.decrypt(result); //Returning the decrypted token
-		} catch (Exception e) { //If any error occurs (specifically IOException since FileNotFound is already taken care of)
-			server.log("Error while reading token from backup file!", true); 
-			return null; //Returning null
+		return result;
+	}
+	
+	protected static String[] splitRecord(String line, int count) {
+		if (line == null) //If there is no line
+			return null; //Null is returned
+
+		String[] tokens = new String[count]; //Stores the tokens
+		int start = 0; //Stores the start of the current token
+		for (int i = 0; i < count - 1; ++i) { //Loops through every token except the last, which keeps the rest of the line
+			int end = line.indexOf('|', start); //Finds the delimeter '|' that ends the current token
+			if (end == -1) //If the line has fewer tokens
+				return null; //Null is returned
+
+			tokens[i] = line.substring(start, end); //Stores the current token
+			start = end + 1; //Moves past the delimeter
 		}
+
+		tokens[count - 1] = line.substring(start); //Stores the rest of the line
+		return tokens; //Returns the tokens
 	}
 	
 	public abstract boolean backup(SaarujanServer server); //Abstract backup method
-	public abstract boolean load(SaarujanServer server); //Abstract load method
+	public abstract boolean load(SaarujanServer server, String line); //Abstract load method
 	public abstract String sendFormat(); //Abstract format method to send to client
-	public abstract int size(); //Abstract size method
+	public abstract long size(); //Abstract size method
 }
\ No newline at end of file
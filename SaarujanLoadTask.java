@@ -0,0 +1,74 @@
+/** Load Task Class
+* Description: A fork-join task that decrypts and parses a range of lines from the server's backup into files;
+  large ranges are split in half and parsed in parallel, and the results are joined back in the order of the lines,
+  so the files are the same as the ones a sequential load produces. Every other record (folders, deletions, and accounts)
+  is collected by line number instead, as they must be replayed in order
+* constructor(Server, BackupIndex, Map, Int, Int) - Stores the server, the backup, the map that collects the records to replay,
+													 and the first and last line numbers of the range
+* parse() - Helper method that reads the whole range with a single read, and parses each of its lines
+* compute() - Parses the range, splitting it in half first if it is larger than SPLIT_SIZE lines
+**/
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+public class SaarujanLoadTask extends RecursiveTask<ArrayList<SaarujanFile>> {
+	private final static long serialVersionUID = 1L; //Tasks are never serialized, but fork-join tasks are Serializable
+	private final static int SPLIT_SIZE = 4096; //The largest amount of lines that is parsed without being split
+	private transient SaarujanServer server; //The server, which decrypts the lines
+	private transient SaarujanBackupIndex backup; //The backup that the lines are read from
+	private transient Map<Integer, String> mutations; //Collects the records to replay from every range, by line number
+	private int first, last; //The first and last line numbers of the range
+
+	public SaarujanLoadTask(SaarujanServer server, SaarujanBackupIndex backup, Map<Integer, String> mutations, int first, int last) {
+		this.server = server; //Stores the server
+		this.backup = backup; //Stores the backup
+		this.mutations = mutations; //Stores the map of records to replay
+		this.first = first; //Stores the first line number
+		this.last = last; //Stores the last line number
+	}
+
+	private ArrayList<SaarujanFile> parse() throws IOException {
+		ArrayList<SaarujanFile> result = new ArrayList<SaarujanFile>(last - first + 1); //Stores the parsed files
+		String text = backup.readRange(first, last); //Reads every line of the range at once; each line ends with a line seperator
+		int start = 0; //Stores the start of the current line
+		for (int number = first; number <= last; ++number) { //Loops through the lines, counting the line numbers
+			int end = text.indexOf('\n', start); //Finds the end of the current line
+			if (end == -1) //If the last line has no line seperator
+				end = text.length(); //The line ends with the range
+
+			String line = text.substring(start, end); //Stores the current line
+			SaarujanFile file = new SaarujanFile(); //Creates a new file; the current line will be loaded onto this
+			//If the line is marked with a letter other than 'B', it created a folder, deleted an item, or changed an account
+			if (line.length() > 1 && line.charAt(1) == '|' && Character.isLetter(line.charAt(0)) && line.charAt(0) != 'B') {
+				mutations.put(number, line); //The line is kept, so it can be replayed in order with the others
+			} else if (file.load(server, line) && file.getPath() != null) { //If the line is a valid file
+				file.setBackupLine(number); //Stores the line number, so the index can find it without reading the lines before it
+				result.add(file); //Adds the file to the result
+			}
+			start = end + 1; //Moves onto the next line
+		}
+
+		return result; //Returns the parsed files
+	}
+
+	protected ArrayList<SaarujanFile> compute() {
+		if (last - first < SPLIT_SIZE) { //If the range is small enough to parse directly
+			try {
+				return parse(); //Returns the parsed files
+			} catch (IOException e) { //If the backup couldn't be read
+				throw new UncheckedIOException(e); //The error is passed to the thread that started the load
+			}
+		}
+
+		int half = (first + last) / 2; //Stores the last line of the first half
+		SaarujanLoadTask top = new SaarujanLoadTask(server, backup, mutations, first, half); //Creates a task for the first half
+		top.fork(); //Parses the first half on another thread
+		ArrayList<SaarujanFile> result = new SaarujanLoadTask(server, backup, mutations, half + 1, last).compute(); //Parses the second half
+		ArrayList<SaarujanFile> joined = top.join(); //Waits for the first half
+		joined.addAll(result); //Adds the second half after the first half, so the files stay in the order of the lines
+		return joined; //Returns the parsed files
+	}
+}
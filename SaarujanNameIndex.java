@@ -0,0 +1,166 @@
+/** Name Index Class
+* Description: Finds items by their name, wherever they are in the file system, so a client can search a folder and every
+  folder inside it in a single request instead of navigating through each one. Every item is kept in a Treap sorted by name,
+  then by id, so the items whose names start with a prefix are next to each other, and any one item is added or removed in
+  O(log n), however many items share its name. Patterns can use * to match any characters and ? to match a single character;
+  a pattern without them matches every name that starts with it. A search checks the k items that share the prefix, in
+  O(log n + k): the root directory holds all of them, and for any other folder, each candidate's folders are walked up only
+  until a folder that was already checked. A wildcard early in the pattern leaves a short prefix, so k can be close to n; the
+  index then checks about as many items as a walk through the whole file system would. As k is known in O(log n), a search
+  inside a folder first walks through it, stopping once it has checked k items, so searching a small folder stays fast, and a
+  large folder costs at most twice the index. The index is only changed while the file system is locked, like the folders
+* constructor() - Initializes the index as empty
+* add(Item) - Adds the given item; items without a valid name are left out, as they can't be searched for
+* remove(Item) - Removes the given item in O(log n), leaving any other item with the same name
+* prefix(String) - Helper method that returns the characters of the given pattern before its first * or ?
+* end(String) - Helper method that returns the position after the last item whose name starts with the given prefix
+* matches(String, String) - Returns whether the given name matches the given pattern, where * matches any characters and ? matches
+							a single character
+* contains(Item, Map) - Helper method that returns whether the given item is inside the folder that the given map was started
+						with, at any depth; the map stores whether each folder that was passed is inside it, so later items
+						stop walking up once they reach one
+* walk(Folder, String, List, Int) - Helper recursive method that adds every item inside the given folder whose name matches the
+									given pattern to the list, checking at most the given amount of items; returns the amount
+									that is left, or a negative amount if the folder holds more items
+* search(Folder, String) - Returns every item inside the given folder, at any depth, whose name matches the given pattern; a
+						   pattern without * or ? matches every name that starts with it. The items are sorted by name. The
+						   folder is walked through if it holds fewer items than share the prefix, otherwise the index is used
+* size() - Returns the amount of items
+**/
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class SaarujanNameIndex {
+	private SaarujanTreap items; //Every item, sorted by name, then by id
+
+	public SaarujanNameIndex() {
+		items = new SaarujanTreap(true); //The index starts empty; items with the same name are ordered by their ids
+	}
+
+	public void add(SaarujanItem item) {
+		if (item.getName() != null) //If the item has a valid name, it is added among any items with the same name, by its id
+			items.add(item);
+	}
+
+	public void remove(SaarujanItem item) {
+		if (item.getName() == null) //If the item has no valid name, it was never added
+			return; //Exits the method
+
+		int index = items.indexOf(item); //Finds the item by its name and id
+		if (index != -1) //If the item was added, it is removed
+			items.remove(index);
+	}
+
+	private static String prefix(String pattern) {
+		for (int i = 0; i < pattern.length(); ++i) { //Loops through the pattern, until the first wildcard
+			if (pattern.charAt(i) == '*' || pattern.charAt(i) == '?')
+				return pattern.substring(0, i); //Returns the characters before it
+		}
+
+		return pattern; //Returns the whole pattern, as it has no wildcard
+	}
+
+	private int end(String prefix) {
+		if (prefix.length() == 0) //Every name starts with an empty prefix
+			return items.size(); //Returns the amount of items
+
+		char last = prefix.charAt(prefix.length() - 1); //Stores the last character of the prefix
+		if (last == Character.MAX_VALUE) //If it can't be incremented, the names after the prefix are counted with a shorter prefix
+			return end(prefix.substring(0, prefix.length() - 1));
+
+		//Every name that starts with the prefix comes before the prefix with its last character incremented, and no other name does
+		return items.ceiling(prefix.substring(0, prefix.length() - 1) + (char) (last + 1));
+	}
+
+	public static boolean matches(String name, String pattern) {
+		int i = 0, j = 0; //Stores the position in the name, and in the pattern
+		int star = -1, resume = 0; //Stores the position of the last * in the pattern, and where in the name it matches up to
+		while (i < name.length()) { //Loops until the whole name is matched
+			if (j < pattern.length() && (pattern.charAt(j) == '?' || pattern.charAt(j) == name.charAt(i))) { //If the characters match
+				++i;
+				++j;
+			} else if (j < pattern.length() && pattern.charAt(j) == '*') { //If the pattern has a *, it first matches no characters
+				star = j++;
+				resume = i;
+			} else if (star != -1) { //If the characters don't match, the last * matches one more character, and the rest is tried again
+				j = star + 1;
+				i = ++resume;
+			} else { //If there is no * to match the character
+				return false; //Returns false
+			}
+		}
+
+		while (j < pattern.length() && pattern.charAt(j) == '*') //Any * left at the end of the pattern matches no characters
+			++j;
+		return j == pattern.length(); //Returns whether the whole pattern was matched
+	}
+
+	private static boolean contains(SaarujanItem item, Map<SaarujanFolder, Boolean> known) {
+		Boolean result = null; //Stores whether the item is inside the folder, once it is known
+		SaarujanFolder parent = item.getParent(); //Walks up from the item, until a folder that was already checked
+		for (; parent != null && result == null; parent = parent.getParent())
+			result = known.get(parent);
+		if (result == null) //If the root directory was reached without passing through the folder, the item is outside of it
+			result = false;
+
+		//Stores the answer for every folder that was passed, including the one that gave it, so later items stop at them
+		for (SaarujanFolder passed = item.getParent(); passed != parent; passed = passed.getParent())
+			known.put(passed, result);
+		return result; //Returns whether the item is inside the folder
+	}
+
+	private static int walk(SaarujanFolder folder, String pattern, List<SaarujanItem> result, int budget) {
+		if (folder.itemCount() > budget) //If the folder's children alone exceed the amount of items left, the walk stops at once
+			return -1;
+
+		for (SaarujanItem item : folder) { //Loops through the children of the folder
+			--budget; //Counts the child
+			if (item.getName() != null && matches(item.getName(), pattern)) //If its name matches, it is found
+				result.add(item);
+			if (item instanceof SaarujanFolder) { //If the child is a folder, its children are walked through as well
+				budget = walk((SaarujanFolder) item, pattern, result, budget);
+				if (budget < 0) //If the folder holds too many items, the walk stops
+					return budget;
+			}
+		}
+
+		return budget; //Returns the amount of items left
+	}
+
+	public ArrayList<SaarujanItem> search(SaarujanFolder folder, String pattern) {
+		String prefix = prefix(pattern); //Stores the characters that every matching name starts with
+		if (prefix.length() == pattern.length()) //If the pattern has no wildcard, it matches every name that starts with it
+			pattern += "*";
+
+		ArrayList<SaarujanItem> result = new ArrayList<SaarujanItem>(); //Stores the matching items
+		int first = items.ceiling(prefix), candidates = end(prefix) - first; //Stores the first item that starts with the prefix, and the amount
+		//Stores whether each folder that was passed is inside the given folder; the root directory holds every item, so it needs none
+		Map<SaarujanFolder, Boolean> known = null;
+		if (folder.getParent() != null) { //If the folder isn't the root directory, and holds fewer items than the index would check, it is walked through
+			if (walk(folder, pattern, result, candidates) >= 0) {
+				SaarujanFolder.sort(result); //Sorts the items by name, as the index would return them
+				return result; //Returns the matching items
+			}
+
+			result.clear(); //Forgets the items that the walk found before it stopped
+			known = new IdentityHashMap<SaarujanFolder, Boolean>();
+			known.put(folder, true); //Every item that passes through the folder is inside it
+		}
+
+		Iterator<SaarujanItem> next = items.iterator(first); //Starts at the first name that starts with the prefix
+		for (int i = 0; i < candidates; ++i) { //Loops through the names that start with the prefix, as they are next to each other
+			SaarujanItem item = next.next(); //Stores the current item
+			if (matches(item.getName(), pattern) && (known == null || contains(item, known))) //If the name matches, and the item is inside the folder
+				result.add(item);
+		}
+
+		return result; //Returns the matching items
+	}
+
+	public int size() {
+		return items.size(); //Returns the amount of items
+	}
+}
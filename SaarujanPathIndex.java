@@ -0,0 +1,122 @@
+/** Path Index Class
+* Description: Finds the item at a full path without walking the file system, and without keeping any path in memory. Items
+  are held in an open addressing hash table (each item sits at the slot its hash picks, or the next free slot after it), and
+  a lookup compares the given path with an item's name and its folders' names, so the paths never need to be built. Lookups
+  don't lock; changes are made one at a time, and a resized table is only used once it is complete. Removed items leave a
+  marker, so items that were placed after them can still be found; the markers are cleared when the table is resized
+* constructor() - Initializes the index as empty
+* spread(Int) - Helper method that mixes the given hash, so paths that only differ at the end land on different slots
+* get(String) - Returns the item at the given path, or null if there is none
+* put(Item) - Adds the given item, replacing any item at the same path
+* add(Item) - Adds the given item, unless an item at the same path was added first
+* insert(Item, Boolean) - Helper method that adds the given item, and replaces an item at the same path only if told to
+* remove(Item) - Removes the given item, if it is in the index
+* resize() - Helper method that copies the items into a new table, sized for twice as many items, leaving the markers out
+* size() - Returns the amount of items
+**/
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class SaarujanPathIndex {
+	private static final SaarujanItem REMOVED = new SaarujanFolder(); //Marks the slot of a removed item
+	private volatile AtomicReferenceArray<SaarujanItem> table; //Stores the items; the length is a power of two, so a hash picks a slot with a mask
+	private int count, removed; //The amount of items, and of markers left by removed items
+
+	public SaarujanPathIndex() {
+		table = new AtomicReferenceArray<SaarujanItem>(64); //Starts with a small table
+		count = removed = 0; //The index starts empty
+	}
+
+	private static int spread(int hash) {
+		hash *= 0x9E3779B9; //Multiplies the hash, so nearby hashes differ in their upper bits
+		return hash ^ hash >>> 16; //Mixes the upper bits into the lower bits
+	}
+
+	public SaarujanItem get(String path) {
+		AtomicReferenceArray<SaarujanItem> items = table; //Stores the table once, as a resize may replace it
+		int mask = items.length() - 1; //Stores the mask that picks a slot
+		for (int i = spread(path.hashCode()) & mask; ; i = i + 1 & mask) { //Loops from the slot the path picks; the table always has a free slot
+			SaarujanItem item = items.get(i); //Stores the item in the slot
+			if (item == null) //If the slot is free, the path was never added
+				return null; //Returns null
+			if (item != REMOVED && item.matches(path)) //If the item is at the path
+				return item; //Returns the item
+		}
+	}
+
+	public synchronized void put(SaarujanItem item) {
+		insert(item, true); //Adds the item, replacing any item at the same path
+	}
+
+	public synchronized void add(SaarujanItem item) {
+		insert(item, false); //Adds the item, keeping any item at the same path
+	}
+
+	private void insert(SaarujanItem item, boolean replace) {
+		if ((count + removed + 1) * 2 > table.length()) //Keeps at least half of the table free, so probes stay short
+			resize();
+
+		String path = item.getPath(); //Stores the path once, to compare it with the items along the way
+		int mask = table.length() - 1, marker = -1; //Stores the mask, and the first marker found, which the item can reuse
+		for (int i = spread(path.hashCode()) & mask; ; i = i + 1 & mask) { //Loops from the slot the path picks
+			SaarujanItem current = table.get(i); //Stores the item in the slot
+			if (current == null) { //If the slot is free, the path isn't in the index
+				if (marker == -1) //If no marker was found, the item takes the free slot
+					marker = i;
+				else //Otherwise, it takes the marker's slot, and the marker is no longer counted
+					--removed;
+				table.set(marker, item); //Adds the item
+				++count;
+				return; //Exits the method
+			}
+
+			if (current == REMOVED) { //If the slot holds a marker, the item may take it, once the path is known not to be further on
+				if (marker == -1)
+					marker = i;
+			} else if (current.matches(path)) { //If an item is already at the path
+				if (replace) //Replaces it, if told to
+					table.set(i, item);
+				return; //Exits the method
+			}
+		}
+	}
+
+	public synchronized void remove(SaarujanItem item) {
+		int mask = table.length() - 1; //Stores the mask that picks a slot
+		for (int i = spread(item.pathHash()) & mask; ; i = i + 1 & mask) { //Loops from the slot the item's path picks
+			SaarujanItem current = table.get(i); //Stores the item in the slot
+			if (current == null) //If the slot is free, the item isn't in the index
+				return; //Exits the method
+			if (current == item) { //If the slot holds the item, a marker takes its place, so later items can still be found
+				table.set(i, REMOVED);
+				--count;
+				++removed;
+				return; //Exits the method
+			}
+		}
+	}
+
+	private void resize() {
+		int length = 64; //Stores the length of the new table
+		while (length < (count + 1) * 4) //Sizes the table so it is at most a quarter full, leaving room to double
+			length <<= 1;
+
+		AtomicReferenceArray<SaarujanItem> resized = new AtomicReferenceArray<SaarujanItem>(length); //Creates the new table
+		for (int i = 0; i < table.length(); ++i) { //Loops through the slots of the current table
+			SaarujanItem item = table.get(i); //Stores the item in the slot
+			if (item == null || item == REMOVED) //If the slot is free, or holds a marker, it is left out
+				continue;
+
+			int j = spread(item.pathHash()) & length - 1; //Finds the first free slot from the one the item's path picks
+			while (resized.get(j) != null)
+				j = j + 1 & length - 1;
+			resized.set(j, item); //Copies the item
+		}
+
+		table = resized; //Uses the new table, now that it is complete
+		removed = 0; //The markers were left out
+	}
+
+	public synchronized int size() {
+		return count; //Returns the amount of items
+	}
+}
@@ -1,111 +1,123 @@
 /** Queue Class
-* Description: A variation of a normal queue, with a capacity; if it exceeds the capacity, the first value will be dequeued
+* Description: A variation of a normal queue, with a capacity; if it exceeds the capacity, the first value will be dequeued.
+  The values are held in a ring buffer: an array that the queue wraps around, so adding or removing at either end never walks
+  through the queue. The array starts small, and doubles as values are added, up to the capacity
 *
-* constructor() - Initializes values to null, and length to 0; the default capacity is 10
-* constructor(Byte) - Sets the capacity to the given capacity, and head to null, length to 0
-* constructor(Node) - Sets the head to the given node, and calculates the length, using the given Node; sets capacity to 10, as default
-* enqueue(String) - Adds the given string to the end of the queue; if the length exceeds the capacity after adding the new value, 
+* constructor() - Initializes the queue as empty; the default capacity is 10
+* constructor(Int) - Initializes the queue as empty, and sets the capacity to the given capacity
+* constructor(Node, Int) - Sets the capacity to the given capacity, and adds the values of the given Node and the Nodes after it,
+						   until the capacity is reached
+* index(Int) - Helper method that returns where the value at the given position of the queue is stored in the array
+* grow() - Helper method that doubles the size of the array, up to the capacity, moving the first value to the start
+* append(String) - Helper method that adds the given string to the end of the queue, which must not be full
+* enqueue(String) - Adds the given string to the end of the queue; if the length exceeds the capacity after adding the new value,
 *				    the first value is dequeued and returned
 * dequeue() - Removes the first value of the queue and returns it
-* remove(String) - Removes the given value from the queue; if it doesn’t exist inside the queue, the method returns false
+* remove(String) - Removes the first value that equals the given value from the queue; if it doesn’t exist inside the queue, the
+				   method returns false
 * length() - Returns the length of the queue
 * toString() - Returns the queue as a string, containing every value in the queue
 **/
+import java.util.Objects;
 
 public class SaarujanQueue {
-	private SaarujanNode head; //Stores the head Node of the queue
-	private byte length, capacity; //Stores the current length of the queue, and the maximum capacity the queue can store
+	private String[] values; //Stores the values of the queue, starting at head and wrapping around the end of the array
+	private int head, length, capacity; //Stores where the first value is, the current length of the queue, and the maximum capacity
 
 	public SaarujanQueue() {
-		head = null; //Sets the head to null
-		length = 0; //Sets the length to 0, as the queue is empty
-		capacity = 10; //Sets the capacity to a default value of 10
+		this(10); //Sets the capacity to a default value of 10
 	}
 
-	public SaarujanQueue(byte capacity) {
-		head = null; //Sets the head to null
+	public SaarujanQueue(int capacity) {
+		this.capacity = Math.max(capacity, 0); //Sets the capacity to the given capacity; a negative capacity holds nothing
+		values = new String[Math.min(this.capacity, 16)]; //Starts with a small array, so large capacities don't use memory until they are filled
+		head = 0; //The first value will be stored at the start of the array
 		length = 0; //Sets the length to 0, as the queue is empty
-		this.capacity = capacity; //Sets the capacity to the given capacity
 	}
 
-	public SaarujanQueue(SaarujanNode node, byte capacity) {
-		head = node; //Sets the head to the given Node
-		this.capacity = capacity; //Sets the capacity to the given capacity
-		length = 0; //Sets the starting length to 0
-		while (node != null && length < capacity) { //Loops until the length reaches the capacity, or the current Node is null
-			++length; //Incrementing the length
+	public SaarujanQueue(SaarujanNode node, int capacity) {
+		this(capacity); //Initializes the queue as empty
+		while (node != null && length < this.capacity) { //Loops until the length reaches the capacity, or the current Node is null
+			append(node.value); //Adds the value of the current Node; the queue isn't full yet
 			node = node.next; //Iterating to the next Node in the queue
 		}
+	}
 
-		if (length == capacity && node != null) //If the length met the capacity and the current node isn't null
-			node.next = null; //We end the queue at the given Node
+	private int index(int position) {
+		int result = head + position; //Stores where the value would be, if the array didn't wrap around
+		return result >= values.length ? result - values.length : result; //Wraps around the end of the array
 	}
 
-	public String enqueue(String value) {
-		if (head == null) { //If the queue is empty
-			head = new SaarujanNode(value); //The head is assigned a new Node, with the given value
-		} else {
-			SaarujanNode n = head; //A temporary Node is initialized with the queue's head
-			while (n.next != null) { //Looping until the Node points towards null
-				n = n.next; //Iterating to the next Node in the queue
-			}
-			
-			n.next = new SaarujanNode(value); //Pointing the last Node to a new Node, with the given value
+	private void grow() {
+		//Doubles the array, without exceeding the capacity; the sum is a long, so large capacities cannot overflow
+		String[] grown = new String[(int) Math.min(Math.max(values.length * 2L, 1), capacity)];
+		for (int i = 0; i < length; ++i) { //Copies the values in order, so the first value is at the start
+			grown[i] = values[index(i)];
 		}
 
+		values = grown; //Uses the larger array
+		head = 0; //The first value was moved to the start
+	}
+
+	private void append(String value) {
+		if (length == values.length) //If the array is full, but the queue isn't, the array grows
+			grow();
+
+		values[index(length)] = value; //Stores the value after the last value
 		++length; //Incrementing the length by 1
-		//If the queue exceeds its capacity, the first value is dequeued and returned; otherwise, null is returned
-		return length > capacity ? dequeue() : null; 
+	}
+
+	public String enqueue(String value) {
+		if (capacity == 0) //If the queue cannot hold any value
+			return value; //The given value is dequeued straight away
+
+		String result = length == capacity ? dequeue() : null; //If the queue is full, the first value is dequeued to make room
+		append(value); //Adds the value after the last value
+		return result; //Returns the dequeued value, or null if the queue wasn't full
 	}
 
 	public String dequeue() {
-		if (head == null) //If the queue is empty
+		if (length == 0) //If the queue is empty
 			return null; //Null is returned, as there is no value to dequeue
 
-		String result = head.value; //Storing the value of the first Node
-		head = head.next; //Shifting the queue to the next Node, in order to remove the first Node
+		String result = values[head]; //Storing the first value
+		values[head] = null; //Clears the value from the array, so it can be collected
+		head = index(1); //Moves the start of the queue to the next value
 		--length; //Decrementing the length
 		return result; //Returning the saved result
 	}
 
 	public boolean remove(String value) {
-		if (head == null) { //If the queue is empty
-			return false; //Returning false, as the queue doesn't contain any values
-		} else if (head.value == value) { //If the first Node contains the value
-			head = head.next; //Shifting the queue to the next Node;
-			--length; //Decrementing the length
-			return true; //Returning true, as the value was found in the queue
-		} else {
-			SaarujanNode n = head; //A temporary Node is initialized with the queue's head
-			while (n.next != null) { //Iterating through the queue
-				if (n.next.value == value) { //If the next Node contains the given value
-					n.next = n.next.next; //The Node before the given value is pointed towards the Node after the given value
-					--length; //Decrementing the length
-					return true; //Returning true, as the operation succeeded
+		for (int i = 0; i < length; ++i) { //Iterating through the queue
+			if (Objects.equals(values[index(i)], value)) { //If the current value equals the given value
+				for (int j = i + 1; j < length; ++j) { //Moves every later value one place forward, keeping their order
+					values[index(j - 1)] = values[index(j)];
 				}
-				n = n.next; //Iterating to the next Node in the queue
+
+				values[index(length - 1)] = null; //Clears the last place, so its value can be collected
+				--length; //Decrementing the length
+				return true; //Returning true, as the value was found in the queue
 			}
-	
-			return false; //Returning false, as the given value wasn't found in the queue
 		}
+
+		return false; //Returning false, as the given value wasn't found in the queue
 	}
 
-	public byte length() {
-		return length;
+	public int length() {
+		return length; //Returns the length
 	}
 
 	public String toString() {
-		if (head == null) //If the queue is empty
+		if (length == 0) //If the queue is empty
 			return "[  ]"; //A pair of empty brackets is returned
-				
-		String result = "[ "; //Result is created to store the output, starting with a open bracket
-		SaarujanNode n = head; //A temporary Node is initialized with the queue's head
-		while (n.next != null) { //Looping until the 2nd last value in the queue
-			result += n.value + "\n  "; //Adding the Node's value, and some formatting
-			n = n.next; //Iterating to the next Node in the queue
+
+		StringBuilder result = new StringBuilder("[ "); //Result is created to store the output, starting with a open bracket
+		for (int i = 0; i < length - 1; ++i) { //Looping until the 2nd last value in the queue
+			result.append(values[index(i)]).append("\n  "); //Adding the value, and some formatting
 		}
 
-		return result + n.value + " ]\n"; //Returning the result, the last value in the queue, along with a closing bracket
+		//Returning the result, the last value in the queue, along with a closing bracket
+		return result.append(values[index(length - 1)]).append(" ]\n").toString();
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+/** Selector Class
+* Description: A non-blocking front end for the server, which holds many clients on a single event loop thread;
+  the event loop only accepts connections, reads frames, and writes queued output, while every action of a client
+  runs on a pool of worker threads, so a slow client's disk or network never stalls the other clients
+* constructor(Server, ServerSocketChannel, Int) - Stores the server and the listening channel, and starts the given amount of workers
+* execute(Runnable) - Runs the given task on the worker pool
+* requestWrite(ChannelSession) - Lets the event loop know that the given session has output to write, or should be closed
+* accept() - Accepts every pending connection, and registers a session for each; a connection that cannot be registered is
+			 closed and logged. If no connection can be accepted, accepting pauses for ACCEPT_PAUSE milliseconds, so the
+			 event loop doesn't spin while the server has too many files open
+* fail(ChannelSession) - Helper method that closes the connection of the given session, after it failed on the event loop
+* run() - Runs the event loop until it is stopped, then closes the Selector and every connection, and stops the workers; a
+		  session that fails only closes its own connection
+* close() - Stops the event loop
+**/
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SaarujanSelector implements Runnable {
+	private final static long ACCEPT_PAUSE = 100; //How long accepting pauses after a connection couldn't be accepted, in milliseconds
+	private SaarujanServer server; //The server that the clients connect to
+	private ServerSocketChannel listener; //The channel that accepts new connections
+	private Selector events; //The Selector that waits for every channel to be ready
+	private SelectionKey accepting; //The key of the listening channel
+	private long resumeAt; //When accepting resumes, in milliseconds; 0 if it isn't paused. Only the event loop thread uses it
+	private ExecutorService workers; //The pool of threads that handle the actions of clients
+	private Queue<SaarujanChannelSession> writers; //The sessions that have new output, or should be closed
+	private ByteBuffer buffer; //The buffer that every channel is read into; only the event loop thread uses it
+	private volatile boolean running; //Whether the event loop should keep running
+
+	public SaarujanSelector(SaarujanServer server, ServerSocketChannel listener, int workerCount) throws IOException {
+		this.server = server; //Stores the server
+		this.listener = listener; //Stores the listening channel
+		events = Selector.open(); //Opens a new Selector
+		workers = Executors.newFixedThreadPool(workerCount); //Starts the worker pool
+		writers = new ConcurrentLinkedQueue<SaarujanChannelSession>(); //Initializes the queue of sessions with new output
+		buffer = ByteBuffer.allocateDirect(65536); //Allocates the read buffer outside of the heap, as channels read into it directly
+		running = true; //The event loop runs until it is stopped
+	}
+
+	public void execute(Runnable task) {
+		workers.execute(task); //Runs the task on the worker pool
+	}
+
+	public void requestWrite(SaarujanChannelSession session) {
+		writers.add(session); //Queues the session; interest can only be changed safely on the event loop thread
+		events.wakeup(); //Wakes the event loop, if it is waiting
+	}
+
+	private void accept() {
+		while (true) { //Loops until there are no more pending connections
+			SocketChannel channel; //Stores the accepted channel
+			try {
+				channel = listener.accept(); //Accepts the next connection
+			} catch (IOException e) { //If no connection can be accepted now, such as when the server has too many files open
+				server.log("Error while accepting a connection!", true); //An error message is logged
+				accepting.interestOps(0); //Stops waiting for connections, as the listening channel stays ready until one is accepted
+				resumeAt = System.currentTimeMillis() + ACCEPT_PAUSE; //Accepting resumes after the pause
+				return; //Exits the method
+			}
+
+			if (channel == null) //If there are no more pending connections
+				return; //Exits the method
+
+			try {
+				SaarujanChannelSession session = new SaarujanChannelSession(server, this, channel); //Creates a session for the client
+				session.register(events); //Registers the channel for reading
+				server.beginSession(session); //Stores the session, so it can be closed when the server stops
+			} catch (IOException e) { //If the connection cannot be registered, only it is closed
+				server.log("Error while registering a connection!", true); //An error message is logged
+				try {
+					channel.close(); //Closes the connection
+				} catch (IOException f) {} //The connection is already unusable
+			}
+		}
+	}
+
+	public void run() {
+		try {
+			listener.configureBlocking(false); //The event loop must never wait on the listening channel
+			accepting = listener.register(events, SelectionKey.OP_ACCEPT); //Waits for new connections
+			while (running) { //Loops until the event loop is stopped by the exit thread
+				if (resumeAt == 0) //Waits until a channel is ready, or the event loop is woken up
+					events.select();
+				else //If accepting is paused, it also stops waiting once the pause is over
+					events.select(Math.max(resumeAt - System.currentTimeMillis(), 1));
+				if (resumeAt != 0 && System.currentTimeMillis() >= resumeAt) { //If the pause is over, new connections are accepted again
+					accepting.interestOps(SelectionKey.OP_ACCEPT);
+					resumeAt = 0;
+				}
+				SaarujanChannelSession session; //Stores the current session
+				while ((session = writers.poll()) != null) { //Loops through the sessions with new output
+					try {
+						session.updateInterest(); //Waits for the session's channel to be writable
+					} catch (RuntimeException | Error e) { //If the session fails, only its connection is closed
+						fail(session);
+					}
+				}
+
+				Iterator<SelectionKey> keys = events.selectedKeys().iterator(); //Stores the keys of the ready channels
+				while (keys.hasNext()) { //Loops through the ready channels
+					SelectionKey key = keys.next(); //Stores the current key
+					keys.remove(); //Removes the key, as it is being handled
+					if (!key.isValid()) //If the channel was closed
+						continue; //Moves onto the next channel
+
+					if (key.isAcceptable()) { //If there are new connections
+						accept(); //Accepts the connections
+						continue; //Moves onto the next channel
+					}
+
+					session = (SaarujanChannelSession) key.attachment(); //Stores the session of the channel
+					try {
+						if (key.isReadable()) //If the client sent data
+							session.read(buffer); //Reads and parses the data
+						if (key.isValid() && key.isWritable()) //If queued output can be written
+							session.flush(); //Writes the queued output
+					} catch (RuntimeException | Error e) { //If the session fails, only its connection is closed, and the event loop keeps running
+						fail(session);
+					}
+				}
+			}
+		} catch (IOException e) { //If the Selector fails
+			server.log("Error while selecting connections!", true); //An error message is logged
+		} finally {
+			try {
+				for (SelectionKey key : events.keys()) { //Loops through every registered channel
+					key.channel().close(); //Closes the channel
+				}
+
+				events.close(); //Closes the Selector
+			} catch (IOException e) { //If any exception occurs
+				server.log("Error while closing selector!", true); //An error message is logged
+			}
+			workers.shutdownNow(); //Stops the workers
+		}
+	}
+
+	private void fail(SaarujanChannelSession session) {
+		server.log("Session failed on the selector, closing its connection!", true); //An error message is logged
+		try {
+			session.abort(); //Closes the connection, and ends the session
+		} catch (RuntimeException e) { //If the session cannot even be closed, the event loop still keeps running
+			server.log("Error while closing connection!", true);
+		}
+	}
+
+	public void close() {
+		running = false; //The event loop stops after its current iteration
+		events.wakeup(); //Wakes the event loop, if it is waiting
+	}
+}
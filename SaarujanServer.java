@@ -1,60 +1,185 @@
 /** Server Class
 * Description: The server class that handles connections of clients and stores the file system. 
-  Can only handle one connection at a time, since asynchronous code is difficult to do in a short period of time
+  Every connection is handed to its own Session, which runs on a virtual thread, so many clients can be served at once
 * constructor(String, String) - If a server folder already exists with the given name, then the server is initialized with that folder;
-								if not, new files and default values are used
+								if not, new files and default values are used. Changes are saved with the group durability
+* constructor(String, String, Int) - Initializes the server the same way, saving changes with the given durability
 * log(String, Boolean) - Logs the given message onto the server's log file
 * generateKey(Int) - Helper method that generates a 16-digit encryption key, as a string, using the given seed
 * encrypt(String) - Encrypts the given string using the server’s key
 * decrypt(String) - Decrypts the given string using the server’s key
 * strToInt(String) - Helper method that converts a string to an integer
-* navigateFolder(Folder, String, Int) - Recursive method that returns the parent folder of the given path
+* parentOf(String) - Helper method that returns the path of the folder that holds the given path, or null for the root directory
+* parentFolder(String) - Helper recursive method that returns the parent folder of the given path, found through the path index;
+						 missing folders along the path are created, and null is returned if a file is along the path
+* indexPaths(Item) - Helper recursive method that adds the given item, and every item inside it, to the path and name indexes
+* unindexPaths(Item) - Helper recursive method that removes the given item, and every item inside it, from the path and name indexes
+* isDeleted(HashMap, String, Int) - Helper method that returns whether the given path, or any folder along it, was deleted after
+									 the given line of the backup
+* loadFolder(Folder) - Helper method that adds a loaded folder to its parent, or fills in the folder if it was already created
+* lookup(String) - Helper method that returns the item at the given path from the path index, without walking or changing the tree
 * loadAccounts() - Helper methods that loads and decrypts the accounts from a user file, into the ArrayList
-* loadFS() - Helper method that loads all folders and files from a backup file, into the root folder on the server
+* replayAccount(String) - Helper method that applies an account record ('A|' creates, 'P|' changes permission) from the backup
+* saveAccounts(List) - Helper method that saves the given accounts to the user file
+* saveMetadata() - Helper method that saves the server's metadata, including the current backup number; the file is replaced at once,
+				   so the backup number always points to a complete backup
+* loadFS() - Helper method that loads all folders and files into the root folder on the server; the binary image is read if it
+			 is newer than the manifest, otherwise only the ranges of lines in the manifest are read, or every line if there is
+			 neither. The lines after them are read as well. The ranges are parsed in parallel, the folder backup of older servers is read once, then the folders created, items deleted, and accounts
+			 changed are replayed, and the files are merged into the folders
 * getBackupPath() - Returns the current backup path of the server
 * getNextBackupPath() - Returns the next backup path of the server
-* getFoldersPath() - Returns the folder backup path of the server
-* getMaxSize() - Returns the maximum size of files that can be stored in memory
-* backup() - Saves all of the items in the root folder to backup files
-* send(String) - Sends a message to the client
-* recv() - Receives and returns a message from the client
-* handleConnection() - Handles the login / logout to the server, and every action that the client can take
-* loginAccount() - Handles the login of a client to the server
-* createAccount() - Handles the creation of an account by the client
-* permitAccount(String) - Handles the modification of an account’s permission by the owner
-* sendRecentLogs() - Handles the sending of recent logs
-* createFolder(String) - Handles the creation of a folder by the client
-* uploadFile(String) - Handles the upload of a file by the client
-* downloadFile(String) - Handles the download of a file by the client
-* deleteItem(String) - Handles the deletion of a folder or file by the client
-* sendNavigation() - Handles the navigation of the file system by the client
-* start() - Starts the server
+* getFoldersPath() - Returns the folder backup path of the server; only older servers have one, until their first backup
+* getBlobPath() - Returns the path of the blob store that pairs with the current backup
+* getNextBlobPath() - Returns the path of the blob store that pairs with the next backup
+* getIndex() - Returns the current backup, which finds lines through its index
+* getNextIndex() - Returns the backup that is being written by a backup
+* getBlobs() - Returns the blob store that pairs with the current backup
+* getNextBlobs() - Returns the blob store that is being filled by a backup
+* getMaxSize() - Returns the maximum size of files that can be stored in memory, in kilobytes (KB)
+* getName() - Returns the name of the server
+* getOwner() - Returns the username of the server's owner
+* backup() - Saves all of the items in the root folder and every account to new backup files, leaving out deleted items; this
+			 compacts the backup. The file system is copied at once, and the copy is saved while clients keep using the server,
+			 each folder followed by its children; the changes made meanwhile are then copied after it. Until the metadata
+			 points to the new backup, a restart replays the previous one
+* copyChanges(Int, List, List) - Helper method that copies the lines of the current backup, from the given line onwards, into
+								  the next backup; added files and folders are copied into the given lists, and the data of files into
+								  the next blob store. Returns the line to continue from
+* checkpoint() - Saves every account, and a manifest of the ranges of lines that still hold the file system, without rewriting
+				 any item; only the folders that changed since the last checkpoint are visited. Falls back to backup() if an
+				 item has no line
+* saveImage() - Saves every account, and a binary image of the file system that covers every line of the current backup; falls
+				back to backup() if an item has no line
+* getImagePath() - Returns the path of the binary image of the file system
+* getManifestPath() - Returns the manifest path of the server
+* saveManifest(Boolean, Int, List) - Helper method that saves the manifest of the given backup number, with the last line it covers
+									 and its ranges of lines, sorted and joined; the file is replaced at once
+* loadManifest() - Helper method that returns the last covered line, followed by the ranges of the manifest, or null if the manifest
+				   doesn't belong to the current backup
+* appendRecord(String) - Helper method that adds the given record to the current backup, so it is replayed after a restart;
+						 returns its line number, or -1 if it couldn't be added
+* commitRecord(Int) - Helper method that waits until the given line of the current backup is saved, as the durability requires
+* changed() - Helper method that counts a change since the last checkpoint, and requests one once there are enough changes
+* needsCompaction() - Helper method that returns whether enough of the current backup is garbage to rewrite it
+* compact() - Helper method that requests a backup, once enough of the current backup is garbage
+* requestBackup(Boolean) - Helper method that wakes the scheduler, so it starts a checkpoint, or a backup if the given value is true
+* schedule() - Runs a backup or checkpoint whenever one is requested, or a checkpoint once the interval passes with unsaved changes;
+			   runs on its own thread, so no client waits for a backup
+* findItem(String) - Returns the item at the given path, or null if it doesn't exist; the path index is read without a lock
+* listFolder(String) - Returns the formatted children of the folder at the given path, or null if it isn't a folder
+* search(String, String) - Returns the paths of every item inside the folder at the given path, at any depth, whose name matches
+						   the given pattern, sorted by name; null if it isn't a folder
+* addItem(Item, String) - Helper method that adds the given record to the current backup, and the given item to its parent folder;
+						   returns the line number of the record. A file's record is only written once its data is forced
+* resizeAncestors(String, Long) - Helper method that adds the given amount of KB to the size of every folder above the given path
+* checkFolders() - Checks the stored size and counts of every folder against its children, and that the name index holds every
+				   item, and returns whether they all match; the result is printed, and logged if anything doesn't match
+* countNames(Folder) - Helper recursive method that returns the amount of items with a valid name inside the given folder
+* markChanged(String) - Helper method that starts a new generation, and marks every folder above the given path with it;
+						 returns the new generation
+* removeItem(String) - Removes every item at the given path from its parent folder, and adds the deletion to the current backup
+* countGarbage(Item) - Helper method that counts the lines and data of a deleted item as garbage, and stops keeping its data in
+						 memory; shared data only once the last file that points to it is deleted
+* storeFolder(Folder) - Adds the given folder to the current backup and its parent folder
+* cacheFile(File) - Keeps the data of the given file in memory as the most recently used, reading it from the blob store if it
+					isn't kept already; the least recently used data is cleared once the cache exceeds its budget in bytes, and
+					new data is only kept if it is used more often than the data it would clear
+* storeFile(File, Long, Session) - Receives the given amount of bytes from the session in chunks, saves them to the blob store
+								   while hashing them, and adds the file to the current backup and its parent folder; if the
+								   content is already stored, the file shares its blob and the received bytes are garbage
+* linkFile(File, String, Long) - Adds the given file to the current backup and its parent folder, sharing the stored blob with the
+								 given hash and length; returns false if no such blob is stored, so the data has to be sent
+* sendFile(File, Session) - Sends the size of the given file to the session, followed by its data in chunks; cached data is sent
+							 straight from its buffer, and stored data is mapped while the backup files are locked, then sent
+							 after the lock is released. A file that was deleted since it was found is sent as empty
+* cacheOffHeap() - Keeps the data of cached files in direct buffers, outside of the heap, so the garbage collector never copies
+				   or scans it
+* allocate(Int) - Returns a buffer of the given size for file data; direct if cached data is kept outside of the heap
+* checkAccount(String, String) - Returns the login status of the given username and password
+* addAccount(String, String) - Creates a new account, saves it to the current backup, and returns its status
+* listAccounts() - Returns every account and its permission, as formatted Strings
+* setPermission(String, String) - Modifies the permission of the given account, saves the change to the current backup, and
+								   returns the result
+* recentLogs() - Returns the recent log messages, and removes older ones from the log file
+* beginSession(Session) - Stores the given session, so it can be closed when the server stops
+* endSession(Session) - Forgets the given session, once its client has disconnected
+* startTrace() - Records the file requests of every client to the trace file, so the benchmark can replay them
+* trace(String, String, Long) - Records the given request, with its encrypted path and the bytes of its file, if a trace is recorded
+* stopScheduler() - Helper method that stops the scheduler, and waits for the backup it is running
+* start(Boolean) - Starts the server; clients are either each served on a virtual thread, or all held on a non-blocking Selector
+* main(String[]) - Starts the server; "selector" runs it on a Selector, "record", "group", or "async" sets the durability, and
+				   "trace" records the requests of clients, "offheap" keeps cached data outside of the heap, and "check" checks the
+				   sizes and counts of every folder after loading and when the server stops
 **/
 import java.io.File;
 import java.io.FileWriter;
 import java.io.FileReader;
 import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.BufferedWriter;
 import java.util.ArrayList;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 public class SaarujanServer {
 	private String name, key; //Variables to store the name of the server, and the encryption key
 	private ArrayList<String[]> accounts; //ArrayList to store account information while the server is running
-	private final int MAX_SIZE = 50000; //A constant to hold the maximum file size
+	private final int MAX_SIZE = 4000; //A constant to hold the maximum size, in KB, of a file that is kept in memory
+	private final long CACHE_BYTES = 64 << 20; //The most bytes of file data that are kept in memory at once
+	private final long COMPACT_MIN = 1 << 20; //The least amount of garbage, in bytes, that starts a compaction
+	private final int BACKUP_CHANGES = 1000; //The amount of changes that starts a backup, before the interval passes
+	private final long BACKUP_INTERVAL = 60000; //The longest time, in milliseconds, that changes wait for a backup
+	private final int CATCH_UP_ROUNDS = 3; //The amount of times a backup copies new changes before it stops clients to copy the rest
 	private SaarujanFolder root; //The root directory (folder) of the server's file system
-	private SaarujanQueue inMemory; //A queue that contains the file-paths of files that should remain in memory
+	private SaarujanPathIndex paths; //The item at each full path; changed under the tree lock, read without it
+	private SaarujanNameIndex names; //Every item, sorted by name, so clients can search for them; guarded by the tree lock
+	private SaarujanCache cache; //Keeps the data of recently used files in memory, within a budget of bytes
 	private ServerSocket main; //The main socket that users will connect to
-	private Socket connection; //The sub-socket that enables a two-way connection between server and client
-	private InputStream sockIn; //The input stream from the client
-	private OutputStream sockOut; //The output stream to the client
-	private boolean backupNumber; //The current backup number (swaps between 1 and 0 to maximize effiency of backing up files)
+	private Set<SaarujanSession> sessions; //The sessions of every client that is currently connected
+	private volatile SaarujanSelector selector; //The non-blocking front end, if the server is running on a Selector
+	private ReentrantReadWriteLock treeLock, storageLock; //Locks that guard the file system, and the backup files
+	private volatile SaarujanBlobStore blobs, nextBlobs; //The blob stores of the current backup, and of the backup in progress
+	private volatile SaarujanBackupIndex index, nextIndex; //The indexed current backup, and the backup in progress
+	private volatile boolean backupNumber; //The current backup number (swaps between 1 and 0 to maximize effiency of backing up files)
+	private AtomicLong deadLines, deadBytes; //The amount of lines in the current backup, and bytes in its blob store, that are garbage
+	private AtomicLong changes; //The amount of changes since the file system was last copied by a backup
+	private Thread scheduler; //The thread that runs every backup
+	private final Object schedule = new Object(); //The scheduler waits on this until a backup is requested, or the interval passes
+	private volatile boolean scheduling, backupRequested; //Whether the scheduler is running, and whether a backup was requested
+	private volatile int snapshotLine; //The last line of the current backup that the backup in progress copied; -1 if none is
+	private ConcurrentHashMap<Integer, SaarujanItem> added; //The items added since the backup in progress copied the file system
+	private HashMap<String, SaarujanBlob> contents; //The blob of each hash, so each body is stored once; guarded by the tree lock
+	private long generation; //The generation of the last change to the file system; only changed while the tree lock is held
+	private volatile boolean compactRequested; //Whether the requested backup should compact the backup, rather than checkpoint it
+	private int durability; //Whether each change is forced to the disk by itself, with others, or left to the operating system
+	private BufferedWriter trace; //Records the file requests of clients, so they can be replayed; null if none are recorded
+	private volatile boolean offHeap; //Whether cached data is kept in direct buffers, outside of the heap
+	private boolean checking; //Whether the sizes and counts of the folders are checked when the server stops
 	
-	public void log(String message, boolean isWarning) {
+	public synchronized void log(String message, boolean isWarning) {
 		try {
 			FileWriter logFile = new FileWriter(name + "/logs.txt", true); //Opens the log file, and writes a formatted message
 			logFile.write(encrypt(SaarujanDate.currentDate() + " " + SaarujanDate.currentTime() + "\t" +
@@ -75,55 +200,105 @@ public class SaarujanServer {
 		return result; //Returning the result
 	}
 	
-	private static SaarujanFolder navigateFolder(SaarujanFolder folder, String[] path, int index) {
-        if (index == path.length - 1) { //If the parent folder of the item that is specified in the path is reached
-            return folder; //The parent folder is returned
-        }
-        
-        int i = folder.indexOf(path[index]); //Stores the index of the current part of the path in the parent folder
-        if (i == -1) { //If the current part of the path doesn't exist in the folder
-			//A new folder under that path and name is created; some values are omitted now as they're unknown; they will be set later
-            SaarujanFolder a = new SaarujanFolder(folder.getPath() + path[index], null, null); 
-            folder.add(a); //The folder is added to the parent folder
-            return navigateFolder(a, path, ++index); //Recursing through the new folder, and moving onto the next part of the path
-        } else { //If it exists already, it recurses through the found folder, and moves onto the next part of the path
-            return navigateFolder((SaarujanFolder) folder.get(i), path, ++index);
-        }
-    }
+	private String parentOf(String path) {
+		int slash = path.lastIndexOf('/'); //Stores the position of the seperator before the name of the item
+		if (path.length() <= root.getPath().length() || slash < 1) //If the path is the root directory, it has no parent
+			return null; //Null is returned
+
+		//Items in the root directory keep the root's seperator; every other folder's path ends before its seperator
+		return path.substring(0, path.charAt(slash - 1) == '/' ? slash + 1 : slash);
+	}
+
+	private SaarujanFolder parentFolder(String path) {
+		String parentPath = parentOf(path); //Stores the path of the parent folder
+		if (parentPath == null) //If the path has no parent folder
+			return null; //Null is returned
+
+		SaarujanItem parent = paths.get(parentPath); //Looks up the parent folder, whatever its depth
+		if (parent == null) { //If the parent folder doesn't exist, it is created inside its own parent folder
+			SaarujanFolder grandparent = parentFolder(parentPath); //Stores the folder that holds the parent folder
+			if (grandparent == null) //If it couldn't be found or created, neither can the parent folder
+				return null; //Null is returned
+
+			//Some values are omitted now as they're unknown; they will be set later
+			parent = new SaarujanFolder(parentPath, null, null);
+			grandparent.add(parent); //The folder is added to its parent folder
+			paths.put(parent); //The folder can be found by its path, and by its name
+			names.add(parent);
+		}
+
+		return parent instanceof SaarujanFolder ? (SaarujanFolder) parent : null; //Returns the folder, or null if the parent is a file
+	}
+
+	private void indexPaths(SaarujanItem item) {
+		//Adds the item, unless an item with the same path was added first; lookups find the first of them, as the folder lists it first
+		paths.add(item);
+		names.add(item); //Every item can be found by its name, even if another item has the same path
+		if (item instanceof SaarujanFolder) { //If the item is a folder, its children are added as well
+			for (SaarujanItem child : (SaarujanFolder) item) {
+				indexPaths(child);
+			}
+		}
+	}
+
+	private void unindexPaths(SaarujanItem item) {
+		paths.remove(item); //Removes the path, only if it points to this item
+		names.remove(item); //Removes the item from the name index
+		if (item instanceof SaarujanFolder) { //If the item is a folder, its children are removed as well
+			for (SaarujanItem child : (SaarujanFolder) item) {
+				unindexPaths(child);
+			}
+		}
+	}
 
 	public String encrypt(String value) { 
 		if (value == null || value.length() == 0) //If the value is null, or is empty, the method returns an empty string
 			return "";
 
-		String encrypted = ""; //Variable that holds the end result, encrypted
-		for (int i = 0; i < value.length(); ++i) { //Loops through the entire given String
-            encrypted += (char) (value.charAt(i) - (key.charAt(i % key.length()) - '0')); //Encrypts the current char with the key 
+		char[] encrypted = new char[value.length()]; //Array that holds the end result, encrypted; filled in place, without copying
+		for (int i = 0; i < encrypted.length; ++i) { //Loops through the entire given String
+            encrypted[i] = (char) (value.charAt(i) - (key.charAt(i % key.length()) - '0')); //Encrypts the current char with the key 
 		}
 
-        return encrypted; //Returns the encrypted string
+        return new String(encrypted); //Returns the encrypted string
 	}
 
 	public String decrypt(String value) {
 		if (value == null || value.length() == 0) //If the value is null, or is empty, the method returns an empty string
 			return "";
 
-		String decrypted = ""; //Variable that holds the end result, decrypted
-		for (int i = 0; i < value.length(); ++i) { //Loops through the entire given String
-			decrypted += (char) (value.charAt(i) + (key.charAt(i % key.length()) - '0')); //Decrypts the current char with the key
+		char[] decrypted = new char[value.length()]; //Array that holds the end result, decrypted; filled in place, without copying
+		for (int i = 0; i < decrypted.length; ++i) { //Loops through the entire given String
+			decrypted[i] = (char) (value.charAt(i) + (key.charAt(i % key.length()) - '0')); //Decrypts the current char with the key
 		}
 
-        return decrypted; //Returns the decrypted string
+        return new String(decrypted); //Returns the decrypted string
 	}
 	
     public SaarujanServer(String name, String ownerUsername) {
+        this(name, ownerUsername, SaarujanBackupIndex.SYNC_GROUP); //Changes from many clients share each force to the disk
+    }
+
+    public SaarujanServer(String name, String ownerUsername, int durability) {
+        this.durability = durability; //Stores the durability
         this.name = name.replaceFirst(name.charAt(0) + "", (name.charAt(0) + "").toUpperCase()); //Stores the given name 
-        inMemory = new SaarujanQueue(); //Initalizes a queue for recently accessed files
+        cache = new SaarujanCache(CACHE_BYTES, MAX_SIZE * 1000L, true); //Initalizes the cache for recently and often accessed files
+        sessions = ConcurrentHashMap.newKeySet(); //Initializes the set of connected sessions
+        treeLock = new ReentrantReadWriteLock(); //Initializes the lock of the file system
+        storageLock = new ReentrantReadWriteLock(); //Initializes the lock of the backup files
         accounts = new ArrayList<String[]>(); //Initializes accounts
+        deadLines = new AtomicLong(); //Nothing is garbage until the backup is loaded
+        deadBytes = new AtomicLong();
+        changes = new AtomicLong(); //Nothing has changed since the last backup
+        snapshotLine = -1; //No backup is in progress
+        added = new ConcurrentHashMap<Integer, SaarujanItem>(); //Initializes the items added during a backup
+        contents = new HashMap<String, SaarujanBlob>(); //Initializes the blobs by hash
+        paths = new SaarujanPathIndex(); //Initializes the path index
+        names = new SaarujanNameIndex(); //Initializes the name index
         try {
 			//Creates an instance of File, with the server name
             File temp = new File(this.name);
             if (temp.isDirectory()) { //If a directory under such name exists
-				backupNumber = new File(name + "/backup_1.txt").exists(); //If 'backup_1' exists, then the backup number is 1 (true)
                 BufferedReader input = new BufferedReader(new FileReader(name + "/metadata.txt")); //Opens the server's metadata file
                 key = ""; //Empties the key
                 String encrypted = input.readLine(); //Reads the encrypted key
@@ -135,28 +310,33 @@ public class SaarujanServer {
 
 				//Initializes the root folder with the remaining data in the metadata file
 				root = new SaarujanFolder(name + "://", decrypt(input.readLine()), new SaarujanDate(input.readLine()));
+				paths.put(root); //The root directory can be found by its path
+				String number = input.readLine(); //Reads the current backup number; older servers didn't save it
+				//If 'backup_1' exists, then the backup number is 1 (true); only used by older servers, which never kept both backups
+				backupNumber = number == null ? new File(name + "/backup_1.txt").exists() : number.equals("1");
                 input.close(); //Closes the input stream
-                loadFS(); //Loads the file system from backup files
-                loadAccounts(); //Loads the accounts from the users file
+				//Deletes the next backup, in case the server stopped part way through a backup; the current backup is complete
+				new File(getNextBackupPath()).delete();
+				new File(getNextBackupPath().replace(".txt", ".idx")).delete();
+				new File(getNextBlobPath()).delete();
+                blobs = new SaarujanBlobStore(getBlobPath(), false); //Opens the blob store of the current backup
+                index = new SaarujanBackupIndex(getBackupPath(), false, durability); //Opens the current backup; its index is rebuilt if needed
+                loadAccounts(); //Loads the accounts from the users file, so changes since the last backup can be replayed onto them
+                loadFS(); //Loads the file system from backup files, and replays the changes since the last backup
+                compact(); //Compacts the backup, if too many items were deleted before the server stopped
             } else {
         		root = new SaarujanFolder(name + "://", ownerUsername, SaarujanDate.currentDate()); //Initializes the root folder
+				paths.put(root); //The root directory can be found by its path
 				backupNumber = false; //Sets the backup number to 0 (false); switches between 0 and 1
                 temp.mkdir(); //Creates a new directory for this server using the given name as the folder name
-                temp = new File(name + "/metadata.txt"); //Creates an instance of a File
-				temp.createNewFile(); //Creates a file for the server's metadata
-                FileWriter output = new FileWriter(temp); //Opens the metadata file
                 key = generateKey(new Random().nextInt()); //Generates a new key using a random number as a seed
-                output.write(encrypt("TheEncryptionKey") + "\n" + //Writes the server's metadata into the file
-							 encrypt(ownerUsername) + "\n" + root.getDate().toString());
-                output.close(); //Closes the output stream
+                saveMetadata(); //Creates a file for the server's metadata
                 temp = new File(name + "/logs.txt"); //Creates an instance of a File
                 temp.createNewFile(); //Creates a file for server logging
-                temp = new File(getBackupPath()); //Creates an instance of a File
-                temp.createNewFile(); //Creates a file for file backups
-                temp = new File(getFoldersPath()); //Creates an instance of a File
-                temp.createNewFile(); //Creates a file for folder backups
+                index = new SaarujanBackupIndex(getBackupPath(), true, durability); //Creates a file for file backups, and its index
                 temp = new File(name + "/users.txt"); //Creates an instance of a File
                 temp.createNewFile(); //Creates a file for account information
+                blobs = new SaarujanBlobStore(getBlobPath(), true); //Creates the blob store for the data of files
             }
         } catch (Exception e) { //If any exception occurs
             System.out.println("Server cannot read or write files!"); //Error message is outputted
@@ -183,28 +363,194 @@ public class SaarujanServer {
         }
     }
 	
+	private static boolean isDeleted(HashMap<String, Integer> deleted, String path, int line) {
+		if (deleted.isEmpty()) //If nothing was deleted since the last compaction
+			return false; //The path wasn't deleted
+
+		int end = path.indexOf("://") + 3; //Stores the end of the current folder along the path, starting from the root directory
+		while (true) { //Loops through every folder along the path, then the path itself
+			end = path.indexOf('/', end); //Finds the end of the next folder
+			Integer at = deleted.get(end == -1 ? path : path.substring(0, end)); //Stores the line that deleted it, if any
+			if (at != null && at > line) //If it was deleted after the given line
+				return true; //The path was deleted
+			if (end == -1) //If the path itself was checked
+				return false; //The path wasn't deleted
+
+			++end; //Moves past the seperator
+		}
+	}
+
+	private void loadFolder(SaarujanFolder folder) {
+		SaarujanFolder parent = parentFolder(folder.getPath()); //Finds the parent directory, creating it if it doesn't exist yet
+		if (parent == null) //If the path doesn't belong to this server, or a file is along it
+			return; //The folder is left out
+
+		SaarujanItem existing = paths.get(folder.getPath()); //Stores the folder, if it was already created
+		if (existing instanceof SaarujanFolder) { //If the folder already exists in the folder
+			parent = (SaarujanFolder) existing; //Stores the existing folder in parent
+			parent.setUploader(folder.getUploader()); //Sets the uploader; if it already existed, this info wasn't initialized
+			parent.setDate(folder.getDate()); //Sets the upload date; if the folder already existed, this info wasn't initialized
+			parent.setBackupLine(folder.getBackupLine()); //Sets the line of its record, if it was loaded from the backup
+		} else { //If the folder doesn't exist in the folder
+			parent.add(folder); //Adds the new folder to the parent directory
+			indexPaths(folder); //The folder can be found by its path
+		}
+	}
+
+	private void replayAccount(String line) {
+		String[] tokens = line.substring(2).split("\\|", -1); //Splits the record with the delimeter character, after its mark
+		for (byte i = 0; i < tokens.length; ++i) { //Loops through the tokens
+			tokens[i] = decrypt(tokens[i]); //Decrypts each individual token
+		}
+
+		for (int i = 0; i < accounts.size(); ++i) { //Loops through the accounts
+			if (accounts.get(i)[0].equals(tokens[0])) { //If the account already exists
+				if (line.startsWith("P|") && tokens.length == 2) //If the record changed the permission of the account
+					accounts.get(i)[2] = tokens[1]; //Sets the permission
+				return; //Exits the method; an account that was saved by a later backup isn't added twice
+			}
+		}
+
+		if (line.startsWith("A|") && tokens.length == 3) //If the record created the account
+			accounts.add(tokens); //Adds the account information to the arraylist
+	}
+
+	private void saveAccounts(List<String[]> saved) throws IOException {
+		File temp = new File(name + "/users.tmp"); //The accounts are saved beside the user file, so it is never left part way written
+		FileWriter output = new FileWriter(temp); //Opening the new accounts file
+		for (int i = 0; i < saved.size(); ++i) { //Looping through all of the accounts; they're a copy, so clients can modify the accounts
+			String[] account = saved.get(i); //Storing the current account
+			output.write(encrypt(account[0]) + "|" + encrypt(account[1]) + "|" + encrypt(account[2]) + "\n"); //Writing the formatted account
+		}
+		output.close(); //Closing the accounts file
+		//Replaces the user file at once; the previous backup still replays onto it, as replaying an account twice changes nothing
+		Files.move(temp.toPath(), new File(name + "/users.txt").toPath(), StandardCopyOption.REPLACE_EXISTING,
+				   StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void saveMetadata() throws IOException {
+		File temp = new File(name + "/metadata.tmp"); //The metadata is saved beside the metadata file, then replaces it at once
+		FileWriter meta = new FileWriter(temp); //Opening the new metadata file, and writing the encrypted info
+		meta.write(String.format("%s\n%s\n%s\n%d", encrypt("TheEncryptionKey"), encrypt(root.getUploader()), root.getDate().toString(),
+								 backupNumber ? 1 : 0));
+		meta.close(); //Closing the metadata file
+		Files.move(temp.toPath(), new File(name + "/metadata.txt").toPath(), StandardCopyOption.REPLACE_EXISTING,
+				   StandardCopyOption.ATOMIC_MOVE);
+	}
+
 	private void loadFS() {
-        SaarujanFolder folder = new SaarujanFolder(); //Stores the current folder
-		SaarujanFolder.resetLine(); //Resets the current line to 1
-        while (folder.load(this)) { //While a new folder can be loaded into 'folder'
-            SaarujanFolder parent = navigateFolder(root, folder.getPath().split("/"), 2); //Navigates to the parent directory
-            int index = parent.indexOf(folder.getName()); //Stores the index of the current folder in the parent folder
-            if (index != -1) { //If the folder already exists in the folder
-                parent = (SaarujanFolder) parent.get(index); //Stores the existing folder in parent
-                parent.setUploader(folder.getUploader()); //Sets the uploader; if it already existed, this info wasn't initialized
-                parent.setDate(folder.getDate()); //Sets the upload date; if the folder already existed, this info wasn't initialized
-            } else { //If the folder doesn't exist in the folder
-                parent.add(folder); //Adds the new folder to the parent directory
+        try {
+            //Decrypts and parses the lines of the current backup in parallel; the index splits the backup on the start of a line
+            ConcurrentSkipListMap<Integer, String> mutations = new ConcurrentSkipListMap<Integer, String>(); //Stores them in line order
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors()); //Starts a thread for each core
+            ArrayList<SaarujanFolder> imaged = new ArrayList<SaarujanFolder>(); //Stores the folders of the binary image, if any
+            ArrayList<SaarujanFile> files = new ArrayList<SaarujanFile>(); //Stores the files, in the order of their lines
+            int covered = new SaarujanCheckpoint(getImagePath()).load(backupNumber, index.count(), root.getPath(), imaged, files);
+            ArrayList<int[]> ranges = loadManifest(); //Stores the ranges of lines that hold the file system, if a checkpoint saved them
+            if (ranges != null && ranges.get(0)[0] > covered) { //If the manifest is newer than the image, its ranges are read instead
+                imaged.clear(); //Forgets the image
+                files.clear();
+                covered = ranges.remove(0)[0]; //Stores the last line the checkpoint covered
+            } else { //If the image is newer, or there is no checkpoint, only the lines after the image are read
+                ranges = new ArrayList<int[]>();
+                covered = Math.max(covered, 0); //Every line is read if there is no image either
             }
-            folder = new SaarujanFolder(); //Creates a new folder; the next folder in the backup will be loaded onto this
-        }
+            if (index.count() > covered) //The lines after the checkpoint are read as well, as they're replayed onto it
+                ranges.add(new int[] { covered + 1, index.count() });
 
-        SaarujanFile file = new SaarujanFile(); //Stores the current file
-		SaarujanFile.resetLine(); //Resets the current line to 1
-        while (file.load(this)) { //While a new file can be loaded into 'file'
-			file.setData(null); //Clears the data from memory; only recently accessed files should be stored in memory
-            navigateFolder(root, file.getPath().split("/"), 2).add(file); //Adds the file to the parent of the file
-            file = new SaarujanFile(); //Creates a new file; the next file in the backup will be loaded onto this
+            ArrayList<SaarujanLoadTask> tasks = new ArrayList<SaarujanLoadTask>(); //Stores a task for each range
+            for (int i = 0; i < ranges.size(); ++i) { //Loops through the ranges; the lines outside of them are no longer used
+                tasks.add(new SaarujanLoadTask(this, index, mutations, ranges.get(i)[0], ranges.get(i)[1]));
+            }
+            pool.submit(() -> ForkJoinTask.invokeAll(tasks)).get(); //Parses every range at once
+            for (int i = 0; i < tasks.size(); ++i) { //Joins the parsed files after the image, in the order of the lines
+                files.addAll(tasks.get(i).join());
+            }
+
+            //Stores the last line that deleted each path; items saved before that line are left out
+            HashMap<String, Integer> deleted = new HashMap<String, Integer>();
+            for (Map.Entry<Integer, String> entry : mutations.entrySet()) { //Loops through the folder records and deletions
+                if (entry.getValue().startsWith("D|")) //If the line deleted an item
+                    deleted.put(decrypt(entry.getValue().substring(2)), entry.getKey()); //Stores the line number of the deletion
+            }
+
+            //Older servers saved their folders in a folder backup, rather than in the backup; a checkpoint is never made from one
+            if (covered == 0 && new File(getFoldersPath()).exists()) {
+                BufferedReader input = new BufferedReader(new FileReader(getFoldersPath(), StandardCharsets.UTF_8), 65536); //Opens the folder backup
+                String line = input.readLine(); //Stores the current line
+                while (line != null) { //While another line exists
+                    SaarujanFolder folder = new SaarujanFolder(); //Creates a new folder; the current line will be loaded onto this
+                    //If the line is a valid folder; the folder backup was saved before every line of the current backup
+                    if (folder.load(this, line) && folder.getPath() != null && !isDeleted(deleted, folder.getPath(), 0))
+                        loadFolder(folder); //Adds the folder to its parent directory
+                    line = input.readLine(); //Reads the next line
+                }
+                input.close(); //Closes the folder backup
+            }
+
+            long live = 0, liveBytes = 0; //Stores the amount of lines that are still used, and the bytes of the blob store they use
+            for (int i = 0; i < imaged.size(); ++i) { //Adds the folders of the image first, as the image covers the lines before the rest
+                if (!isDeleted(deleted, imaged.get(i).getPath(), imaged.get(i).getBackupLine())) { //If the folder wasn't deleted later
+                    loadFolder(imaged.get(i)); //Adds the folder to its parent directory
+                    ++live; //The line is still used
+                }
+            }
+            for (Map.Entry<Integer, String> entry : mutations.entrySet()) { //Replays the folders and accounts, in order
+                SaarujanFolder folder = new SaarujanFolder(); //Creates a new folder; the current line will be loaded onto this
+                if (entry.getValue().startsWith("A|") || entry.getValue().startsWith("P|")) { //If the line changed an account
+                    replayAccount(entry.getValue()); //Applies the change to the accounts
+                    ++live; //The line is still used
+                } else if (entry.getValue().startsWith("F|") && folder.load(this, entry.getValue()) && folder.getPath() != null && 
+                    !isDeleted(deleted, folder.getPath(), entry.getKey())) { //If the line is a folder that wasn't deleted later
+                    folder.setBackupLine(entry.getKey()); //Stores the line number, so a checkpoint can point to it
+                    loadFolder(folder); //Adds the folder to its parent directory
+                    ++live; //The line is still used
+                }
+            }
+
+            //Groups the files by their parent folder, keeping the order of the lines within each group
+            LinkedHashMap<String, ArrayList<SaarujanFile>> groups = new LinkedHashMap<String, ArrayList<SaarujanFile>>();
+            for (int i = 0; i < files.size(); ++i) { //Loops through the parsed files
+                SaarujanFile file = files.get(i); //Stores the current file
+                if (isDeleted(deleted, file.getPath(), file.getBackupLine())) //If the file was deleted after it was uploaded
+                    continue; //The file is left out
+
+                ++live; //The line is still used
+                if (file.hasBlob()) { //If its data is in the blob store
+                    SaarujanBlob blob = file.getBlob(); //Stores the blob that was read with the file
+                    if (blob.getHash() != null) { //If the hash is known, files with the same content share the first blob that has it
+                        SaarujanBlob shared = contents.putIfAbsent(blob.getHash(), blob);
+                        if (shared != null && shared.getLength() == blob.getLength()) //If another file already has the content
+                            file.setBlob(shared); //The file shares its blob; the bytes of this copy are garbage
+                    }
+                    if (file.getBlob().retain() == 1) //If the file is the first to point to the blob, its data is still used
+                        liveBytes += file.getBlobLength();
+                }
+                String path = file.getPath(); //Stores the path of the current file
+                groups.computeIfAbsent(path.substring(0, path.lastIndexOf('/') + 1), k -> new ArrayList<SaarujanFile>()).add(file);
+            }
+
+            //Sorts each group in parallel, so each folder receives its children already sorted
+            pool.submit(() -> groups.values().parallelStream().forEach(SaarujanFolder::sort)).get();
+            pool.shutdown(); //Stops the threads
+            for (ArrayList<SaarujanFile> group : groups.values()) { //Loops through the groups in the order of the lines
+                SaarujanFolder parent = parentFolder(group.get(0).getPath()); //Finds the parent, creating it if it doesn't exist yet
+                if (parent == null) //If the path doesn't belong to this server, or a file is along it
+                    continue; //The files are left out
+
+                parent.addSorted(group); //Merges the sorted files into the parent at once
+                long added = 0; //Stores the size of the files
+                for (SaarujanFile file : group) { //The files can be found by their paths
+                    indexPaths(file);
+                    added += file.size();
+                }
+                resizeAncestors(parent.getPath(), added); //Adds their size to every folder above the parent
+            }
+
+            deadLines.set(index.count() - live); //Every other line is garbage; the next compaction removes it
+            deadBytes.set(blobs.size() - liveBytes); //Every other byte of the blob store is garbage
+        } catch (Exception e) { //If any exception occurs
+            log("Cannot read backup file!", true); //An error message is logged
         }
     }
 
@@ -221,152 +567,893 @@ public class SaarujanServer {
 		return name + "/folders.txt"; //Returns the folders backup path
 	}
 
+	public String getBlobPath() {
+		return name + "/blobs_" + (backupNumber ? 1 : 0) + ".dat"; //Returns the current blob store path
+	}
+
+	public String getNextBlobPath() {
+		return name + "/blobs_" + (backupNumber ? 0 : 1) + ".dat"; //Returns the next blob store path
+	}
+
+	public SaarujanBackupIndex getIndex() {
+		return index; //Returns the current backup
+	}
+
+	public SaarujanBackupIndex getNextIndex() {
+		return nextIndex; //Returns the backup in progress
+	}
+
+	public SaarujanBlobStore getBlobs() {
+		return blobs; //Returns the current blob store
+	}
+
+	public SaarujanBlobStore getNextBlobs() {
+		return nextBlobs; //Returns the blob store that is being filled by a backup
+	}
+
 	public int getMaxSize() {
 		return MAX_SIZE; //Returns the maximum file size
 	}
 
-	private void backup() {
+	public String getName() {
+		return name; //Returns the name of the server
+	}
+
+	public String getOwner() {
+		return root.getUploader(); //Returns the owner, who is the uploader of the root directory
+	}
+
+	public void backup() {
+		ArrayList<SaarujanItem> items = new ArrayList<SaarujanItem>(); //Stores every item of the file system
+		ArrayList<SaarujanItem> copies = new ArrayList<SaarujanItem>(); //Stores the copy of each item, which is saved instead
+		ArrayList<String[]> saved = new ArrayList<String[]>(); //Stores a copy of every account
+		SaarujanFolder snapshot; //Stores a copy of the file system
+		long lines, bytes, copied; //Stores the garbage of the current backup, and the generation, when the file system is copied
+		int next, written; //Stores the next line of the current backup to copy, and the amount of lines the copy was saved in
+		//Uploads hold the storage lock while they add their file to the file system, so it is always locked first
+		storageLock.writeLock().lock(); //No change can be saved while the file system is copied, so the copy matches the current backup
+		treeLock.readLock().lock();
+		try {
+			snapshot = root.snapshot(items, copies); //Copies the file system; only the copy is saved, so clients can keep changing it
+			copied = generation; //Changes after this generation aren't in the copy, so their folders find their ranges again
+			synchronized (accounts) { //Only one client can access the accounts at a time
+				for (int i = 0; i < accounts.size(); ++i) { //Loops through the accounts
+					saved.add(accounts.get(i).clone()); //Copies the account, as its permission can be changed
+				}
+			}
+
+			added.clear(); //Forgets the items added during a previous backup that failed
+			snapshotLine = index.count(); //The copy holds every line of the current backup so far
+			next = snapshotLine + 1; //The lines after it are copied once the copy is saved
+			lines = deadLines.get(); //Stores the garbage of the current backup
+			bytes = deadBytes.get();
+			changes.set(0); //Every change so far is saved by this backup
+		} finally {
+			treeLock.readLock().unlock(); //Lets other clients modify the file system
+			storageLock.writeLock().unlock(); //Lets other clients save changes, while the copy is saved
+		}
+
         try {
-            File backup = new File(getNextBackupPath()); //Opens a file using the next backup path
-            backup.createNewFile(); //Creates the new backup file
-            backup = new File(getFoldersPath()); //Creates an instance of File
-			backup.delete(); //Deletes the previous folder backup (isn't required during the backup of folders, unlike files)
-            backup.createNewFile(); //Creates the folder backup file, if it doesn't exist
-            for (short i = 0; i < root.itemCount(); ++i) { //Loops through all direct children of the root directory
-				//For files, if their data isn't stored in memory, they can be loaded from the backup, which is why two backups are used
-                root.get(i).backup(this); //Saves the current item to the backup file (folders are recursive, files are normal)
-            }
+            nextBlobs = new SaarujanBlobStore(getNextBlobPath(), true); //Creates an empty blob store for the next backup
+            nextIndex = new SaarujanBackupIndex(getNextBackupPath(), true, durability); //Creates the new backup file, and its index
+			//Saves each folder followed by its children, so every folder's children are a single range of lines in the new backup
+			for (SaarujanItem item : snapshot) { //Loops through all direct children of the copied root directory
+				//Items that were deleted since the copy are saved anyway, as their deletion is copied after them
+				if (!item.backup(this)) //Saves the copied item, and its children, to the next backup and blob store
+					throw new IOException(item.getPath() + " cannot be saved"); //The current backup is still used
+			}
+			written = nextIndex.count(); //Every line up to here belongs to the copy; the copied changes are replayed after them
+			//Saves the copy as the image of the new backup; until the metadata points to it, the image is ignored
+			new SaarujanCheckpoint(getImagePath()).save(snapshot, !backupNumber, written);
+
+			//Copies the changes made while the copy was saved; each round is shorter, as it copies the changes of the previous round
+			for (int i = 0; i < CATCH_UP_ROUNDS; ++i) {
+				next = copyChanges(next, items, copies);
+			}
+
+			nextBlobs.force(); //Writes the copy to the disk first, so only the last changes are written while clients wait
+			nextIndex.force();
 
-			backup = new File(getBackupPath()); //Creates an instance of the previous backup
-			backup.delete(); //Deletes the previous backup
-			backupNumber = !backupNumber; //Swaps to the new backup number (0 to 1, 1 to 0);
+			storageLock.writeLock().lock(); //No other client can save changes, or read the backup files, while they're being swapped
+			try {
+				copyChanges(next, items, copies); //Copies the last changes; no more can be made until the new backup is used
+				nextBlobs.force(); //Writes the last changes to the disk, before the metadata points to the new backup
+				nextIndex.force();
+				saveAccounts(saved); //Saves the copied accounts; the changes made since then were copied into the new backup
+				ArrayList<int[]> all = new ArrayList<int[]>(); //The copy is every line up to where it ends
+				if (written > 0) //If the file system had any items
+					all.add(new int[] { 1, written });
+				saveManifest(!backupNumber, written, all); //Points to the copy; the manifest isn't used until the metadata is
+				backupNumber = !backupNumber; //Swaps to the new backup number (0 to 1, 1 to 0)
+				try {
+					saveMetadata(); //Points the metadata to the new backup; once this is saved, the previous backup is no longer used
+				} catch (IOException e) { //If the metadata couldn't be saved, the previous backup is still the current one
+					backupNumber = !backupNumber; //Swaps back to the previous backup number
+					throw e; //The backup failed
+				}
+
+				for (int i = 0; i < items.size(); ++i) { //Loops through the saved items
+					SaarujanItem item = items.get(i), copy = copies.get(i); //Stores the item, and its saved copy
+					item.setBackupLine(copy.getBackupLine()); //Points the item to its line in the new backup
+					if (item instanceof SaarujanFile) { //If the item is a file, it is pointed to its data in the new blob store
+						SaarujanFile file = (SaarujanFile) item; //Stores the file
+						if (file.hasBlob()) { //The blob moves to its copy; blobs that are shared only move once
+							file.getBlob().commit();
+						} else if (((SaarujanFile) copy).hasBlob()) { //Files of older backups are pointed to the blob their data was moved to
+							SaarujanBlob blob = ((SaarujanFile) copy).getBlob(); //Stores the new blob
+							blob.retain(); //Counts the file; no client can change the blobs by hash while the storage lock is held
+							if (blob.getHash() != null)
+								contents.putIfAbsent(blob.getHash(), blob);
+							long size = file.size(); //Stores the size it was counted with, which older backups may have rounded differently
+							cache.setBlob(file, blob); //Points the file to the blob, forgetting the data that was kept under the file
+							treeLock.writeLock().lock(); //Listings cannot read the sizes while they change
+							try {
+								if (paths.get(file.getPath()) == file) //If the file wasn't deleted, the folders above it count its new size
+									resizeAncestors(file.getPath(), file.size() - size);
+							} finally {
+								treeLock.writeLock().unlock();
+							}
+						}
+					} else //If the item is a folder, it keeps the ranges of its children, unless they changed after the copy
+						((SaarujanFolder) item).setRanges(((SaarujanFolder) copy).getRanges(), copied);
+				}
+				root.setRanges(all, copied); //The root directory's children are the whole copy
+
+				new File(getFoldersPath()).delete(); //Deletes the folder backup of older servers, as the folders are in the backup now
+				index.delete(); //Deletes the previous backup, and its index
+				index = nextIndex; //Swaps to the new backup
+				nextIndex = null; //No backup is in progress
+				blobs.delete(); //Deletes the previous blob store; every file's data was copied into the next one
+				blobs = nextBlobs; //Swaps to the new blob store
+				nextBlobs = null; //No backup is in progress
+				deadLines.addAndGet(-lines); //Items deleted before the copy were left out of the new backup; later ones are still garbage
+				deadBytes.addAndGet(-bytes);
+			} finally {
+				storageLock.writeLock().unlock(); //Lets other clients access the backup files
+			}
             log("Server storage saved in" + getBackupPath(), false); //Logs a success message
         } catch (Exception e) { //If any exception occurs
             log("Cannot write to backup files!", true); //An error message is logged
-        }
+			for (int i = 0; i < copies.size(); ++i) { //Loops through the saved copies
+				if (copies.get(i) instanceof SaarujanFile && ((SaarujanFile) copies.get(i)).hasBlob()) //If the copy has a blob
+					((SaarujanFile) copies.get(i)).getBlob().abandon(); //Forgets its copy, so the next backup copies it again
+			}
+			try {
+				if (nextIndex != null) //If the new backup was created, it is deleted, as the previous backup is still used
+					nextIndex.delete();
+				if (nextBlobs != null) //If the new blob store was created, it is deleted
+					nextBlobs.delete();
+			} catch (IOException err) {} //The files are deleted when the server restarts, otherwise
+			nextIndex = null; //No backup is in progress
+			nextBlobs = null;
+        } finally {
+			snapshotLine = -1; //Added items are no longer stored for the backup
+			added.clear(); //Forgets the added items
+		}
     }
 
-    private void send(String s) {
-        try {
-            sockOut.write(String.format("%016d", s.getBytes().length).getBytes()); //Sends the size of the message as 16 characters
-            sockOut.write(s.getBytes()); //Sends the bytes of the given message
-            sockOut.flush(); //Flushes the stream
-        } catch (Exception e) { //If an exception occurs
-            log("Error while sending data to client!", true); //Logs a warning message
-        }
-    }
-	
-	private String recv() {
-        String result = "", size = ""; //result - the message from the client; size - the size of the message
+	private int copyChanges(int first, List<SaarujanItem> items, List<SaarujanItem> copies) throws IOException {
+		int last; //Stores the last line to copy
+		treeLock.readLock().lock(); //Files are stored by line number before the lock is released, so every uploaded file is found
 		try {
-            for (int i = 0; i < 16; ++i) { //Loops 16 times; the size will always be sent as a 16 digit string
-                size += (char) sockIn.read(); //Adds the received character to size
-            }
+			last = index.count(); //Stores the amount of lines in the current backup
+		} finally {
+			treeLock.readLock().unlock(); //Lets other clients modify the file system
+		}
 
-            for (int i = 0; i < SaarujanItem.strToInt(size); ++i) { //Loops through the message using the received size
-                result += (char) sockIn.read(); //Adds the received character to result
-            }
+		if (last < first) //If there are no new lines
+			return first; //Nothing is copied
 
-            return result; //Returns the resulting message
-        } catch (Exception e) { //If an exception occurs
-            log("Error while receiving data from client!", true); //Logs a warning message
-            return ""; //Returns an empty string
-        }
-    }
+		String text = index.readRange(first, last); //Reads every new line at once; each line ends with a line seperator
+		int start = 0; //Stores the start of the current line
+		for (int line = first; line <= last; ++line) { //Loops through the lines, counting the line numbers
+			int end = text.indexOf('\n', start) + 1; //Finds the start of the next line
+			if (end == 0) //If the last line has no line seperator
+				end = text.length(); //The line ends with the range
 
-	private String loginAccount() {
-        String username = recv(), password = recv(); //Stores the received username and password from the client
-
-        String[] line; //Temporary variable that stores the current account
-        for (byte i = 0; i < accounts.size(); ++i) { //Loops through all accounts
-            line = accounts.get(i); //Stores the current account in accounts
-            if (line[0].equals(username)) { //If the current username matches the given username
-                if (line[2].equals("PENDING")) { //If their account access to this server is pending
-                    send("PENDING"); //A message is sent to let the client know that they need to wait for permission to be granted
-                    recv(); //Waits until the client exits
-                    return null; //Returns null to let handleConnection() know that the connection should be closed 
-                } else if (line[2].equals("DENIED")) { //If their account access to this server is denied
-                    send("DENIEDACC"); //A message is sent to let the client know that they cannot access this server
-                    recv(); //Waits until the client exits
-                    return null; //Returns null to let handleConnection() know that the connection should be closed
-                } else if (line[1].equals(password)) { //If they have access to the server, and the given password is correct
-                    if (line[0].equals(root.getUploader())) //If the user is the owner of the server
-                        send("OWNER"); //A message is sent to let the client know that they have owner priviledge
-                    else //Otherwise
-                        send("SUCCESSFUL"); //A message is sent to let the client know that they successfully logged in
-                    
-                    log(username + " logged onto this server", false); //Logs a message 
-                    return username; //Returns the username of the client
-                } else { //If the password was incorrect
-                    send("INCPASS"); //A message is sent to let the client know that they inputted the wrong password
-                    return "DIFF_ACTION"; //Returns "DIFF_ACTION" to let handleConnection() know that the user wants to act another way
-                }
-            } 
-        }
+			String record = text.substring(start, end); //Stores the current line
+			if (record.startsWith("B|") || record.startsWith("F|")) { //If an item was added, it has to point to its copy
+				SaarujanItem item = added.remove(line); //Stores the added item
+				if (item == null) //If the item wasn't stored, it cannot point to the new backup
+					throw new IOException("Line " + line + " of " + getBackupPath() + " cannot be copied"); //The backup is abandoned
 
-        send("INEXISTANT"); //If the username wasn't found
-        return "DIFF_ACTION"; //Returns "DIFF_ACTION" to let handleConnection() know that the user might want to perform another action
-    }
+				SaarujanItem copy; //Stores the copy of the item
+				if (item instanceof SaarujanFile) { //If a file was uploaded, its data is copied into the next blob store
+					copy = ((SaarujanFile) item).snapshot(); //Copies the file, so it still points to the current backup until the swap
+					if (!copy.backup(this)) //Saves the copy's data to the next blob store, and its line to the next backup
+						throw new IOException(item.getPath() + " cannot be saved"); //The current backup is still used
+				} else { //If a folder was created, its record is copied as it is; its children are copied on their own lines
+					copy = new SaarujanFolder(item.getPath(), item.getUploader(), item.getDate());
+					copy.setBackupLine(nextIndex.append(record.endsWith("\n") ? record : record + "\n"));
+				}
+				items.add(item); //Stores the item, so it points to the new backup once it is used
+				copies.add(copy);
+			} else { //Deletions and accounts are copied as they are, so they're replayed after the copied file system
+				nextIndex.append(record.endsWith("\n") ? record : record + "\n");
+			}
+			start = end; //Moves onto the next line
+		}
 
-	private String createAccount() {
-        String username = recv(), password = recv(); //Stores the given username and password from the client
+		return last + 1; //Returns the line after the copied lines
+	}
 
-        for (byte i = 0; i < accounts.size(); ++i) { //Loops through all the accounts
-            if (accounts.get(i)[0].equals(username)) { //If the current account username equals the given username
-                send("ALREXISTS"); //Lets the client know that the account already exists
-                return "DIFF_ACTION"; //Lets handleConnection() know that the user might want to perform a different action
-            }
-        }
+	public void checkpoint() {
+		ArrayList<String[]> saved = new ArrayList<String[]>(); //Stores a copy of every account
+		ArrayList<int[]> ranges; //Stores the ranges of lines that hold the file system
+		int last; //Stores the last line that the checkpoint covers
+		//Uploads hold the storage lock while they add their file to the file system, so it is always locked first
+		storageLock.writeLock().lock(); //No change can be saved while the ranges are found, so they match the current backup
+		treeLock.readLock().lock();
+		try {
+			last = index.count(); //Every line so far is covered; later lines are replayed after the ranges
+			ranges = root.ranges(generation); //Finds the ranges; only the folders that changed since the last checkpoint are visited
+			if (ranges != null) { //If every item points to its line
+				synchronized (accounts) { //Only one client can access the accounts at a time
+					for (int i = 0; i < accounts.size(); ++i) { //Loops through the accounts
+						saved.add(accounts.get(i).clone()); //Copies the account, as its permission can be changed
+					}
+				}
+				changes.set(0); //Every change so far is covered by this checkpoint
+			}
+		} finally {
+			treeLock.readLock().unlock(); //Lets other clients modify the file system
+			storageLock.writeLock().unlock(); //Lets other clients save changes, while the checkpoint is saved
+		}
 
-        log("A new account was created: " + username, false); //Logs a message
-		//Adds the new account to the arraylist of accounts; if the username is the owner's username, they are granted permission
-        if (username.equals(root.getUploader())) { //If the username is the owner's username; they are granted permission immediately
-			accounts.add(new String[]{ username, password, "PERMIT_" }); //The account is added to the ArrayList of accounts
-            send("SUCCESSFUL"); //Lets the client know that the account was created and they know have permission to access the server
-            return username; //Returns the username
-        } else { //If the user is not the owner
-			accounts.add(new String[]{ username, password, "PENDING" }); //The account is added to the ArrayList of accounts
-            send("PENDING"); //Lets the client know that the account was created, and they have to wait for permission
-            return null; //Returns null to let handleConnection() know that the connection should be closed
-        }
-    }
+		if (ranges == null) { //If an item has no line, such as the folders of an older server, the backup is rewritten instead
+			backup();
+			return; //Exits the method
+		}
 
-	private void permitAccount(String currentClient) {
-        if (!currentClient.equals(root.getUploader())) { //If the user is not the owner
-            send("NOPERMISSION"); //Notifying the client that they do not have permission
-            return; //Exiting the method
-        }
-		
-		send(accounts.size() + ""); //Sends the number of accounts
-		for (byte i = 0; i < accounts.size(); ++i) { //Loops through all accounts, and sends them (except passwords)
-			send(accounts.get(i)[0] + ": " + (accounts.get(i)[2].equals("PENDING") ? "pending" :
-											 accounts.get(i)[2].equals("PERMIT_") ? "permitted" : "denied"));
-		}
-		
-        String username = recv(), permission = recv(); //Receives and stores the username and password
-		if (username.equals(root.getUploader())) { //
-			send("NOSELFMOD"); //Notifies the owner that they cannot change their own permissions
-			return; //Exiting the method
-		}
-		
-        for (byte i = 0; i < accounts.size(); ++i) { //Loops through the accounts items
-            String[] temp = accounts.get(i); //Stores the current account
-            if (temp[0].equals(username)) { //If the user matches the given username
-                temp[2] = permission.equals("PERMIT") ? "PERMIT_" : "DENIED"; //Sets the permission to the given permission
-                accounts.set(i, temp); //Updates the arraylist of accounts
-                log(username + " was " + (permission.equals("DEN") ? "denied" : "given") + //Logs a message
-                    " permission to access this server", false);
-                send("SUCCESSFUL"); //Notifies the user that the operation was successful
-                return; //Exits the method
-            }
-        }
+		try {
+			blobs.force(); //Writes every covered line, and its data, to the disk before the manifest points to them
+			index.force();
+			saveAccounts(saved); //Saves the copied accounts, so the account records before the checkpoint aren't replayed
+			saveManifest(backupNumber, last, ranges); //Points to the lines that still hold the file system
+			log("Server storage checkpointed in " + getBackupPath(), false); //Logs a success message
+		} catch (IOException e) { //If the checkpoint couldn't be saved, the previous manifest is still used
+			log("Cannot write to backup files!", true); //An error message is logged
+		}
+	}
 
-        send("INEXISTANT"); //Notifies the user that the user doesn't exist
-    }
+	public void saveImage() {
+		ArrayList<String[]> saved = new ArrayList<String[]>(); //Stores a copy of every account
+		boolean complete = false; //Stores whether every item points to its line
+		//No change can be saved while the image is written, so it matches the current backup; only used once clients have stopped
+		storageLock.writeLock().lock();
+		treeLock.readLock().lock();
+		try {
+			complete = root.ranges(generation) != null;
+			if (!complete) //If an item has no line, such as the folders of an older server, the backup is rewritten instead
+				return; //Exits the method; the backup saves an image once the locks are released
+
+			synchronized (accounts) { //Only one client can access the accounts at a time
+				for (int i = 0; i < accounts.size(); ++i) { //Loops through the accounts
+					saved.add(accounts.get(i).clone()); //Copies the account, as its permission can be changed
+				}
+			}
+
+			blobs.force(); //Writes every covered line, and its data, to the disk before the image points to them
+			index.force();
+			saveAccounts(saved); //Saves the accounts first; replaying the accounts of an older checkpoint onto them changes nothing
+			new SaarujanCheckpoint(getImagePath()).save(root, backupNumber, index.count()); //Saves the image of every line so far
+			changes.set(0); //Every change so far is covered by the image
+			log("Server storage imaged in " + getImagePath(), false); //Logs a success message
+		} catch (IOException e) { //If the image couldn't be saved, the manifest is still used
+			log("Cannot write to backup files!", true); //An error message is logged
+		} finally {
+			treeLock.readLock().unlock(); //Lets other clients access the file system
+			storageLock.writeLock().unlock(); //Lets other clients save changes
+			if (!complete) //If an item has no line
+				backup(); //Rewrites the backup, which saves an image of the copy
+		}
+	}
+
+	public String getImagePath() {
+		return name + "/checkpoint.bin"; //Returns the path of the binary image
+	}
+
+	public String getManifestPath() {
+		return name + "/manifest.txt"; //Returns the manifest path
+	}
+
+	private void saveManifest(boolean number, int last, List<int[]> ranges) throws IOException {
+		int[][] sorted = ranges.toArray(new int[0][]); //The ranges are in the order of the folders, so they're sorted by line
+		Arrays.sort(sorted, (a, b) -> Integer.compare(a[0], b[0]));
+		File temp = new File(name + "/manifest.tmp"); //The manifest is saved beside the manifest file, then replaces it at once
+		FileWriter output = new FileWriter(temp); //Opening the new manifest file
+		output.write((number ? 1 : 0) + "\n" + last + "\n"); //Writing the backup it belongs to, and the last line it covers
+		for (int i = 0; i < sorted.length; ++i) { //Looping through the ranges, joining the ones that meet
+			int end = sorted[i][1]; //Storing the last line of the joined range
+			int j = i; //Storing the last range that is joined
+			while (j + 1 < sorted.length && sorted[j + 1][0] <= end + 1) { //While the next range meets it
+				end = Math.max(end, sorted[++j][1]);
+			}
+			output.write(sorted[i][0] + " " + end + "\n"); //Writing the range
+			i = j; //Moving past the joined ranges
+		}
+		output.close(); //Closing the manifest file
+		Files.move(temp.toPath(), new File(getManifestPath()).toPath(), StandardCopyOption.REPLACE_EXISTING,
+				   StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private ArrayList<int[]> loadManifest() {
+		try {
+			BufferedReader input = new BufferedReader(new FileReader(getManifestPath())); //Opens the manifest file
+			ArrayList<int[]> ranges = new ArrayList<int[]>(); //Stores the covered line, followed by the ranges
+			String number = input.readLine(), last = input.readLine(); //Reads the backup number, and the last covered line
+			//If the manifest belongs to another backup, or covers lines that were never saved, it cannot be used
+			if (number == null || last == null || !number.equals(backupNumber ? "1" : "0") || Integer.parseInt(last) > index.count()) {
+				input.close(); //Closes the manifest file
+				return null; //Returns null, as every line is read instead
+			}
+
+			ranges.add(new int[] { Integer.parseInt(last) }); //Stores the covered line first
+			for (String line = input.readLine(); line != null; line = input.readLine()) { //Loops through the ranges
+				String[] bounds = line.split(" "); //Splits the range into its first and last lines
+				ranges.add(new int[] { Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]) });
+			}
+			input.close(); //Closes the manifest file
+			return ranges; //Returns the covered line and the ranges
+		} catch (Exception e) { //If the manifest doesn't exist, or cannot be read
+			return null; //Returns null, as every line is read instead
+		}
+	}
+
+	private int appendRecord(String record) {
+		try {
+			int line = index.append(record); //Adds the record to the end of the current backup
+			changed(); //Counts the change, so it is included in the next backup
+			return line; //Returns the line number of the record
+		} catch (IOException e) { //If the backup couldn't be written
+			log("Cannot write to backup files!", true); //An error message is logged
+			return -1; //The record wasn't added
+		}
+	}
+
+	private void commitRecord(int line) {
+		if (line == -1) //If the record wasn't added
+			return; //Exits the method
+
+		try {
+			index.commit(line); //Waits until the record is saved; records of other clients are saved with it
+		} catch (IOException e) { //If the backup couldn't be written
+			log("Cannot write to backup files!", true); //An error message is logged
+		}
+	}
+
+	private void changed() {
+		if (changes.incrementAndGet() >= BACKUP_CHANGES) //If enough changes were made since the last backup
+			requestBackup(false); //A checkpoint is started, so fewer changes are replayed after a restart
+	}
+
+	private boolean needsCompaction() {
+		long lines = index.count(); //Stores the amount of lines in the current backup
+		//Deletions only count the lines they leave behind, so each one is assumed to be as long as the average line
+		long garbage = deadBytes.get() + (lines == 0 ? 0 : deadLines.get() * index.size() / lines);
+		return garbage >= COMPACT_MIN && garbage * 2 >= blobs.size() + index.size(); //Returns whether half of the backup is garbage
+	}
+
+	private void compact() {
+		if (needsCompaction()) //If enough of the backup is garbage
+			requestBackup(true); //Rewrites the items that are still in the file system into the next backup
+	}
+
+	private void requestBackup(boolean compact) {
+		synchronized (schedule) { //The scheduler checks for requests while holding the lock, so none are missed
+			compactRequested |= compact; //Marks whether the backup is compacted; a checkpoint never replaces a requested compaction
+			backupRequested = true; //Marks that a backup was requested; many requests only start one backup
+			schedule.notify(); //Wakes the scheduler
+		}
+	}
+
+	private void schedule() {
+		long last = System.currentTimeMillis(); //Stores when the last backup started
+		while (true) { //Loops until the scheduler is stopped
+			boolean requested, compacting; //Stores whether a backup was requested, and whether it compacts the backup
+			synchronized (schedule) { //Requests are only made while holding the lock
+				long wait = last + BACKUP_INTERVAL - System.currentTimeMillis(); //Stores the time until the interval passes
+				if (scheduling && !backupRequested && wait > 0) { //If there is nothing to do yet
+					try {
+						schedule.wait(wait); //Waits until a backup is requested, the interval passes, or the scheduler is stopped
+					} catch (InterruptedException e) { //If the thread was interrupted
+						return; //The scheduler stops
+					}
+					continue; //Checks again, as the thread can wake up without a reason
+				}
 
-	private void sendRecentLogs() {
+				if (!scheduling) //If the scheduler was stopped
+					return; //The server saves the last backup itself
+
+				requested = backupRequested; //Stores the request
+				compacting = compactRequested;
+				backupRequested = false; //Later requests start another backup
+				compactRequested = false;
+			}
+
+			last = System.currentTimeMillis(); //The interval starts again
+			if (compacting) //If the backup has too much garbage, it is rewritten on this thread, while clients keep using the server
+				backup();
+			else if (requested || changes.get() > 0) //If a backup was requested, or there are changes that aren't in the last checkpoint
+				checkpoint(); //Points to the lines that still hold the file system, without rewriting them
+		}
+	}
+
+	private void stopScheduler() {
+		if (scheduler == null) //If the scheduler was never started
+			return; //Exits the method
+
+		synchronized (schedule) {
+			scheduling = false; //Marks that the scheduler should stop
+			schedule.notify(); //Wakes the scheduler, so it stops
+		}
+
+		try {
+			scheduler.join(); //Waits for the backup the scheduler is running; it isn't interrupted, as that closes the backup files
+		} catch (InterruptedException e) {}
+	}
+
+	private SaarujanItem lookup(String path) {
+		if (path.length() > root.getPath().length() && path.endsWith("/")) //A folder's path may be sent with a seperator at its end
+			path = path.substring(0, path.length() - 1);
+		return paths.get(path); //Returns the item, or null if it doesn't exist
+	}
+
+	public SaarujanItem findItem(String path) {
+		return lookup(path); //Returns the item at the given path, or null if it doesn't exist; the index is safe to read during changes
+	}
+
+	public String[] listFolder(String path) {
+		treeLock.readLock().lock(); //Other clients can read the file system at the same time, but cannot modify it
+		try {
+			SaarujanItem item = lookup(path); //Stores the item at the given path
+			if (!(item instanceof SaarujanFolder)) //If the item is a file, or doesn't exist
+				return null; //Null is returned
+
+			SaarujanFolder folder = (SaarujanFolder) item; //Stores the folder
+			String[] result = new String[folder.itemCount()]; //Stores the formatted children of the folder
+			int i = 0; //Stores the index of the current item
+			for (SaarujanItem child : folder) { //Loops through all items in the folder, in order
+				result[i++] = child.sendFormat(); //Stores the formatted item
+			}
+
+			return result; //Returns the formatted children, so they can be sent without holding the lock
+		} finally {
+			treeLock.readLock().unlock(); //Lets other clients modify the file system
+		}
+	}
+
+	public String[] search(String path, String pattern) {
+		treeLock.readLock().lock(); //Other clients can read the file system at the same time, but cannot modify it
+		try {
+			SaarujanItem item = lookup(path); //Stores the item at the given path
+			if (!(item instanceof SaarujanFolder)) //If the item is a file, or doesn't exist
+				return null; //Null is returned
+
+			ArrayList<SaarujanItem> found = names.search((SaarujanFolder) item, pattern); //Stores the matching items
+			String[] result = new String[found.size()]; //Stores their paths
+			for (int i = 0; i < result.length; ++i) {
+				result[i] = found.get(i).getPath();
+			}
+
+			return result; //Returns the paths, so they can be sent without holding the lock
+		} finally {
+			treeLock.readLock().unlock(); //Lets other clients modify the file system
+		}
+	}
+
+	private int addItem(SaarujanItem item, String record) throws IOException {
+		//The caller holds the storage lock, so a compaction cannot swap the backup in between
+		treeLock.writeLock().lock(); //Only one client can modify the file system at a time
+		try {
+			SaarujanFolder parent = parentFolder(item.getPath()); //Finds its parent folder, creating it if it doesn't exist yet
+			if (parent == null) //If the path doesn't belong to this server, or a file is along it, nothing is saved
+				throw new IOException(item.getPath() + " has no parent folder");
+
+			//Adds the record first; records are added in the order the items are, so they replay in order. A file's record is only
+			//written once the data it points to is forced
+			boolean stored = item instanceof SaarujanFile && ((SaarujanFile) item).hasBlob(); //Stores whether the record points to data
+			int line = index.append(record, stored ? blobs : null);
+			parent.add(item); //Adds the item to its parent folder
+			resizeAncestors(parent.getPath(), item.size()); //Adds its size to every folder above the parent folder
+			indexPaths(item); //The item can be found by its path
+			item.setBackupLine(line); //Stores the line of the item's record, so a checkpoint can point to it
+			item.setGeneration(markChanged(item.getPath())); //Marks the item, and every folder along its path, as changed
+			if (snapshotLine != -1) //If a backup is in progress, it has to copy the item after the rest
+				added.put(line, item); //Stores the item by its line, so it can point to the new backup once it is used
+			changed(); //Counts the change, so it is included in the next backup
+			return line; //Returns the line number of the record
+		} finally {
+			treeLock.writeLock().unlock(); //Lets other clients access the file system
+		}
+	}
+
+	private void resizeAncestors(String path, long change) {
+		if (change == 0) //If the size didn't change
+			return; //Exits the method
+
+		//Loops through the folders above the path, from its parent folder up to the root directory; the caller holds the tree lock
+		for (String current = parentOf(path); current != null; current = parentOf(current)) {
+			SaarujanItem folder = paths.get(current); //Looks up the folder
+			if (folder instanceof SaarujanFolder) //Adds the change to its size
+				((SaarujanFolder) folder).resize(change);
+		}
+	}
+
+	public boolean checkFolders() {
+		SaarujanFolder wrong; //Stores the first folder that doesn't match its children
+		int named, indexed; //Stores the amount of items with a valid name in the file system, and in the name index
+		treeLock.readLock().lock(); //The file system cannot change while it is checked
+		try {
+			wrong = root.check(); //Checks every folder
+			named = countNames(root); //Counts the items that the name index should hold
+			indexed = names.size();
+		} finally {
+			treeLock.readLock().unlock(); //Lets other clients modify the file system
+		}
+
+		if (wrong == null && named == indexed) { //If every folder matches, and the name index holds every item
+			System.out.println("Folder sizes and counts are consistent"); //Outputs a message to the console
+			return true; //Returns true
+		} else if (wrong == null) { //If only the name index doesn't match
+			System.out.println("Name index holds " + indexed + " items, but the file system holds " + named); //Outputs a message to the console
+			log("Name index holds " + indexed + " items, but the file system holds " + named, true); //A warning is logged
+			return false; //Returns false
+		}
+
+		System.out.println("Folder sizes and counts don't match at " + wrong.getPath()); //Outputs a message to the console
+		log("Folder sizes and counts don't match at " + wrong.getPath(), true); //A warning is logged
+		return false; //Returns false
+	}
+
+	private static int countNames(SaarujanFolder folder) {
+		int result = 0; //Stores the amount of items with a valid name
+		for (SaarujanItem item : folder) { //Loops through all children of the folder
+			if (item.getName() != null) //Counts the child, if it has a valid name
+				++result;
+			if (item instanceof SaarujanFolder) //Counts the items inside it as well
+				result += countNames((SaarujanFolder) item);
+		}
+
+		return result; //Returns the amount
+	}
+
+	private long markChanged(String path) {
+		++generation; //Starts a new generation; the caller holds the tree lock
+		//Loops through the folders above the path, from its parent folder up to the root directory
+		for (String current = parentOf(path); current != null; current = parentOf(current)) {
+			SaarujanItem folder = paths.get(current); //Looks up the folder
+			if (folder != null) //Marks the folder as changed, so its ranges are found again
+				folder.setGeneration(generation);
+		}
+
+		return generation; //Returns the new generation
+	}
+
+	public boolean removeItem(String path) {
+		int slash = path.lastIndexOf('/'); //Stores the position of the seperator before the name of the item
+		if (slash < 1) //If the path doesn't contain a folder
+			return false; //Nothing is removed
+
+		int line = -1; //Stores the line number of the deletion, if any item was removed
+		storageLock.readLock().lock(); //A compaction cannot swap the backup files while the deletion is saved
+		try {
+			treeLock.writeLock().lock(); //Only one client can modify the file system at a time
+			try {
+				String parentPath = parentOf(path); //Stores the path of the parent directory
+				SaarujanItem parent = parentPath == null ? null : paths.get(parentPath); //Finds the parent directory without creating it
+				String name = path.substring(slash + 1); //Stores the name of the item
+				if (parent instanceof SaarujanFolder && ((SaarujanFolder) parent).indexOf(name) != -1) { //If the item wasn't already deleted
+					line = index.append("D|" + encrypt(path) + "\n"); //Adds the deletion; the item is left out once it is replayed
+					deadLines.incrementAndGet(); //The deletion itself is garbage once the backup is compacted
+					changed(); //Counts the change, so it is included in the next backup
+					markChanged(path); //Marks every folder along the path as changed, so a checkpoint leaves the item out
+					SaarujanFolder folder = (SaarujanFolder) parent; //Stores the parent directory
+					for (int i = folder.indexOf(name); i != -1; i = folder.indexOf(name)) { //Loops through every item with the name
+						countGarbage(folder.get(i)); //Its lines and data are no longer used
+						unindexPaths(folder.get(i)); //It, and every item inside it, can no longer be found by its path
+						resizeAncestors(folder.getPath(), -folder.get(i).size()); //Takes its size away from every folder above the parent
+						folder.remove(i); //Deletes the item from the parent directory, as the deletion removes it when it is replayed
+					}
+				}
+			} finally {
+				treeLock.writeLock().unlock(); //Lets other clients access the file system, while the deletion is saved
+			}
+
+			if (line != -1) //If an item was removed
+				index.commit(line); //Waits until the deletion is saved, along with the changes of other clients
+		} catch (IOException e) { //If the deletion couldn't be saved
+			log("Cannot write to backup files!", true); //An error message is logged
+		} finally {
+			storageLock.readLock().unlock(); //Lets a compaction swap the backup files
+		}
+
+		compact(); //Compacts the backup, if enough of it is now garbage
+		return line != -1; //Returns whether the item was removed
+	}
+
+	private void countGarbage(SaarujanItem item) {
+		if (item instanceof SaarujanFile) { //If the item is a file, its line and its data are garbage
+			deadLines.incrementAndGet(); //Adds its line
+			SaarujanBlob blob = ((SaarujanFile) item).getBlob(); //Stores the blob of its data, if it is in the blob store
+			if (blob == null) { //If its data is on its line, it is no longer kept in memory
+				cache.remove((SaarujanFile) item);
+			} else if (blob.release() == 0) { //If no other file shares the data, the data is added
+				deadBytes.addAndGet(blob.getLength());
+				cache.remove((SaarujanFile) item); //The data is no longer kept in memory
+				if (blob.getHash() != null) //The content has to be uploaded again, as its bytes are removed by the next compaction
+					contents.remove(blob.getHash(), blob);
+			}
+			return; //Exits the method
+		}
+
+		SaarujanFolder folder = (SaarujanFolder) item; //Stores the folder
+		for (SaarujanItem child : folder) { //Loops through the children of the folder
+			countGarbage(child); //Counts the child, and its children
+		}
+	}
+
+	public boolean storeFolder(SaarujanFolder folder) {
+		storageLock.readLock().lock(); //A compaction cannot swap the backup files while the folder is saved
+		try {
+			//Adds the folder to the backup and its parent folder, then waits until it is saved along with the changes of other clients
+			index.commit(addItem(folder, "F|" + folder.record(this)));
+			return true; //The folder was saved
+		} catch (IOException e) { //If the backup couldn't be written
+			log("Cannot write to backup files!", true); //An error message is logged
+			return false; //The folder wasn't saved
+		} finally {
+			storageLock.readLock().unlock(); //Lets a compaction swap the backup files
+		}
+	}
+
+	public void cacheFile(SaarujanFile file) {
+		if (cache.touch(file)) //If the data is already kept, it becomes the most recently used
+			return; //Exits the method
+
+		//If the file is too large to remain in memory, or is used less often than the files it would clear; files of older
+		//backups only know their size in KB
+		if (!cache.admits(file, file.hasBlob() ? file.getBlobLength() : file.size() * 1000L)) {
+			file.setData(null); //Clears the data that a small upload kept in memory, as no entry keeps it
+			return; //Exits the method
+		}
+
+		ByteBuffer data = file.getCachedData(); //Stores the data, if it is already in memory, such as after a small upload
+		if (data == null) { //If the data isn't in memory, it is read
+			storageLock.readLock().lock(); //The blob store cannot be swapped while the data is read
+			try {
+				data = file.readData(this); //Reads the data from the blob store, or from the file's line in older backups
+			} finally {
+				storageLock.readLock().unlock(); //Lets a backup swap the backup files
+			}
+
+			if (data == null) //If the data couldn't be read
+				return; //Exits the method
+			file.setData(data); //Keeps the data in memory
+		}
+
+		cache.put(file, file.hasBlob() ? file.getBlobLength() : data.remaining()); //Adds the data, clearing the least recently used data
+	}
+
+	public boolean storeFile(SaarujanFile file, long length, SaarujanSession session) {
+		//Many clients can upload at once, as each one writes to its own reserved space; a backup waits until every upload is done
+		storageLock.readLock().lock();
 		try {
-			SaarujanQueue recent = new SaarujanQueue((byte) 20); //Creates a queue to store recent logs; old logs are dequeued 
+			long position = blobs.reserve(length), written = 0; //Reserves space for the data; written - the amount of bytes saved
+			ByteBuffer small = null; //Stores the data, if it fits in a single chunk, so it can be kept in memory
+			MessageDigest digest = SaarujanBlob.digest(); //Hashes the data as it is received, so a copy of it is found
+			while (written < length) { //Loops until every chunk is saved
+				ByteBuffer chunk = session.recvChunk(); //Receives the next chunk
+				if (chunk == null) { //If the client left part way through the upload
+					deadBytes.addAndGet(length); //The reserved space is left unused, and is removed by the next compaction
+					return false; //The file wasn't saved
+				}
+
+				if (chunk.remaining() > length - written) //If the client sent more bytes than it said it would
+					chunk.limit(chunk.position() + (int) (length - written)); //The extra bytes are ignored
+				if (length <= SaarujanFrame.CHUNK_SIZE) //If the whole file is in this chunk
+					small = allocate(chunk.remaining()).put(chunk.duplicate()).flip();
+
+				int count = chunk.remaining(); //Stores the size of the chunk
+				if (digest != null) //Adds the chunk to the hash, without moving the chunk
+					digest.update(chunk.duplicate());
+				blobs.write(position + written, chunk); //Saves the chunk straight to the blob store
+				written += count; //Adds the saved bytes to the total
+			}
+
+			SaarujanBlob blob = new SaarujanBlob(digest == null ? null : HexFormat.of().formatHex(digest.digest()), position, length);
+			int line; //Stores the line of the file's record
+			treeLock.writeLock().lock(); //No other client can delete the last file with the same content, until the file shares it
+			try {
+				SaarujanBlob stored = blob.getHash() == null ? null : contents.get(blob.getHash()); //Stores the blob with the same content
+				boolean shared = stored != null && stored.getLength() == length; //Stores whether the content is already stored
+				file.setBlob(shared ? stored : blob); //Stores where the data is; if the content is already stored, the file shares it
+				file.setData(small); //Keeps small files in memory
+				line = addItem(file, file.record(this)); //Adds the file to the current backup, and to its parent folder
+				file.getBlob().retain(); //Counts the file, now that it was added
+				if (shared) //The received bytes are left unused, and are removed by the next compaction
+					deadBytes.addAndGet(length);
+				else if (blob.getHash() != null) //If the content is new, it can be shared from now on
+					contents.put(blob.getHash(), blob);
+			} finally {
+				treeLock.writeLock().unlock(); //Lets other clients access the file system
+			}
+			index.commit(line); //Waits until the data, then the file, are saved; uploads of other clients share the same force
+			return true; //The file was saved
+		} catch (IOException e) { //If the blob store or backup couldn't be written
+			log("Cannot write to backup files!", true); //An error message is logged
+			return false; //The file wasn't saved
+		} finally {
+			storageLock.readLock().unlock(); //Lets a backup swap the backup files
+		}
+	}
+
+	public boolean linkFile(SaarujanFile file, String hash, long length) {
+		storageLock.readLock().lock(); //A backup cannot move the blob while the file's record points to it
+		int line = -1; //Stores the line of the file's record, once the file is added
+		try {
+			treeLock.writeLock().lock(); //No other client can delete the last file with the same content, until the file shares it
+			try {
+				SaarujanBlob stored = contents.get(hash); //Stores the blob with the given hash
+				if (stored == null || stored.getLength() != length) //If the content isn't stored, the client has to send it
+					return false; //Returns false
+
+				file.setBlob(stored); //Points the file to the stored data
+				line = addItem(file, file.record(this)); //Adds the file to the current backup, and to its parent folder
+				stored.retain(); //Counts the file, now that it was added
+			} finally {
+				treeLock.writeLock().unlock(); //Lets other clients access the file system
+			}
+			index.commit(line); //Waits until the file is saved; its data is forced before it, if its first upload wasn't saved yet
+			return true; //The file was saved
+		} catch (IOException e) { //If the backup couldn't be written
+			log("Cannot write to backup files!", true); //An error message is logged
+			return line != -1; //Returns whether the file was added; if it wasn't, the client sends the data instead
+		} finally {
+			storageLock.readLock().unlock(); //Lets a backup swap the backup files
+		}
+	}
+
+	public boolean sendFile(SaarujanFile file, SaarujanSession session) {
+		List<ByteBuffer> data; //Stores the data, in memory or mapped from the blob store, so it can be sent without the lock
+		//The data is found while a compaction cannot swap the backup files, and sent after, so a client that stops reading a
+		//download cannot hold the lock; mapped data stays valid after the blob store it came from is deleted
+		storageLock.readLock().lock();
+		try {
+			ByteBuffer cached = file.getCachedData(); //Stores the data, if it is in memory
+			//If the file was deleted after the session found it, a compaction may have moved other data to where its data was
+			if (paths.get(file.getPath()) != file)
+				data = List.of(); //An empty file is sent, so the client isn't left waiting
+			else if (cached != null) //If the data is in memory, it is sent straight from its buffer
+				data = List.of(cached);
+			else if (!file.hasBlob() && (cached = file.readData(this)) != null) //If the file was loaded from an older backup, its data is on its line
+				data = List.of(cached);
+			else if (!file.hasBlob()) //If its line couldn't be read
+				throw new IOException(file.getPath() + " cannot be read");
+			else //Otherwise, the data is mapped from the blob store, without decoding it or copying it into the heap
+				data = blobs.slices(file.getBlobOffset(), file.getBlobLength());
+		} catch (IOException e) { //If the backup or blob store couldn't be read
+			log("Error while reading from blob store!", true); //An error message is logged
+			return false; //The client cannot tell where the data ended, so the session is closed
+		} finally {
+			storageLock.readLock().unlock(); //Lets a backup swap the backup files, while the data is sent
+		}
+
+		try {
+			long size = 0; //Stores the size of the data
+			for (ByteBuffer piece : data)
+				size += piece.remaining();
+			session.send(size + ""); //Sends the size of the data
+			for (ByteBuffer piece : data) //Sends the data in chunks, without copying it
+				session.sendBuffer(piece.duplicate());
+			return true; //The file was sent
+		} catch (IOException e) { //If the data couldn't be sent
+			log("Error while sending a file to client!", true); //An error message is logged
+			return false; //The client cannot tell where the data ended, so the session is closed
+		}
+	}
+
+	public void cacheOffHeap() {
+		offHeap = true; //Data that is read from now on is kept outside of the heap
+	}
+
+	public ByteBuffer allocate(int size) {
+		return offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size); //Returns a buffer for the data
+	}
+
+	public String checkAccount(String username, String password) {
+		synchronized (accounts) { //Only one client can access the accounts at a time
+			for (int i = 0; i < accounts.size(); ++i) { //Loops through all accounts
+				String[] line = accounts.get(i); //Stores the current account
+				if (line[0].equals(username)) { //If the current username matches the given username
+					if (line[2].equals("PENDING")) //If their account access to this server is pending
+						return "PENDING"; //The client needs to wait for permission to be granted
+					else if (line[2].equals("DENIED")) //If their account access to this server is denied
+						return "DENIEDACC"; //The client cannot access this server
+					else if (!line[1].equals(password)) //If the given password is incorrect
+						return "INCPASS"; //The client inputted the wrong password
+					else if (line[0].equals(root.getUploader())) //If the user is the owner of the server
+						return "OWNER"; //The client has owner priviledge
+					else //Otherwise
+						return "SUCCESSFUL"; //The client successfully logged in
+				}
+			}
+		}
+
+		return "INEXISTANT"; //If the username wasn't found
+	}
+
+	public String addAccount(String username, String password) {
+		String permission; //Stores the permission of the new account
+		int line; //Stores the line number of the account's record
+		storageLock.readLock().lock(); //A backup cannot swap the backup files while the account is saved; always locked first
+		try {
+			synchronized (accounts) { //Only one client can access the accounts at a time
+				for (int i = 0; i < accounts.size(); ++i) { //Loops through all the accounts
+					if (accounts.get(i)[0].equals(username)) //If the current account username equals the given username
+						return "ALREXISTS"; //The account already exists
+				}
+
+				//If the username is the owner's username; they are granted permission immediately
+				permission = username.equals(root.getUploader()) ? "PERMIT_" : "PENDING";
+				//Adds the account before it is added, so it is replayed in the same order as other changes to the accounts
+				line = appendRecord("A|" + encrypt(username) + "|" + encrypt(password) + "|" + encrypt(permission) + "\n");
+				log("A new account was created: " + username, false); //Logs a message
+				accounts.add(new String[]{ username, password, permission }); //The account is added to the ArrayList of accounts
+			}
+
+			commitRecord(line); //Waits until the account is saved; other clients can use the accounts meanwhile
+			//The owner now has permission to access the server; others have to wait for permission
+			return permission.equals("PERMIT_") ? "SUCCESSFUL" : "PENDING";
+		} finally {
+			storageLock.readLock().unlock(); //Lets a backup swap the backup files
+		}
+	}
+
+	public String[] listAccounts() {
+		synchronized (accounts) { //Only one client can access the accounts at a time
+			String[] result = new String[accounts.size()]; //Stores the formatted accounts
+			for (int i = 0; i < accounts.size(); ++i) { //Loops through all accounts, and formats them (except passwords)
+				result[i] = accounts.get(i)[0] + ": " + (accounts.get(i)[2].equals("PENDING") ? "pending" :
+														 accounts.get(i)[2].equals("PERMIT_") ? "permitted" : "denied");
+			}
+
+			return result; //Returns the formatted accounts
+		}
+	}
+
+	public String setPermission(String username, String permission) {
+		if (username.equals(root.getUploader())) //If the owner tries to modify their own permissions
+			return "NOSELFMOD"; //The owner cannot change their own permissions
+
+		int line = -2; //Stores the line number of the change's record; -2 if the user doesn't exist
+		storageLock.readLock().lock(); //A backup cannot swap the backup files while the change is saved; always locked first
+		try {
+			synchronized (accounts) { //Only one client can access the accounts at a time
+				for (int i = 0; i < accounts.size() && line == -2; ++i) { //Loops through the accounts items, until the user is found
+					String[] temp = accounts.get(i); //Stores the current account
+					if (temp[0].equals(username)) { //If the user matches the given username
+						temp[2] = permission.equals("PERMIT") ? "PERMIT_" : "DENIED"; //Sets the permission to the given permission
+						line = appendRecord("P|" + encrypt(username) + "|" + encrypt(temp[2]) + "\n"); //Adds the change to the current backup
+						log(username + " was " + (permission.equals("DEN") ? "denied" : "given") + //Logs a message
+							" permission to access this server", false);
+					}
+				}
+			}
+
+			if (line == -2) //If the user wasn't found
+				return "INEXISTANT"; //The user doesn't exist
+
+			commitRecord(line); //Waits until the change is saved; other clients can use the accounts meanwhile
+			return "SUCCESSFUL"; //The operation was successful
+		} finally {
+			storageLock.readLock().unlock(); //Lets a backup swap the backup files
+		}
+	}
+
+	public synchronized String[] recentLogs() {
+		try {
+			SaarujanQueue recent = new SaarujanQueue(20); //Creates a queue to store recent logs; old logs are dequeued 
 			BufferedReader input = new BufferedReader(new FileReader(name + "/logs.txt")); //Opens the log file
 
 			String temp; //Temp variable is declared in order to store the input lines
@@ -375,132 +1462,52 @@ public class SaarujanServer {
 			}
 
 			input.close(); //The input is closed
-			send(recent.length() + ""); //Notifies the client about the amount of log messages they will receive
+			String[] result = new String[recent.length()]; //Stores the decrypted log messages
 			FileWriter output = new FileWriter(name + "/logs.txt"); //Opens the log file, to reduce the size of the log file
-			for (byte i = (byte) (recent.length() - 1); i >= 0; --i) { //Loops 'queue length' times
-                temp = recent.dequeue(); //Stores the current log message
-				send(decrypt(temp)); //Sends the decrypted log message to the client
+			for (int i = 0; i < result.length; ++i) { //Loops 'queue length' times
+				temp = recent.dequeue(); //Stores the current log message
+				result[i] = decrypt(temp); //Stores the decrypted log message
 				output.write(temp + "\n"); //Writes the log message to the log file
 			}
 
 			output.close(); //Closes the output stream
+			return result; //Returns the decrypted log messages
 		} catch (Exception e) { //If any error occurs
-			send("ERRORLOG"); //Notifies the client that an error occured
 			log("Error while sending recent log messages!", true); //Logs a message
+			return null; //Returns null, as the logs couldn't be read
 		}
 	}
-	
-	private void createFolder(String currentClient) {
-		//Creating a new folder with received path; the current client is the uploader, and the current date is the upload date
-        SaarujanFolder folder = new SaarujanFolder(recv(), currentClient, SaarujanDate.currentDate());
-        navigateFolder(root, folder.getPath().split("/"), 2).add(folder); //Navigates to its parent folder, and adds the created folder
-        log(currentClient + " created a new folder: " + folder.getPath(), false); //Logs a message
-    }
 
-	private void uploadFile(String currentClient) {
-		//Creates a new file with received path; the uploader is the current client, and the upload date is the current date
-        SaarujanFile file = new SaarujanFile(recv(), currentClient, SaarujanDate.currentDate(), "");
-		//Sets the file data to the received data; replaces the line seperators with '/newline', as the backup stores 1 file per line
-        file.setData(recv().replaceAll("[\\r\\n]+", "/newline"));
-
-		backupNumber = !backupNumber; //Swaps the backup number temporarily, as it should be saved on the current backup
-        file.backup(this); //Saves the file to the server's backup
-		backupNumber = !backupNumber; //Undoes the swapped backup number
-
-        navigateFolder(root, file.getPath().split("/"), 2).add(file); //Navigates to the parent folder, and adds the file
-        if (file.size() <= MAX_SIZE) { //If the file meets the size requirements
-            String path = inMemory.enqueue(file.getPath()); //Enqueues the file in the memory queue; saves the dequeued file path
-            if (path != null) { //If a path was dequeued from the memory queue
-                SaarujanFolder parent = navigateFolder(root, path.split("/"), 2); //Stores the parent directory of the dequeued file
-                ((SaarujanFile) parent.get(parent.indexOf(file.getName()))).setData(null); //Clears the data of the file from memory
-            }
-        } else { //If the file is too large to remain in-memory
-			file.setData(null); //Clears the data of the file from memory
-		}
-
-		send("SUCCESSFUL"); //Sends a message to the client; this allows the client program to wait, so they don't perform actions while the file is uploading
-        log(currentClient + " uploaded a new file: " + file.getPath(), false); //Logs a message 
-    }
+	public void beginSession(SaarujanSession session) {
+		sessions.add(session); //Stores the session, so it can be closed when the server stops
+	}
 
-    private void downloadFile(String currentClient) {
-        String path = recv(); //Stores the received path
-        SaarujanFolder parent = navigateFolder(root, path.split("/"), 2); //Stores the parent folder of the file to download
-        SaarujanFile file = (SaarujanFile) parent.get(parent.indexOf(path.substring(path.lastIndexOf("/") + 1))); //Stores the file
-		inMemory.remove(path); //Removes the file from the memory queue; if it doesn't exist in it currently, nothing happens
-
-		//Replaces the '/newline's with actual line seperators, and sends it to the client
-        send(file.getData(this)); 
-        log(currentClient + " downloaded a file: " + path, false); //Logs a message
-        path = inMemory.enqueue(path); //Adds the path (possibly back) to the queue; now it ranks higher than it may have before
-        if (path != null) { //If a file was dequeued from the memory queue 
-            parent = navigateFolder(root, path.split("/"), 2); //The parent directory of the dequeued file is stored
-            ((SaarujanFile) parent.get(parent.indexOf(file.getName()))).setData(null); //The data of the file is cleared from memory
-        }
-    }
+	public void endSession(SaarujanSession session) {
+		sessions.remove(session); //Removes the session, as the client is no longer connected
+	}
 
-	private void deleteItem(String currentClient) {
-        String path = recv(); //Stores the received path
-        SaarujanFolder parent = navigateFolder(root, path.split("/"), 2); //Navigates to the parent directory of the item to delete
-        parent.remove(parent.indexOf(path.substring(path.lastIndexOf("/") + 1))); //Deletes the item from the parent directory
-        backup(); //The server conducts a backup to acknowledge the removed file
-		send("SUCCESSFUL"); //Sends a success message; this allows the client to wait for the backup to be completed
-        log(currentClient + " deleted an item: " + path, false); //A message is logged
-        inMemory.remove(path); //The file is removed from the memory queue, if it existed within
-    }
+	public synchronized void startTrace() {
+		try {
+			trace = new BufferedWriter(new FileWriter(name + "/trace.txt", StandardCharsets.UTF_8, true)); //Adds onto earlier traces
+		} catch (IOException e) { //If the trace file couldn't be opened
+			log("Cannot write to trace file!", true); //An error message is logged
+		}
+	}
 
-	private void sendNavigation() {
-        String path = recv(); //Stores the received path
-        SaarujanFolder parent; //Creates a variable to store the parent directory
-        if (path.equals(name + "://")) { //If the path is the root directory
-            parent = root; //The parent is set to the root directory
-        } else { //Otherwise
-            parent = navigateFolder(root, path.split("/"), 2); // The parent directory is set to the parent of the item
-            SaarujanItem curr = parent.get(parent.indexOf(path.substring(path.lastIndexOf("/") + 1))); //Stores the item
-            if (curr instanceof SaarujanFile) { //If the item is actually a file
-                send("NOTAFOLDER"); //The client is notified that it isn't a folder
-                return; //The method is exited
-            }
+	public synchronized void trace(String action, String path, long bytes) {
+		if (trace == null) //If no trace is recorded
+			return; //Exits the method
 
-            parent = (SaarujanFolder) curr; //The parent variable is set to the actual directory
-        }
-        send(parent.itemCount() + ""); //The item count of the directory is sent to the client
-        for (int i = 0; i < parent.itemCount(); ++i) { //Loops through all items in the folder
-            send(parent.get(i).sendFormat()); //Sends the current item to the client
-        }
-    }
-	
-	private void handleConnection() {
-        String currentClient; //Stores the current client's username, to use in logging operations
-		switch (recv()) { //Receives the initial message from the client
-			case "LOGINACC": currentClient = loginAccount(); break; //If user wants to login, currentClient is set to loginAccount()
-			case "CREATEACC": currentClient = createAccount(); break; //If user wants to create, currentClient is set to createAccount()
-			default: return; //If an invalid message was received, the method exits
-		} 
-        
-        if (currentClient == null) //If currentClient is null, that means that the connection should be closed
-            return; //Exits the method
-        else if (currentClient.equals("DIFF_ACTION")) { //If currentClient equals "DIFF_ACTION", the user wants to perform another task
-            handleConnection(); //Calls the method again
-            return; //Exits this instance of the method
-        }
-
-        send(name); //Sends the server name 
-        while (true) { //Loops until an invalid message is received, or the client wants to log out
-            switch (recv()) { 
-                case "PERMITACC": permitAccount(currentClient); break; //If the owner wants to modify an account's permission
-				case "ACCESSLOG": sendRecentLogs(); break; //If the owner wants to check recent logs
-                case "NAVIGATE": sendNavigation(); break; //If the client wants to navigate to a certain folder
-                case "ULOADFILE": uploadFile(currentClient); break; //If the client wants to upload a file
-                case "CREATEFOL": createFolder(currentClient); break; //If the client wants to create a folder
-                case "DLOADFILE": downloadFile(currentClient); break; //If the client wants to downloa a file
-                case "DELETEITEM": deleteItem(currentClient); break; //If the client wants to delete an item
-                //If the client wants to log out, or an invalid message was sent, the method is exited
-                default: log(currentClient + " logged out of the server!", false); return; 
-            }
-        }
-    }
+		try {
+			//Writes the request in the format action|path|bytes; paths are encrypted, as the replay only compares them
+			trace.write(action + "|" + encrypt(path) + "|" + bytes + "\n");
+		} catch (IOException e) { //If the trace file couldn't be written, no more requests are recorded
+			log("Cannot write to trace file!", true);
+			trace = null;
+		}
+	}
 
-	public void start() {
+	public void start(boolean useSelector) {
         Thread exitCondition = new Thread("exit-condition") { //The exit thread is created
             public void run() { //The run() method of the exit condition is overrided
                 try {
@@ -508,8 +1515,11 @@ public class SaarujanServer {
                     System.out.println("Type anything to stop the server: "); //Whenever someone enters something on the server
                     input.nextLine(); //The server waits for someone to stop the server
                     input.close(); //Closes the scanner
-                    if (connection != null) //If there is a connection to a client
-                        connection.close(); //The connection is closed, as sockets hang until they're closed; 
+                    for (SaarujanSession session : sessions) //Loops through the connections to every client
+                        session.close(); //The connection is closed, as sockets hang until they're closed
+
+                    if (selector != null) //If the server is running on a Selector
+                        selector.close(); //The event loop is stopped
 
                     if (main != null) //If the main socket is active
                         main.close(); //The connection is closed in order to allow the thread interruption to function 
@@ -522,44 +1532,76 @@ public class SaarujanServer {
         };
 
         exitCondition.start(); //The exit thread is started on another thread
+        scheduling = true; //Backups are run by the scheduler from now on
+        scheduler = Thread.ofPlatform().name("scheduler").daemon().start(this::schedule); //Starts the scheduler on its own thread
         try {
-            main = new ServerSocket(2023); //A new server socket is created on port 2023
+            ServerSocketChannel listener = ServerSocketChannel.open(); //A new server channel is opened
+            listener.bind(new InetSocketAddress(2023)); //The channel listens on port 2023
+            main = listener.socket(); //The server socket of the channel is used until the Selector takes over
             Socket testConnection = new Socket("0.0.0.0", 2023);
             Socket getAddress = main.accept(); //Connects to get the address and port of the server
             System.out.println("Connect to this address: " + getAddress.getLocalAddress() + ":" + getAddress.getLocalPort());
             getAddress.close(); //Closes the connection
             testConnection.close(); //Closes the connection
-            while (true) {
-                System.out.println("Waiting for connection...");
-                connection = main.accept();
-				sockIn = connection.getInputStream();
-				sockOut = connection.getOutputStream();
-                handleConnection();
-                connection.close();
-            } 
+            System.out.println("Waiting for connections...");
+            if (useSelector) { //If the clients should be held on a non-blocking event loop
+                selector = new SaarujanSelector(this, listener, Runtime.getRuntime().availableProcessors() * 2);
+                selector.run(); //Runs the event loop on this thread, until it is stopped by the exit thread
+            } else {
+                while (true) { //Loops until the server socket is closed by the exit thread
+                    SaarujanSession session = new SaarujanSession(this, main.accept()); //Creates a session for the new connection
+                    beginSession(session); //Stores the session, so it can be closed when the server stops
+                    Thread.ofVirtual().name("session").start(session); //Runs the session on its own virtual thread
+                } 
+            }
         } catch (Exception e) { //If the server is interrupted by the user through the exit thread
-            log("Server stopped successfully", false); //Logging a message that the server was stopped
-			backup(); //The file system is backed up onto the server's backup
-	        try {
-	            FileWriter meta = new FileWriter(name + "/metadata.txt"); //Opening the metadata file, and writing the encrypted info
-	            meta.write(String.format("%s\n%s\n%s", encrypt("TheEncryptionKey"), 
-                                         encrypt(root.getUploader()), root.getDate().toString()));
-	            meta.close(); //Closing the metadata file
-	            meta = new FileWriter(name + "/users.txt"); //Opening the accounts file
-	            for (byte i = 0; i < accounts.size(); ++i) { //Looping through all of the accounts
-	                String[] temp = accounts.get(i); //Storing the current account
-	                meta.write(encrypt(temp[0]) + "|" + encrypt(temp[1]) + "|" + 
-                               encrypt(temp[2]) + "\n"); //Writing the formatted account
-	            }
-	            meta.close(); //Closing the accounts file
-	        } catch (Exception err) { //If any exception occurs
-	            log("Cannot write to metadata and user file!", true); //Logging an error message
-	        }
-        }    
+            System.out.println("Server is no longer accepting connections"); //Outputs a message to the console
+        }
+
+        if (checking) //If the folders should be checked, every change since the server started is checked
+            checkFolders();
+        log("Server stopped successfully", false); //Logging a message that the server was stopped
+        log("File cache: " + cache.hits() + " hits, " + cache.misses() + " misses, " + cache.count() + " files kept in " +
+            cache.used() + " bytes", false); //Logs how often downloaded files were found in memory
+        synchronized (this) { //Writes the rest of the trace, if one is recorded
+            try {
+                if (trace != null)
+                    trace.close();
+            } catch (IOException e) {} //The requests that were already written are kept
+            trace = null;
+        }
+        stopScheduler(); //Stops the scheduler, so only one backup runs at a time
+        if (needsCompaction()) //If enough of the backup is garbage, the file system, accounts, and metadata are rewritten
+            backup();
+        else //Otherwise, the binary image is saved, so the next start reads it instead of the lines it covers
+            saveImage();
     }
 
     public static void main(String[] args) {
-		SaarujanServer local = new SaarujanServer("Storage", "Saarujan");
-		local.start();
+		//Stores whether the server runs on a Selector, records a trace, and keeps cached data outside of the heap
+		boolean useSelector = false, tracing = false, offHeap = false, checking = false;
+		int durability = SaarujanBackupIndex.SYNC_GROUP; //Stores the durability; changes of many clients share each force by default
+		for (int i = 0; i < args.length; ++i) { //Loops through the arguments, which can be given in any order
+			switch (args[i]) {
+				case "selector": useSelector = true; break; //Runs on a Selector
+				case "record": durability = SaarujanBackupIndex.SYNC_RECORD; break; //Forces every change to the disk by itself
+				case "group": durability = SaarujanBackupIndex.SYNC_GROUP; break; //Forces the changes of many clients at once
+				case "async": durability = SaarujanBackupIndex.SYNC_ASYNC; break; //Leaves the changes to the operating system
+				case "trace": tracing = true; break; //Records the requests of clients
+				case "offheap": offHeap = true; break; //Keeps cached data outside of the heap
+				case "check": checking = true; break; //Checks the sizes and counts of the folders
+			}
+		}
+
+		SaarujanServer local = new SaarujanServer("Storage", "Saarujan", durability);
+		if (tracing) //If the requests should be recorded, the trace file is opened
+			local.startTrace();
+		if (offHeap) //If cached data should be kept outside of the heap
+			local.cacheOffHeap();
+		if (checking) { //If the folders should be checked, they're checked after loading, and again when the server stops
+			local.checking = true;
+			local.checkFolders();
+		}
+		local.start(useSelector); //Runs on a Selector if "selector" is given as an argument
     }
 }
\ No newline at end of file
@@ -0,0 +1,331 @@
+/** Session Class
+* Description: Handles a single client connected to the server; each session owns its own socket, streams, and login state,
+  and runs on its own virtual thread so that many clients can use the server at the same time
+* constructor(Server) - Stores the server; used by sessions that don't communicate through a socket's streams
+* constructor(Server, Socket) - Stores the server and the connection, and opens the streams of the connection
+* send(String) - Sends a message to the client
+* recv() - Receives and returns a message from the client
+* sendChunk(ByteBuffer) - Sends the remaining bytes of the given buffer to the client, as a single frame
+* recvChunk() - Receives a frame from the client without decoding it, and returns it; null if it couldn't be received
+* sendBuffer(ByteBuffer) - Sends the remaining bytes of the given buffer to the client in chunks; buffers outside of the heap
+						   are written straight to the socket
+* loginAccount() - Handles the login of a client to the server
+* createAccount() - Handles the creation of an account by the client
+* permitAccount() - Handles the modification of an account’s permission by the owner
+* sendRecentLogs() - Handles the sending of recent logs
+* createFolder() - Handles the creation of a folder by the client
+* uploadFile() - Handles the upload of a file by the client; returns false if the upload couldn't be completed
+* uploadHashed() - Handles the upload of a file whose hash is sent first; the data is only asked for if the server doesn't
+				   store the same content already. Returns false if the upload couldn't be completed
+* downloadFile() - Handles the download of a file by the client; returns false if the download couldn't be completed
+* deleteItem() - Handles the deletion of a folder or file by the client
+* sendNavigation() - Handles the navigation of the file system by the client
+* sendSearch() - Handles a search by the client for the items inside a folder, at any depth, whose names match a pattern
+* handleMessage(String) - Handles the given message from the client; returns false once the connection should be closed
+* handleConnection() - Handles the login / logout to the server, and every action that the client can take
+* close() - Closes the connection to the client
+* run() - Runs the session until the client logs out, then closes the connection
+**/
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+public class SaarujanSession implements Runnable {
+	protected SaarujanServer server; //The server that this session belongs to
+	private Socket connection; //The sub-socket that enables a two-way connection between server and client
+	private SaarujanFrame frames; //Reads frames from, and writes frames to, the client's streams
+	private String currentClient; //Stores the current client's username, to use in logging operations
+
+	protected SaarujanSession(SaarujanServer server) {
+		this.server = server; //Stores the server
+		connection = null; //There is no socket, as the subclass handles the communication itself
+		frames = null; //There are no streams
+		currentClient = null; //The client hasn't logged in yet
+	}
+
+	public SaarujanSession(SaarujanServer server, Socket connection) throws Exception {
+		this.server = server; //Stores the server
+		this.connection = connection; //Stores the connection to the client
+		frames = new SaarujanFrame(connection.getInputStream(), connection.getOutputStream()); //Frames the connection's streams
+		currentClient = null; //The client hasn't logged in yet
+	}
+
+	protected void send(String s) {
+		try {
+			frames.write(s); //Sends the size of the message as 16 characters, followed by the message
+		} catch (Exception e) { //If an exception occurs
+			server.log("Error while sending data to client!", true); //Logs a warning message
+		}
+	}
+
+	protected String recv() {
+		try {
+			return frames.readText(); //Reads the whole message at once, and returns it
+		} catch (Exception e) { //If an exception occurs
+			server.log("Error while receiving data from client!", true); //Logs a warning message
+			return ""; //Returns an empty string
+		}
+	}
+
+	protected void sendChunk(ByteBuffer chunk) {
+		try {
+			frames.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining()); //Sends the chunk as a frame
+		} catch (Exception e) { //If an exception occurs
+			server.log("Error while sending data to client!", true); //Logs a warning message
+		}
+	}
+
+	protected ByteBuffer recvChunk() {
+		try {
+			frames.read(); //Reads the whole chunk into the frame's buffer
+			return ByteBuffer.wrap(frames.bytes(), 0, frames.length()); //Returns the chunk; it is only valid until the next read
+		} catch (Exception e) { //If an exception occurs
+			server.log("Error while receiving data from client!", true); //Logs a warning message
+			return null; //Returns null
+		}
+	}
+
+	protected void sendBuffer(ByteBuffer data) throws IOException {
+		if (data.hasArray()) { //If the data is in the heap, it is sent through the streams
+			while (data.hasRemaining()) { //Loops until every chunk is sent
+				int count = Math.min(data.remaining(), SaarujanFrame.CHUNK_SIZE); //Stores the size of the chunk
+				sendChunk(data.slice(data.position(), count)); //Sends the chunk
+				data.position(data.position() + count); //Moves past the sent chunk
+			}
+			return; //Exits the method
+		}
+
+		SocketChannel channel = connection.getChannel(); //Stores the channel of the socket; it exists, as the server accepts through a channel
+		while (data.hasRemaining()) { //Loops until every chunk is sent
+			int count = Math.min(data.remaining(), SaarujanFrame.CHUNK_SIZE); //Stores the size of the chunk
+			frames.writeHeader(count); //Sends the size of the chunk
+			ByteBuffer chunk = data.slice(data.position(), count); //Stores the chunk, without copying it
+			while (chunk.hasRemaining()) //Writes the chunk straight from the buffer to the socket
+				channel.write(chunk);
+			data.position(data.position() + count); //Moves past the sent chunk
+		}
+	}
+
+	private String loginAccount() {
+		String username = recv(), password = recv(); //Stores the received username and password from the client
+		String status = server.checkAccount(username, password); //Checks the account against the server's accounts
+		send(status); //Lets the client know the result of the login
+
+		switch (status) {
+			case "PENDING": //If their account access to this server is pending, cascades to wait for the client to exit
+			case "DENIEDACC": recv(); return null; //Waits until the client exits, and lets handleMessage() know to close
+			case "OWNER": //If the user is the owner, cascades to the successful login
+			case "SUCCESSFUL": server.log(username + " logged onto this server", false); return username; //Logs a message
+			default: return "DIFF_ACTION"; //Lets handleMessage() know that the user might want to perform another action
+		}
+	}
+
+	private String createAccount() {
+		String username = recv(), password = recv(); //Stores the given username and password from the client
+		String status = server.addAccount(username, password); //Adds the account to the server, if it doesn't exist already
+		send(status); //Lets the client know the result of the account creation
+
+		switch (status) {
+			case "SUCCESSFUL": return username; //The owner's account is granted permission immediately
+			case "PENDING": return null; //Lets handleMessage() know that the connection should be closed
+			default: return "DIFF_ACTION"; //Lets handleMessage() know that the user might want to perform a different action
+		}
+	}
+
+	private void permitAccount() {
+		if (!currentClient.equals(server.getOwner())) { //If the user is not the owner
+			send("NOPERMISSION"); //Notifying the client that they do not have permission
+			return; //Exiting the method
+		}
+
+		String[] list = server.listAccounts(); //Stores the formatted accounts (except passwords)
+		send(list.length + ""); //Sends the number of accounts
+		for (int i = 0; i < list.length; ++i) { //Loops through all accounts, and sends them
+			send(list[i]);
+		}
+
+		String username = recv(), permission = recv(); //Receives and stores the username and permission
+		send(server.setPermission(username, permission)); //Modifies the permission, and notifies the user of the result
+	}
+
+	private void sendRecentLogs() {
+		String[] recent = server.recentLogs(); //Stores the recent log messages
+		if (recent == null) { //If an error occured while reading the logs
+			send("ERRORLOG"); //Notifies the client that an error occured
+			return; //Exits the method
+		}
+
+		send(recent.length + ""); //Notifies the client about the amount of log messages they will receive
+		for (int i = 0; i < recent.length; ++i) { //Loops through the log messages
+			send(recent[i]); //Sends the current log message to the client
+		}
+	}
+
+	private void createFolder() {
+		//Creating a new folder with received path; the current client is the uploader, and the current date is the upload date
+		SaarujanFolder folder = new SaarujanFolder(recv(), currentClient, SaarujanDate.currentDate());
+		if (!server.storeFolder(folder)) { //Saves the created folder to the backup, and adds it to its parent folder
+			server.log(currentClient + " couldn't create a new folder: " + folder.getPath(), true); //Logs a warning message
+			return; //Exits the method, as the folder wasn't created
+		}
+
+		server.log(currentClient + " created a new folder: " + folder.getPath(), false); //Logs a message
+	}
+
+	private boolean uploadFile() {
+		//Creates a new file with received path; the uploader is the current client, and the upload date is the current date
+		SaarujanFile file = new SaarujanFile(recv(), currentClient, SaarujanDate.currentDate(), "");
+		String size = recv(); //Stores the size of the file, in bytes; the data follows in chunks
+		if (!size.matches("[0-9]{1,18}")) { //If the size is invalid, the chunks cannot be told apart from the next action
+			server.log(currentClient + " sent an invalid file size!", true); //Logs a warning message
+			return false; //Returns false, so the connection is closed
+		}
+
+		if (!server.storeFile(file, SaarujanItem.strToLong(size), this)) //Saves the chunks, and adds the file to its parent folder
+			return false; //If the upload couldn't be completed, the connection is closed
+
+		server.cacheFile(file); //Keeps the file in memory, if it meets the size requirements
+
+		send("SUCCESSFUL"); //Sends a message to the client; this allows the client program to wait, so they don't perform actions while the file is uploading
+		server.log(currentClient + " uploaded a new file: " + file.getPath(), false); //Logs a message
+		server.trace("ULOADFILE", file.getPath(), file.getBlobLength()); //Records the upload, if a trace is recorded
+		return true; //The upload was completed
+	}
+
+	private boolean uploadHashed() {
+		//Creates a new file with received path; the uploader is the current client, and the upload date is the current date
+		SaarujanFile file = new SaarujanFile(recv(), currentClient, SaarujanDate.currentDate(), "");
+		String size = recv(), hash = recv(); //Stores the size of the file, in bytes, and the SHA-256 hash of its data
+		if (!size.matches("[0-9]{1,18}") || !hash.matches("[0-9a-f]{64}")) { //If the size or hash is invalid
+			server.log(currentClient + " sent an invalid file size!", true); //Logs a warning message
+			return false; //Returns false, so the connection is closed
+		}
+
+		if (!server.linkFile(file, hash, SaarujanItem.strToLong(size))) { //If the content isn't stored yet, the data is asked for
+			send("SENDDATA"); //Lets the client know to send the data in chunks
+			if (!server.storeFile(file, SaarujanItem.strToLong(size), this)) //Saves the chunks, and adds the file to its parent folder
+				return false; //If the upload couldn't be completed, the connection is closed
+		}
+
+		server.cacheFile(file); //Keeps the file in memory, if it meets the size requirements
+
+		send("SUCCESSFUL"); //Sends a message to the client, so they don't perform actions while the file is uploading
+		server.log(currentClient + " uploaded a new file: " + file.getPath(), false); //Logs a message
+		server.trace("ULOADFILE", file.getPath(), file.getBlobLength()); //Records the upload, if a trace is recorded
+		return true; //The upload was completed
+	}
+
+	private boolean downloadFile() {
+		String path = recv(); //Stores the received path
+		SaarujanItem item = server.findItem(path); //Stores the file to download
+		if (!(item instanceof SaarujanFile)) { //If the file was deleted by another client, or it isn't a file
+			send("0"); //An empty file is sent, so the client isn't left waiting
+			return true; //Exits the method
+		}
+
+		SaarujanFile file = (SaarujanFile) item; //Stores the file
+		if (!server.sendFile(file, this)) //Sends the size of the file, followed by its data in chunks
+			return false; //If the data couldn't be read part way through, the connection is closed
+
+		server.log(currentClient + " downloaded a file: " + path, false); //Logs a message
+		server.trace("DLOADFILE", path, file.hasBlob() ? file.getBlobLength() : file.size() * 1000L); //Records the download, if a trace is recorded
+		server.cacheFile(file); //Keeps the file in memory as the most recently used, reading it in if it isn't kept already
+		return true; //The download was completed
+	}
+
+	private void deleteItem() {
+		String path = recv(); //Stores the received path
+		server.removeItem(path); //Deletes the item from the parent directory, and saves the deletion to the backup
+		send("SUCCESSFUL"); //Sends a success message; this allows the client to wait for the deletion to be saved
+		server.log(currentClient + " deleted an item: " + path, false); //A message is logged; the server stops keeping deleted files in memory
+	}
+
+	private void sendNavigation() {
+		String path = recv(); //Stores the received path
+		String[] list = server.listFolder(path); //Stores the formatted children of the path
+		server.trace("NAVIGATE", path, -1); //Records the navigation, if a trace is recorded
+		if (list == null) { //If the item is actually a file
+			send("NOTAFOLDER"); //The client is notified that it isn't a folder
+			return; //The method is exited
+		}
+
+		send(list.length + ""); //The item count of the directory is sent to the client
+		for (int i = 0; i < list.length; ++i) { //Loops through all items in the folder
+			send(list[i]); //Sends the current item to the client
+		}
+	}
+
+	private void sendSearch() {
+		String path = recv(), pattern = recv(); //Stores the received path of the folder, and the pattern
+		String[] list = server.search(path, pattern); //Stores the paths of the matching items
+		if (list == null) { //If the item is actually a file
+			send("NOTAFOLDER"); //The client is notified that it isn't a folder
+			return; //The method is exited
+		}
+
+		send(list.length + ""); //The count of matching items is sent to the client
+		for (int i = 0; i < list.length; ++i) { //Loops through all matching items
+			send(list[i]); //Sends the path of the current item to the client
+		}
+	}
+
+	protected boolean handleMessage(String message) {
+		if (currentClient == null) { //If the client hasn't logged in yet, the message is the initial message from the client
+			switch (message) {
+				case "LOGINACC": currentClient = loginAccount(); break; //If user wants to login, currentClient is set to loginAccount()
+				case "CREATEACC": currentClient = createAccount(); break; //If user wants to create, currentClient is set to createAccount()
+				default: return false; //If an invalid message was received, the connection should be closed
+			}
+
+			if (currentClient == null) //If currentClient is null, that means that the connection should be closed
+				return false; //Returns false
+			else if (currentClient.equals("DIFF_ACTION")) { //If currentClient equals "DIFF_ACTION", the user wants to perform another task
+				currentClient = null; //The client still isn't logged in
+				return true; //Waits for the next initial message
+			}
+
+			send(server.getName()); //Sends the server name
+			return true; //Waits for the next action
+		}
+
+		switch (message) {
+			case "PERMITACC": permitAccount(); break; //If the owner wants to modify an account's permission
+			case "ACCESSLOG": sendRecentLogs(); break; //If the owner wants to check recent logs
+			case "NAVIGATE": sendNavigation(); break; //If the client wants to navigate to a certain folder
+			case "SEARCH": sendSearch(); break; //If the client wants to search a folder for items by name
+			case "ULOADFILE": if (!uploadFile()) return false; break; //If the client wants to upload a file
+			case "ULOADHASH": if (!uploadHashed()) return false; break; //If the client wants to upload a file, sending its hash first
+			case "CREATEFOL": createFolder(); break; //If the client wants to create a folder
+			case "DLOADFILE": if (!downloadFile()) return false; break; //If the client wants to downloa a file
+			case "DELETEITEM": deleteItem(); break; //If the client wants to delete an item
+			//If the client wants to log out, or an invalid message was sent, the connection should be closed
+			default: server.log(currentClient + " logged out of the server!", false); return false;
+		}
+
+		return true; //Waits for the next action
+	}
+
+	private void handleConnection() {
+		while (handleMessage(recv())); //Loops until an invalid message is received, or the client wants to log out
+	}
+
+	public void close() {
+		try {
+			connection.close(); //The connection is closed, as sockets hang until they're closed
+		} catch (Exception e) { //If any exception occurs
+			server.log("Error while closing connection!", true); //An error message is logged
+		}
+	}
+
+	public void run() {
+		try {
+			handleConnection(); //Handles the connection until the client logs out
+		} catch (Exception e) { //If the session fails, only this client is affected
+			server.log("Session of " + currentClient + " ended unexpectedly!", true); //An error message is logged
+		} finally {
+			close(); //Closes the connection
+			server.endSession(this); //Lets the server know that this session has ended
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/** Sketch Class
+* Description: Estimates how often each key was used recently, in a fixed amount of memory, so the cache can tell popular files
+  from files that were only used once. Each key is counted in 4 counters of 4 bits, picked by 4 different hashes; the smallest
+  of them is the estimate, as other keys can only add to a counter. 16 counters are packed into each long. Once enough uses
+  were counted, every counter is halved, so files that were popular long ago fade out
+* constructor(Int) - Sizes the sketch for the given amount of entries
+* spread(Object) - Helper method that mixes the hash of the given key, so similar hashes land on different counters
+* slot(Int, Int) - Helper method that returns the long that holds the given counter of the given hash
+* shift(Int, Int) - Helper method that returns the position of the given counter of the given hash within its long
+* increment(Object) - Counts a use of the given key
+* frequency(Object) - Returns the estimated amount of recent uses of the given key, up to 15
+* reset() - Helper method that halves every counter
+**/
+
+public class SaarujanSketch {
+	private final static int[] SEEDS = { 0x97CB3127, 0x5D8C4A2B, 0xB1F3E05D, 0x3A7E9C61 }; //Stores a seed for each hash
+	private long[] table; //Stores the counters, 16 to a long
+	private int samples, sampleSize; //The amount of uses counted since the counters were last halved, and the amount that halves them
+
+	public SaarujanSketch(int entries) {
+		int length = 16; //Stores the amount of longs; a power of two, so a hash picks one with a mask
+		while (length < entries && length < 1 << 24) //Gives each entry a long of counters, up to 128 MB
+			length <<= 1;
+
+		table = new long[length]; //Every counter starts at 0
+		samples = 0; //No uses were counted
+		sampleSize = length * 10; //Halves the counters after 10 uses per entry
+	}
+
+	private static int spread(Object key) {
+		int hash = key.hashCode() * 0x9E3779B9; //Multiplies the hash, so nearby hashes differ in their upper bits
+		return hash ^ hash >>> 16; //Mixes the upper bits into the lower bits
+	}
+
+	private int slot(int hash, int i) {
+		int mixed = (hash ^ SEEDS[i]) * 0x85EBCA6B; //Mixes the hash with the counter's seed
+		return (mixed ^ mixed >>> 15) & (table.length - 1); //Returns the long, picked by the mixed bits
+	}
+
+	private static int shift(int hash, int i) {
+		return ((hash >>> (i << 3)) & 15) << 2; //Picks one of the 16 counters in the long with 4 bits of the hash
+	}
+
+	public void increment(Object key) {
+		int hash = spread(key); //Stores the mixed hash
+		boolean added = false; //Stores whether any counter was below its limit
+		for (int i = 0; i < 4; ++i) { //Loops through the key's 4 counters
+			int slot = slot(hash, i), shift = shift(hash, i); //Stores where the counter is
+			if ((table[slot] >>> shift & 15) != 15) { //If the counter isn't full, it is incremented
+				table[slot] += 1L << shift;
+				added = true;
+			}
+		}
+
+		if (added && ++samples >= sampleSize) //Once enough uses were counted, older uses count for less
+			reset();
+	}
+
+	public int frequency(Object key) {
+		int hash = spread(key), result = 15; //Stores the mixed hash, and the smallest counter
+		for (int i = 0; i < 4; ++i) { //Loops through the key's 4 counters
+			result = Math.min(result, (int) (table[slot(hash, i)] >>> shift(hash, i) & 15));
+		}
+
+		return result; //Returns the smallest counter, as other keys can only make counters larger
+	}
+
+	private void reset() {
+		for (int i = 0; i < table.length; ++i) { //Loops through every long
+			table[i] = table[i] >>> 1 & 0x7777777777777777L; //Halves each of its counters, without any bit moving into its neighbour
+		}
+
+		samples /= 2; //The halved counters hold half as many uses
+	}
+}
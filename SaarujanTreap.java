@@ -0,0 +1,288 @@
+/** Treap Class
+* Description: Holds the children of a folder sorted by name, so folders with tens of thousands of children can still add,
+  remove, and find one in O(log n). The items are kept in a binary tree that is sorted by name, where each node also has a
+  random priority, and every parent has a higher priority than its children (a treap); this keeps the tree balanced, on
+  average, whatever order the names are added in. Each node counts the nodes beneath it, so an item can be found by its
+  position as well as by its name. Items with equal names keep the order they were added in, unless the tree is told to order
+  them by their ids, so a given item can be found in O(log n) even among many items with the same name
+* constructor() - Initializes the tree as empty, keeping items with equal names in the order they were added in
+* constructor(Boolean) - Initializes the tree as empty; items with equal names are ordered by their ids if told to
+* compare(Item, Item) - Helper method that returns whether the first item comes before (negative), or after (positive) the second;
+						0 if their names are equal, and the tree doesn't order them by their ids
+* count(Node) - Helper method that returns the amount of items in the given subtree; 0 if it is empty
+* update(Node) - Helper method that counts the items of the given node again, after its children changed
+* rotateLeft(Node) - Helper method that lifts the right child of the given node above it, keeping the order; returns the new parent
+* rotateRight(Node) - Helper method that lifts the left child of the given node above it, keeping the order; returns the new parent
+* insert(Node, Node) - Helper recursive method that adds the given node to the given subtree, after any items with the same name;
+					   returns the new root of the subtree
+* merge(Node, Node) - Helper recursive method that joins two subtrees, where every item of the first comes before the second
+* remove(Node, Int) - Helper recursive method that removes the item at the given position of the given subtree; returns the new
+					  root of the subtree
+* add(Item) - Adds the given item after any items with the same name
+* build(List) - Replaces the items with the given sorted items, building the tree in O(n) rather than adding them one at a time
+* remove(Int) - Removes the item at the given position, and returns it
+* get(Int) - Returns the item at the given position
+* indexOf(String) - Returns the position of the first item with the given name, or -1 if there is none
+* indexOf(Item) - Returns the position of the given item in a tree that orders equal names by their ids, or -1 if it isn't in the tree
+* ceiling(String) - Returns the position of the first item whose name doesn't come before the given name; the amount of items
+					if every name comes before it
+* size() - Returns the amount of items
+* iterator() - Returns an iterator through the items in order, without looking each one up by its position
+* iterator(Int) - Returns an iterator through the items in order, starting at the given position
+**/
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class SaarujanTreap implements Iterable<SaarujanItem> {
+	private static class Node {
+		private SaarujanItem item; //Stores the item; its name is read from it, so each node only holds what the tree needs
+		private int priority; //A random priority; every parent has a higher priority than its children
+		private int count; //The amount of items in this node's subtree, including its own
+		private Node left, right; //The items before and after this node's item
+
+		private Node(SaarujanItem item) {
+			this.item = item; //Stores the item
+			priority = ThreadLocalRandom.current().nextInt(); //Picks the priority at random
+			count = 1; //The node has no children yet
+		}
+	}
+
+	private Node root; //The root of the tree; null if there are no items
+	private final boolean byId; //Whether items with equal names are ordered by their ids, rather than the order they were added in
+
+	public SaarujanTreap() {
+		this(false); //Keeps items with equal names in the order they were added in
+	}
+
+	public SaarujanTreap(boolean byId) {
+		root = null; //The tree starts empty
+		this.byId = byId; //Stores how items with equal names are ordered
+	}
+
+	private int compare(SaarujanItem first, SaarujanItem second) {
+		int order = first.getName().compareTo(second.getName()); //Compares the names
+		if (order != 0 || !byId) //If the names differ, or equal names keep the order they were added in, the names decide
+			return order;
+		return Integer.compare(first.getId(), second.getId()); //Otherwise, the ids decide
+	}
+
+	private static int count(Node node) {
+		return node == null ? 0 : node.count; //Returns the amount of items in the subtree
+	}
+
+	private static void update(Node node) {
+		node.count = count(node.left) + count(node.right) + 1; //Counts the items of both children, and the node itself
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node parent = node.right; //Stores the right child, which becomes the parent
+		node.right = parent.left; //The items between them move under the node
+		parent.left = node; //The node becomes the left child
+		update(node); //Counts the node first, as it is now beneath its former child
+		update(parent);
+		return parent; //Returns the new parent
+	}
+
+	private static Node rotateRight(Node node) {
+		Node parent = node.left; //Stores the left child, which becomes the parent
+		node.left = parent.right; //The items between them move under the node
+		parent.right = node; //The node becomes the right child
+		update(node); //Counts the node first, as it is now beneath its former child
+		update(parent);
+		return parent; //Returns the new parent
+	}
+
+	private Node insert(Node node, Node added) {
+		if (node == null) //If the bottom of the tree was reached, the added node goes here
+			return added; //Returns the added node
+
+		if (compare(added.item, node.item) < 0) { //If the added item comes before this item, it goes to the left
+			node.left = insert(node.left, added);
+			if (node.left.priority > node.priority) //If the child now outranks its parent, it is lifted above it
+				return rotateRight(node);
+		} else { //Otherwise, including equal names, it goes to the right, so equal names keep the order they were added in
+			node.right = insert(node.right, added);
+			if (node.right.priority > node.priority) //If the child now outranks its parent, it is lifted above it
+				return rotateLeft(node);
+		}
+
+		update(node); //Counts the added item
+		return node; //Returns the same root
+	}
+
+	private static Node merge(Node first, Node second) {
+		if (first == null || second == null) //If either subtree is empty, the other is the result
+			return first == null ? second : first;
+
+		if (first.priority > second.priority) { //The root with the higher priority stays on top
+			first.right = merge(first.right, second); //Every item of the second subtree comes after the first root
+			update(first);
+			return first;
+		}
+
+		second.left = merge(first, second.left); //Every item of the first subtree comes before the second root
+		update(second);
+		return second;
+	}
+
+	private static Node remove(Node node, int index) {
+		int left = count(node.left); //Stores the amount of items before this node
+		if (index < left) { //If the item is on the left
+			node.left = remove(node.left, index);
+		} else if (index > left) { //If the item is on the right, skipping the left subtree and this node
+			node.right = remove(node.right, index - left - 1);
+		} else { //If this node holds the item, its children take its place
+			return merge(node.left, node.right);
+		}
+
+		update(node); //Counts the removed item
+		return node; //Returns the same root
+	}
+
+	public void add(SaarujanItem item) {
+		root = insert(root, new Node(item)); //Adds the item, then lifts it to keep the tree balanced
+	}
+
+	public void build(List<? extends SaarujanItem> sorted) {
+		//Builds the tree the way a stack builds it from the left: each new node is the last item so far, so it sits at the right
+		//edge, below every node on the edge with a higher priority; the nodes it outranks become its left child
+		ArrayDeque<Node> edge = new ArrayDeque<Node>(); //Stores the right edge of the tree, from the bottom to the root
+		for (SaarujanItem item : sorted) { //Loops through the items in order
+			Node node = new Node(item), last = null; //Stores the new node, and the last node it outranks
+			while (!edge.isEmpty() && edge.peek().priority < node.priority) { //Takes every node that it outranks off of the edge
+				last = edge.pop();
+				update(last); //Its subtree is complete, so it is counted
+			}
+
+			node.left = last; //The outranked nodes come before the new node
+			if (!edge.isEmpty()) //The new node is the right child of the lowest node that outranks it
+				edge.peek().right = node;
+			edge.push(node); //Adds the new node to the edge
+		}
+
+		Node last = null; //Stores the root, which is the last node on the edge
+		while (!edge.isEmpty()) { //Counts the nodes that are left on the edge, from the bottom up
+			last = edge.pop();
+			update(last);
+		}
+
+		root = last; //Uses the built tree
+	}
+
+	public SaarujanItem remove(int index) {
+		SaarujanItem result = get(index); //Stores the item, which also checks the position
+		root = remove(root, index); //Removes the item
+		return result; //Returns the removed item
+	}
+
+	public SaarujanItem get(int index) {
+		if (index < 0 || index >= count(root)) //If there is no item at the position
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + count(root));
+
+		Node node = root; //Starts at the root
+		while (true) { //Loops until the item is found
+			int left = count(node.left); //Stores the amount of items before this node
+			if (index < left) { //If the item is on the left
+				node = node.left;
+			} else if (index > left) { //If the item is on the right, skipping the left subtree and this node
+				index -= left + 1;
+				node = node.right;
+			} else { //If this node holds the item
+				return node.item; //Returns the item
+			}
+		}
+	}
+
+	public int indexOf(String name) {
+		int result = -1, offset = 0; //result - the position of the first equal name found; offset - the items before the subtree
+		Node node = root; //Starts at the root
+		while (node != null) { //Loops until the bottom of the tree
+			int order = name.compareTo(node.item.getName()); //Compares the name with this node's name
+			if (order <= 0) { //If the name comes before this node, or is equal to it, an earlier equal name can only be on the left
+				if (order == 0) //If the names are equal, this is the first equal name found so far
+					result = offset + count(node.left);
+				node = node.left;
+			} else { //If the name comes after this node, it is on the right
+				offset += count(node.left) + 1;
+				node = node.right;
+			}
+		}
+
+		return result; //Returns the position, or -1 if the name wasn't found
+	}
+
+	public int indexOf(SaarujanItem item) {
+		int offset = 0; //Stores the amount of items before the subtree
+		Node node = root; //Starts at the root
+		while (node != null) { //Loops until the bottom of the tree
+			int order = compare(item, node.item); //Compares the item with this node's item
+			if (order < 0) { //If the item comes before this node, it is on the left
+				node = node.left;
+			} else if (order > 0) { //If the item comes after this node, it is on the right
+				offset += count(node.left) + 1;
+				node = node.right;
+			} else { //If both have the same name and id, this node holds the item, unless ids were repeated
+				return node.item == item ? offset + count(node.left) : -1;
+			}
+		}
+
+		return -1; //Returns -1, as the item wasn't found
+	}
+
+	public int ceiling(String name) {
+		int result = 0; //Stores the amount of items whose names come before the given name
+		Node node = root; //Starts at the root
+		while (node != null) { //Loops until the bottom of the tree
+			if (node.item.getName().compareTo(name) < 0) { //If this node comes before the name, so does its left subtree
+				result += count(node.left) + 1;
+				node = node.right;
+			} else { //Otherwise, the first item that doesn't come before the name is this node, or on its left
+				node = node.left;
+			}
+		}
+
+		return result; //Returns the position
+	}
+
+	public int size() {
+		return count(root); //Returns the amount of items
+	}
+
+	public Iterator<SaarujanItem> iterator() {
+		return iterator(0); //Starts at the first item
+	}
+
+	public Iterator<SaarujanItem> iterator(int index) {
+		ArrayDeque<Node> path = new ArrayDeque<Node>(); //Stores the nodes whose items are still to come, the next one on top
+		Node node = root; //Starts at the root, and walks down to the item at the position
+		while (node != null) { //Loops until the bottom of the tree
+			int left = count(node.left); //Stores the amount of items before this node
+			if (index <= left) { //If the position is on the left, or is this node, this node comes after it
+				path.push(node);
+				node = node.left;
+			} else { //If the position is on the right, this node and its left subtree are skipped
+				index -= left + 1;
+				node = node.right;
+			}
+		}
+
+		return new Iterator<SaarujanItem>() {
+			public boolean hasNext() {
+				return !path.isEmpty(); //Returns whether any item is left
+			}
+
+			public SaarujanItem next() {
+				if (path.isEmpty()) //If every item was returned
+					throw new NoSuchElementException();
+
+				Node node = path.pop(); //Stores the next node
+				for (Node next = node.right; next != null; next = next.left) //The items after it, up to its parent, come next
+					path.push(next);
+				return node.item; //Returns its item
+			}
+		};
+	}
+}